@@ -0,0 +1,40 @@
+package dev.laszlo.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-turn request body building (messages copy, cache breakpoints, Gson) as a playthrough grows.
+ * contextTokenBudget 0 sends the full history; 8000 is the default windowed request.
+ * ⭐ SESSION 45: Narrative hot path benchmarks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatServiceBenchmark {
+
+    @Param({"10", "200", "2000"})
+    public int messages;
+
+    @Param({"0", "8000"})
+    public int contextTokenBudget;
+
+    private ConversationHistory history;
+    private ChatService chatService;
+
+    @Setup
+    public void setUp() {
+        history = ConversationHistoryBenchmark.playthrough(messages);
+        chatService = new ChatService("benchmark-key");
+        chatService.setContextTokenBudget(contextTokenBudget);
+    }
+
+    @Benchmark
+    public String buildRequestBody() {
+        return chatService.buildRequestBody(history, false);
+    }
+}
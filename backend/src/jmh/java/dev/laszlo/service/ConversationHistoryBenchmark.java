@@ -0,0 +1,59 @@
+package dev.laszlo.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Save snapshot serialization as a playthrough grows (10 - 2,000 messages).
+ * toJson/fromJson run whenever a save snapshot is written or read.
+ * ⭐ SESSION 45: Narrative hot path benchmarks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversationHistoryBenchmark {
+
+    @Param({"10", "200", "2000"})
+    public int messages;
+
+    private ConversationHistory history;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        history = playthrough(messages);
+        json = history.toJson();
+    }
+
+    /**
+     * A playthrough of the given length: alternating choice messages and JSON replies.
+     */
+    static ConversationHistory playthrough(int messages) {
+        ConversationHistory history = new ConversationHistory();
+        history.setSystemPrompt("You are Ilyra, an exiled astronomer. Respond with valid JSON.");
+        for (int i = 0; i < messages; i++) {
+            if (i % 2 == 0) {
+                history.addUserMessage("You chose: Ask about constellation #" + i);
+            } else {
+                history.addAssistantMessage("{\"dialogue\": \"The pattern repeats every " + i
+                        + " nights, if you know where to look.\", \"actionText\": \"*points at the chart*\","
+                        + " \"mood\": \"contemplative\"}");
+            }
+        }
+        return history;
+    }
+
+    @Benchmark
+    public String toJson() {
+        return history.toJson();
+    }
+
+    @Benchmark
+    public ConversationHistory fromJson() {
+        return ConversationHistory.fromJson(json);
+    }
+}
@@ -0,0 +1,111 @@
+package dev.laszlo.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.laszlo.database.DatabaseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unlock storms: many threads unlocking the same few items for the same few users (double taps,
+ * client retries, several devices). Runs against in-memory H2 (PostgreSQL mode) through a Hikari pool.
+ * <p>
+ * Each iteration starts from fresh balances; most requests then end as ALREADY_UNLOCKED or
+ * INSUFFICIENT_GEMS, which is what a storm looks like. After every iteration the books are checked:
+ * no negative balance, one ledger row per unlock, and balance + spent == earned.
+ * ⭐ SESSION 45: Race-free unlocks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class GalleryUnlockBenchmark {
+
+    private static final int FIRST_CONTENT_ID = 9001;
+    private static final int STARTING_GEMS = 200;
+
+    @Param({"1", "8"})
+    public int users;
+
+    @Param({"10"})
+    public int items;
+
+    private HikariDataSource dataSource;
+    private CurrencyService currencyService;
+    private GalleryService galleryService;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:unlock_bench;DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        dataSource.setMaximumPoolSize(10);
+
+        new DatabaseService(dataSource);  // Creates the schema
+        currencyService = new CurrencyService(dataSource, TurnMetrics.noop(), 60);
+        galleryService = new GalleryService(dataSource, currencyService, new GalleryCatalog(dataSource, 300));
+
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (int i = 0; i < items; i++) {
+                stmt.execute("INSERT INTO story_content (content_id, story_id, content_type, title, unlock_cost) "
+                        + "VALUES (" + (FIRST_CONTENT_ID + i) + ", 'bench', 'scene', 'Scene " + i + "', "
+                        + (20 + 5 * i) + ")");
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetBalances() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM user_unlocks");
+            stmt.execute("DELETE FROM gem_transactions");
+            stmt.execute("DELETE FROM user_currency");
+            for (int u = 0; u < users; u++) {
+                stmt.execute("INSERT INTO user_currency (user_id, gem_balance, total_earned, total_spent) "
+                        + "VALUES ('user" + u + "', " + STARTING_GEMS + ", " + STARTING_GEMS + ", 0)");
+            }
+        }
+        currencyService.evictAll();  // Rows were recreated behind the cache's back
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkBooks() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT COUNT(*) FROM user_currency WHERE gem_balance < 0 OR gem_balance + total_spent <> total_earned")) {
+                rs.next();
+                if (rs.getInt(1) > 0) {
+                    throw new IllegalStateException("Overdrawn or inconsistent balances: " + rs.getInt(1));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT (SELECT COUNT(*) FROM user_unlocks), "
+                    + "(SELECT COUNT(*) FROM gem_transactions WHERE transaction_type = 'spend')")) {
+                rs.next();
+                if (rs.getInt(1) != rs.getInt(2)) {
+                    throw new IllegalStateException("Unlocks " + rs.getInt(1) + " vs charges " + rs.getInt(2));
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public GalleryService.UnlockStatus unlockStorm() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return galleryService.unlockContent("user" + random.nextInt(users), FIRST_CONTENT_ID + random.nextInt(items));
+    }
+}
@@ -0,0 +1,107 @@
+package dev.laszlo.service;
+
+import dev.laszlo.database.CharacterDatabase;
+import dev.laszlo.model.Character;
+import dev.laszlo.model.Choice;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU/allocation cost of the per-turn NarrativeEngine work around the Claude call.
+ * <p>
+ * Characters come from an in-memory stand-in for CharacterDatabase, so nothing here touches a database
+ * or the network. JSON reply extraction is covered by NarrativeResponseParserBenchmark.
+ * ⭐ SESSION 45: Narrative hot path benchmarks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NarrativeEngineBenchmark {
+
+    private static final String CHOICE_REPLY = """
+            [CHOICE: Ask Ilyra about the missing star | ilyra]
+            [CHOICE: Study the brass astrolabe | narrator]
+            [CHOICE: Step out onto the balcony | narrator]
+            """;
+
+    private static final String DIALOGUE = """
+            Ilyra narrows her eyes at the eyepiece, then steps back with a distant, wistful look. \
+            "Vega has been there for every night of my exile. Tonight the sky is simply... empty." \
+            She traces the gap on the chart with a trembling finger.""";
+
+    private static final String ENDING_DIALOGUE = DIALOGUE + " The dome falls silent. [END:the_lost_star]";
+
+    private NarrativeEngine engine;
+    private Character narrator;
+    private Character ilyra;
+    private Character blackwood;
+
+    @Setup
+    public void setUp() {
+        narrator = new Character("narrator", "Narrator", "Storyteller", List.of("observant", "neutral"),
+                "Third-person, atmospheric", null, "neutral", "neutral",
+                "The omniscient voice of the story.", "observatory");
+        ilyra = new Character("ilyra", "Ilyra", "Exiled Astronomer", List.of("reserved", "analytical", "wistful"),
+                "Precise and measured, with poetic turns when speaking of the stars", null, "wary", "uncertain",
+                "Once the royal astronomer, Ilyra was exiled for predicting the fall of the crown.", "observatory");
+        blackwood = new Character("blackwood", "Captain Nathaniel Blackwood", "Pirate Captain",
+                List.of("charming", "reckless", "loyal"), "Swaggering, full of sea slang", null, "confident",
+                "flirtatious", "A notorious captain with a soft spot for his crew.", "pirates");
+
+        Map<String, Character> characters = Map.of("narrator", narrator, "ilyra", ilyra, "blackwood", blackwood);
+        CharacterDatabase characterDb = new CharacterDatabase(null) {
+            @Override
+            public Character getCharacter(String id) {
+                return characters.get(id);
+            }
+
+            @Override
+            public List<Character> getCharactersByStory(String storyId) {
+                return characters.values().stream().filter(c -> storyId.equals(c.getStoryId())).toList();
+            }
+        };
+
+        engine = new NarrativeEngine(new ChatService("benchmark-key"), characterDb);
+    }
+
+    @Benchmark
+    public String buildLayeredPromptCharacter() {
+        return engine.buildLayeredPrompt(ilyra);
+    }
+
+    @Benchmark
+    public String buildLayeredPromptPirate() {
+        return engine.buildLayeredPrompt(blackwood);
+    }
+
+    @Benchmark
+    public String buildLayeredPromptNarrator() {
+        return engine.buildLayeredPrompt(narrator);
+    }
+
+    @Benchmark
+    public List<Choice> parseChoices() {
+        return engine.parseChoices(CHOICE_REPLY, "ilyra", "observatory");
+    }
+
+    @Benchmark
+    public String detectEndingNone() {
+        return engine.detectEnding(DIALOGUE, "*adjusts the telescope*");
+    }
+
+    @Benchmark
+    public String detectEndingMarker() {
+        return engine.detectEnding(ENDING_DIALOGUE, "*adjusts the telescope*");
+    }
+
+    @Benchmark
+    public String determineMood() {
+        return engine.determineMood(DIALOGUE, ilyra);
+    }
+}
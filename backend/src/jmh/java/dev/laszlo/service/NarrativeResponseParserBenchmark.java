@@ -0,0 +1,76 @@
+package dev.laszlo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reply parsing cost per turn: NarrativeResponseParser vs the old parse-from-every-'{' loop.
+ * <p>
+ * ⭐ SESSION 45: clean = bare JSON, wrapped = prose + code fence + braces in prose,
+ * malformed = long reply with many braces and a truncated object (worst case for the old loop)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NarrativeResponseParserBenchmark {
+
+    @Param({"clean", "wrapped", "malformed"})
+    public String reply;
+
+    private String rawResponse;
+
+    @Setup
+    public void setUp() {
+        String json = """
+                {"dialogue": "The stars are wrong tonight. Look - Vega should be there, but the sky is empty.",
+                 "actionText": "*adjusts the brass telescope with trembling hands*",
+                 "mood": "anxious",
+                 "choices": [
+                   {"label": "Ask what it means", "nextSpeaker": "ilyra"},
+                   {"label": "Check the star charts", "nextSpeaker": "narrator"},
+                   {"label": "Leave the observatory", "nextSpeaker": "narrator"}
+                 ]}
+                """;
+
+        rawResponse = switch (reply) {
+            case "clean" -> json;
+            case "wrapped" -> "Here is the scene {as requested}:\n```json\n" + json + "\n```\nLet me know!";
+            case "malformed" -> "{braces} {in} {prose} ".repeat(200)
+                    + json.substring(0, json.length() / 2);
+            default -> throw new IllegalArgumentException(reply);
+        };
+    }
+
+    @Benchmark
+    public NarrativeResponseParser.ParsedReply singlePass() {
+        return NarrativeResponseParser.parse(rawResponse);
+    }
+
+    /**
+     * Baseline: the pre-SESSION-45 NarrativeEngine loop (new mapper per turn, substring per '{').
+     */
+    @Benchmark
+    public JsonNode legacyBraceRetry() {
+        ObjectMapper mapper = new ObjectMapper();
+        for (int i = rawResponse.indexOf('{'); i >= 0 && i < rawResponse.length(); i++) {
+            if (rawResponse.charAt(i) != '{') {
+                continue;
+            }
+            try {
+                JsonNode json = mapper.readTree(rawResponse.substring(i));
+                if (json.has("dialogue")) {
+                    return json;
+                }
+            } catch (Exception e) {
+                // Not JSON at this position - try the next '{'
+            }
+        }
+        return null;
+    }
+}
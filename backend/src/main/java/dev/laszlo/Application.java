@@ -2,6 +2,7 @@ package dev.laszlo;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Spring Boot Applications Entry Point
@@ -10,8 +11,11 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * - Enables auto-configuration
  * - Enables component scanning (fins our @RestController)
  * - Marks this as a configuration class
+ *
+ * @EnableScheduling runs background jobs such as the save cache's write-behind flush.
  */
 @SpringBootApplication
+@EnableScheduling
 public class Application {
 
     public static void main(String[] args) {
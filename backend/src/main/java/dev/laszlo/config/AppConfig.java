@@ -1,16 +1,22 @@
 package dev.laszlo.config;
 
+import com.zaxxer.hikari.HikariDataSource;
 import dev.laszlo.database.CharacterDatabase;
 import dev.laszlo.database.DatabaseService;
 import dev.laszlo.service.ChatService;
 import dev.laszlo.service.NarrativeEngine;
+import dev.laszlo.service.TurnMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.Environment;
 
 import javax.sql.DataSource;
+import java.time.Duration;
 
 @Configuration
 public class AppConfig {
@@ -18,8 +24,17 @@ public class AppConfig {
     @Autowired
     private Environment environment;  // ⭐ ADD THIS
 
+    /**
+     * ⭐ SESSION 45: Turn / LLM / DB meters on the actuator registry (no-op where there is none, e.g. slice tests).
+     */
     @Bean
-    public ChatService chatService() {
+    public TurnMetrics turnMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        return registry != null ? new TurnMetrics(registry) : TurnMetrics.noop();
+    }
+
+    @Bean
+    public ChatService chatService(TurnMetrics turnMetrics) {
         String apiKey = System.getenv("ANTHROPIC_API_KEY");
 
         // ⭐ SESSION 26: Allow test profile to use dummy key
@@ -34,12 +49,46 @@ public class AppConfig {
             }
         }
 
-        return new ChatService(apiKey);
+        // ⭐ SESSION 45: Base URL is configurable so load tests can run against a local stub
+        String baseUrl = environment.getProperty("storyforge.anthropic.base-url", ChatService.DEFAULT_BASE_URL);
+        ChatService chatService = new ChatService(apiKey, baseUrl);
+
+        // ⭐ SESSION 45: cache_control breakpoints on system prompt + recent turns
+        chatService.setPromptCachingEnabled(
+                environment.getProperty("storyforge.anthropic.prompt-caching", Boolean.class, true));
+
+        // ⭐ SESSION 45: Conversation token budget per request (older turns -> rolling summary)
+        chatService.setContextTokenBudget(
+                environment.getProperty("storyforge.context.token-budget", Integer.class, 8000));
+
+        // ⭐ SESSION 45: Retries / hedging / circuit breaker / concurrency cap for 429-529 bursts
+        chatService.setRetryPolicy(
+                environment.getProperty("storyforge.anthropic.max-retries", Integer.class, 2),
+                Duration.ofMillis(environment.getProperty("storyforge.anthropic.backoff-base-ms", Long.class, 500L)),
+                Duration.ofMillis(environment.getProperty("storyforge.anthropic.backoff-max-ms", Long.class, 8000L)));
+        chatService.setRequestTimeout(Duration.ofMillis(
+                environment.getProperty("storyforge.anthropic.request-timeout-ms", Long.class, 60000L)));
+        chatService.setHedgeDelay(Duration.ofMillis(
+                environment.getProperty("storyforge.anthropic.hedge-delay-ms", Long.class, 0L)));
+        chatService.setMaxConcurrentRequests(
+                environment.getProperty("storyforge.anthropic.max-concurrent-requests", Integer.class, 32));
+        chatService.setCircuitBreaker(
+                environment.getProperty("storyforge.anthropic.breaker.failure-threshold", Integer.class, 5),
+                Duration.ofMillis(environment.getProperty("storyforge.anthropic.breaker.open-ms", Long.class, 30000L)));
+
+        chatService.setMetrics(turnMetrics);
+        return chatService;
     }
 
+    /**
+     * Shared HikariCP pool used by every JDBC service (BaseService subclasses and JdbcTemplate).
+     * Pool sizing, leak detection and MBean registration are bound from spring.datasource.hikari.*
+     * in application.properties after the connection settings below are applied.
+     */
     @Bean
     @Profile("!test")  // Skip in test profile - let Spring auto-configure H2
-    public DataSource dataSource() {
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource dataSource() {
         String databaseUrl = System.getenv("DATABASE_URL");
 
         // If DATABASE_URL exists (Railway/production), parse it
@@ -48,16 +97,15 @@ public class AppConfig {
         }
 
         // Local development fallback
-        org.springframework.jdbc.datasource.DriverManagerDataSource dataSource =
-                new org.springframework.jdbc.datasource.DriverManagerDataSource();
+        HikariDataSource dataSource = new HikariDataSource();
         dataSource.setDriverClassName("org.postgresql.Driver");
-        dataSource.setUrl("jdbc:postgresql://localhost:5432/storyforge");
+        dataSource.setJdbcUrl("jdbc:postgresql://localhost:5432/storyforge");
         dataSource.setUsername("postgres");
         dataSource.setPassword("postgres");
         return dataSource;
     }
 
-    private DataSource createDataSourceFromUrl(String url) {
+    private HikariDataSource createDataSourceFromUrl(String url) {
         // Convert Railway URL format to JDBC format
         if (!url.startsWith("jdbc:")) {
             url = "jdbc:" + url;
@@ -89,10 +137,9 @@ public class AppConfig {
             }
         }
 
-        org.springframework.jdbc.datasource.DriverManagerDataSource dataSource =
-                new org.springframework.jdbc.datasource.DriverManagerDataSource();
+        HikariDataSource dataSource = new HikariDataSource();
         dataSource.setDriverClassName("org.postgresql.Driver");
-        dataSource.setUrl(jdbcUrl);
+        dataSource.setJdbcUrl(jdbcUrl);
         dataSource.setUsername(username);
         dataSource.setPassword(password);
         return dataSource;
@@ -104,8 +151,8 @@ public class AppConfig {
     }
 
     @Bean
-    public CharacterDatabase characterDatabase() {
-        CharacterDatabase db = new CharacterDatabase();
+    public CharacterDatabase characterDatabase(DataSource dataSource) {
+        CharacterDatabase db = new CharacterDatabase(dataSource);
         db.initializeCharacterTables();
         return db;
     }
@@ -113,8 +160,28 @@ public class AppConfig {
     @Bean
     public NarrativeEngine narrativeEngine(
             ChatService chatService,
-            CharacterDatabase characterDatabase
+            CharacterDatabase characterDatabase,
+            TurnMetrics turnMetrics
     ) {
-        return new NarrativeEngine(chatService, characterDatabase);
+        NarrativeEngine engine = new NarrativeEngine(chatService, characterDatabase);
+        engine.setMetrics(turnMetrics);
+
+        // ⭐ SESSION 45: Choice generation mode (SEPARATE | INLINE | SPECULATIVE), optionally per story
+        String defaultMode = environment.getProperty("storyforge.narrative.choice-mode");
+        if (defaultMode != null && !defaultMode.isBlank()) {
+            engine.setDefaultChoiceMode(NarrativeEngine.ChoiceMode.valueOf(defaultMode.trim().toUpperCase()));
+        }
+
+        // Format: storyId:MODE,storyId:MODE (e.g. pirates:SPECULATIVE,observatory:INLINE)
+        String storyModes = environment.getProperty("storyforge.narrative.story-choice-modes", "");
+        for (String entry : storyModes.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length == 2 && !parts[0].isBlank()) {
+                engine.setStoryChoiceMode(parts[0].trim(),
+                        NarrativeEngine.ChoiceMode.valueOf(parts[1].trim().toUpperCase()));
+            }
+        }
+
+        return engine;
     }
 }
\ No newline at end of file
@@ -49,6 +49,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/gallery/**").permitAll()
                         .requestMatchers("/api/tasks/**").permitAll()
                         .requestMatchers("/api/currency/**").permitAll()
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()  // ⭐ SESSION 45: Scrapers
 
                         // Everything else requires authentication (future endpoints)
                         .anyRequest().authenticated()
@@ -75,6 +76,7 @@ public class SecurityConfig {
 
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(List.of("*"));
+        configuration.setExposedHeaders(List.of("ETag"));  // ⭐ SESSION 45: Flutter web reads it for If-None-Match
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -0,0 +1,51 @@
+package dev.laszlo.config;
+
+import dev.laszlo.service.TurnLog;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Tags every request with a correlation id before anything else runs (including security).
+ * <p>
+ * - Takes X-Request-Id from the client/proxy if present, otherwise generates one
+ * - Puts it in the MDC as "turnId" (included in every log line) and echoes it in the response header
+ * - Decides once per request whether full payloads are logged (storyforge.logging.payload-sample-rate)
+ * ⭐ SESSION 45: Structured, sampled logging
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TurnLogFilter extends OncePerRequestFilter {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    public TurnLogFilter(
+            @Value("${storyforge.logging.payload-sample-rate:0.01}") double payloadSampleRate,
+            @Value("${storyforge.logging.payload-max-chars:500}") int payloadMaxChars) {
+        TurnLog.configure(payloadSampleRate, payloadMaxChars);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        String turnId = TurnLog.begin(request.getHeader(REQUEST_ID_HEADER));
+        response.setHeader(REQUEST_ID_HEADER, turnId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            TurnLog.end();
+        }
+    }
+}
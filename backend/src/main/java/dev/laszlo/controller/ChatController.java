@@ -1,18 +1,23 @@
 package dev.laszlo.controller;
 
+import com.google.gson.JsonObject;
 import dev.laszlo.database.DatabaseService;
 import dev.laszlo.model.Session;
+import dev.laszlo.security.SecurityContextHelper;
 import dev.laszlo.service.ChatService;
 import dev.laszlo.service.ConversationHistory;
+import dev.laszlo.service.ConversationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST controller for Chat API
@@ -21,6 +26,11 @@ import java.util.Map;
  * - POST /api/chat/send    -> Send a message, get response
  * - POST /api/chat/reset   -> Clear conversation history
  * - GET  /api/chat/status  -> Check if API is running
+ * - GET  /api/chat/sessions/{id}/messages -> One page of a session's messages
+ * <p>
+ * ⭐ SESSION 45: No conversation state in the controller - each user's current session lives in
+ * ConversationRegistry, history is rebuilt from the session's messages per turn, and turns on the
+ * same session run in order.
  */
 @RestController
 @RequestMapping("/api/chat")
@@ -28,45 +38,100 @@ public class ChatController {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
 
+    // Default system prompt
+    private static final String SYSTEM_PROMPT = "You are a creative storyteller who specializes in atmospheric, " +
+            "immersive scenarios. You write vivid descriptions and engaging " +
+            "dialogue. Keep responses concise but evocative.";
+
+    // ⭐ SESSION 45: Message pages - max size for clients, and the step when loading a turn's context
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int CONTEXT_PAGE_SIZE = 100;
+
     // Dependencies - injected by Spring
     private final ChatService chatService;
-    private final ConversationHistory history;
     private final DatabaseService databaseService;
-    private int currentSessionId;
+    private final ConversationRegistry conversationRegistry;  // ⭐ SESSION 45: Per-session turn ordering
+    private final SecurityContextHelper securityContextHelper;
 
     /**
      * Constructor - Spring automatically injects dependencies
      */
-    public ChatController(ChatService chatService, DatabaseService databaseService) {
+    public ChatController(ChatService chatService, DatabaseService databaseService,
+                          ConversationRegistry conversationRegistry, SecurityContextHelper securityContextHelper) {
         this.chatService = chatService;
         this.databaseService = databaseService;
-        this.history = new ConversationHistory();
+        this.conversationRegistry = conversationRegistry;
+        this.securityContextHelper = securityContextHelper;
 
-        // Create a default session or use existing one
-        List<Session> sessions = databaseService.getAllSessions();
-        if (sessions.isEmpty()) {
-            this.currentSessionId = databaseService.createSession("Default Session");
-        } else {
-            this.currentSessionId = sessions.get(0).getId();
+        logger.info("ChatController initialized...");
+    }
+
+    /**
+     * ⭐ SESSION 45: The session the current user is writing to - on first use the most recent
+     * existing session, or a new default one.
+     */
+    private int currentSessionId(String userId) {
+        return conversationRegistry.chatSession(userId, () -> {
+            List<Session> sessions = databaseService.getSessionsPage(null, 1);
+            return sessions.isEmpty()
+                    ? databaseService.createSession("Default Session")
+                    : sessions.get(0).getId();
+        });
+    }
+
+    /**
+     * ⭐ SESSION 45: Rebuild a session's history from the database. Call inside the session's turn
+     * (ConversationRegistry) so no other turn is halfway through writing it.
+     * <p>
+     * With a context token budget only the newest messages the request can carry are read (pages
+     * walked backwards until the budget is exceeded) - a long session no longer loads every message
+     * to send its last few.
+     */
+    private ConversationHistory loadHistory(int sessionId) {
+        int budget = chatService.getContextTokenBudget();
+        List<JsonObject> recent = new ArrayList<>();
+        int tokens = 0;
+        Integer before = null;
+        boolean reachedStart = false;
+
+        while (budget <= 0 || tokens <= budget) {
+            List<DatabaseService.MessageRow> page = databaseService.getMessagesPage(sessionId, before, CONTEXT_PAGE_SIZE);
+            for (int i = page.size() - 1; i >= 0; i--) {
+                DatabaseService.MessageRow row = page.get(i);
+                JsonObject message = new JsonObject();
+                message.addProperty("role", row.role().equals("user") ? "user" : "assistant");
+                message.addProperty("content", row.content());
+                recent.add(message);
+                tokens += ConversationHistory.estimateTokens(row.content());
+            }
+            if (page.size() < CONTEXT_PAGE_SIZE) {
+                reachedStart = true;
+                break;
+            }
+            before = page.get(0).id();
         }
+        Collections.reverse(recent);
 
-        // Load existing messages from database
-        for (String[] msg : databaseService.loadMessages(currentSessionId)) {
-            if (msg[0].equals("user")) {
-                history.addUserMessage(msg[1]);
-            } else {
-                history.addAssistantMessage(msg[1]);
+        int offset = 0;
+        if (!reachedStart) {
+            // The window must open with a user turn
+            while (!recent.isEmpty() && !"user".equals(recent.get(0).get("role").getAsString())) {
+                recent.remove(0);
             }
+            offset = databaseService.countMessages(sessionId) - recent.size();
         }
-        logger.info("📂 Loaded {} messages from history", history.getMessageCount());
 
-        // Set default system prompt
-        this.history.setSystemPrompt("You are a creative storyteller who specializes in atmospheric, " +
-                "immersive scenarios. You write vivid descriptions and engaging " +
-                "dialogue. Keep responses concise but evocative."
-        );
+        ConversationHistory history = ConversationHistory.window(offset, recent);
+        history.setSystemPrompt(SYSTEM_PROMPT);
+        return history;
+    }
 
-        logger.info("ChatController initialized...");
+    private static Map<String, Object> toMap(DatabaseService.MessageRow row) {
+        Map<String, Object> msgMap = new HashMap<>();
+        msgMap.put("id", row.id());
+        msgMap.put("role", row.role());
+        msgMap.put("content", row.content());
+        return msgMap;
     }
 
     /**
@@ -77,17 +142,22 @@ public class ChatController {
     public ResponseEntity<Map<String, Object>> getStatus() {
         Map<String, Object> status = new HashMap<>();
         status.put("status", "running");
-        status.put("messageCount", history.getMessageCount());
+        status.put("messageCount", databaseService.countMessages(
+                currentSessionId(securityContextHelper.getCurrentUserId())));
+        status.put("tokenUsage", chatService.getUsageStats());  // ⭐ SESSION 45: incl. prompt cache reads/writes
+        status.put("resilience", chatService.getResilienceStats());  // ⭐ SESSION 45: retries, hedges, circuit state
         return ResponseEntity.ok(status);
     }
 
     /**
-     * Get all sessions with message counts
-     * GET /api/chat/sessions
+     * Get sessions with message counts, newest first
+     * GET /api/chat/sessions?before=&limit=
+     * ⭐ SESSION 45: Paged - for older sessions pass the last returned id as before
      */
     @GetMapping("/sessions")
-    public ResponseEntity<List<Session>> getSessions() {
-        List<Session> sessions = databaseService.getAllSessions();
+    public ResponseEntity<List<Session>> getSessions(@RequestParam(required = false) Integer before,
+                                                     @RequestParam(defaultValue = "50") int limit) {
+        List<Session> sessions = databaseService.getSessionsPage(before, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
         logger.info("\uD83D\uDCCB Returning {} sessions", sessions.size());
         return ResponseEntity.ok(sessions);
     }
@@ -110,7 +180,7 @@ public class ChatController {
 
         if (newSessionId > 0) {
 
-            this.currentSessionId = newSessionId;
+            conversationRegistry.switchChatSession(securityContextHelper.getCurrentUserId(), newSessionId);
 
             Map<String, Object> result = new HashMap<>();
             result.put("id", newSessionId);
@@ -130,80 +200,96 @@ public class ChatController {
     /**
      * Switch to a different session
      * PUT /api/chat/sessions/{id}/switch
+     * ⭐ SESSION 45: Returns the newest page of messages only - older ones via GET /sessions/{id}/messages
+     * with before = nextBefore
      */
     @PutMapping("/sessions/{id}/switch")
-    public ResponseEntity<Map<String, Object>> switchSession(@PathVariable int id) {
-        // Clear current in-memory history
-        history.clear();
-
-        // Update current session ID
-        this.currentSessionId = id;
-
-        // Load messages from the new session
-        List<String[]> messages = databaseService.loadMessages(id);
-        List<Map<String, String>> messageList = new ArrayList<>();
-
-        for (String[] msg : messages) {
-            if (msg[0].equals("user")) {
-                history.addUserMessage(msg[1]);
-            } else {
-                history.addAssistantMessage(msg[1]);
-            }
-
-            // Add to response list
-            Map<String, String> msgMap = new HashMap<>();
-            msgMap.put("role", msg[0]);
-            msgMap.put("content", msg[1]);
-            messageList.add(msgMap);
-        }
+    public ResponseEntity<Map<String, Object>> switchSession(@PathVariable int id,
+                                                             @RequestParam(defaultValue = "50") int limit) {
+        // Update the user's current session
+        conversationRegistry.switchChatSession(securityContextHelper.getCurrentUserId(), id);
 
-        logger.info("🔄 Switched to session {} ({} messages loaded)", id, messages.size());
-
-        Map<String, Object> result = new HashMap<>();
+        // Load the latest messages from the new session
+        Map<String, Object> result = messagePage(id, null, limit);
         result.put("status", "switched");
         result.put("sessionId", id);
-        result.put("messageCount", history.getMessageCount());
-        result.put("messages", messageList);  // ← Return the messages!
+        result.put("messageCount", databaseService.countMessages(id));
 
+        logger.info("🔄 Switched to session {} ({} messages loaded)", id, ((List<?>) result.get("messages")).size());
         return ResponseEntity.ok(result);
     }
+
+    /**
+     * ⭐ SESSION 45: One page of a session's messages, oldest first within the page.
+     * GET /api/chat/sessions/{id}/messages?before=1234&limit=50
+     * Returns: { "messages": [{id, role, content}, ...], "nextBefore": 1184 } - null once a page comes back short
+     */
+    @GetMapping("/sessions/{id}/messages")
+    public ResponseEntity<Map<String, Object>> getSessionMessages(@PathVariable int id,
+                                                                  @RequestParam(required = false) Integer before,
+                                                                  @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(messagePage(id, before, limit));
+    }
+
+    private Map<String, Object> messagePage(int sessionId, Integer before, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<DatabaseService.MessageRow> page = databaseService.getMessagesPage(sessionId, before, pageSize);
+
+        List<Map<String, Object>> messageList = new ArrayList<>();
+        for (DatabaseService.MessageRow row : page) {
+            messageList.add(toMap(row));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("messages", messageList);
+        result.put("nextBefore", page.size() == pageSize ? page.get(0).id() : null);
+        return result;
+    }
     /**
      * Send a message and get Claude's response
      * POST /api/chat/send
      * Body: { "message": "Your message here" }
+     * ⭐ SESSION 45: Non-blocking - the request thread is released while Claude responds
+     * ⭐ SESSION 45: Ordered per session - a second send waits until the first one's reply is saved
      */
     @PostMapping("/send")
-    public ResponseEntity<Map<String, Object>> sendMessage(@RequestBody Map<String, String> request) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> sendMessage(@RequestBody Map<String, String> request) {
         String userMessage = request.get("message");
 
         // Validate input
         if (userMessage == null || userMessage.isBlank()) {
             Map<String, Object> error = new HashMap<>();
             error.put("error", "Message cannot be empty");
-            return ResponseEntity.badRequest().body(error);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
         }
 
         logger.info("Received message: {}", userMessage);
 
-        // Add to history and send
-        history.addUserMessage(userMessage);
-        databaseService.saveMessage(currentSessionId,"user", userMessage);
-        String response = chatService.sendMessage(history);
-
-        Map<String, Object> result = new HashMap<>();
-
-        if (response != null) {
-            // Save Claude's response to history
-            history.addAssistantMessage(response);
-            databaseService.saveMessage(currentSessionId,"assistant", response);
-
-            result.put("response", response);
-            result.put("messageCount", history.getMessageCount());
-            return ResponseEntity.ok(result);
-        } else {
-            result.put("error", "Failed to get response from Claude");
-            return ResponseEntity.internalServerError().body(result);
-        }
+        int sessionId = currentSessionId(securityContextHelper.getCurrentUserId());
+
+        return conversationRegistry.submit(ConversationRegistry.chatKey(sessionId), () -> {
+            // Add to history and send
+            ConversationHistory history = loadHistory(sessionId);
+            history.addUserMessage(userMessage);
+            databaseService.saveMessage(sessionId, "user", userMessage);
+
+            return chatService.sendMessageAsync(history).thenApply(response -> {
+                Map<String, Object> result = new HashMap<>();
+
+                if (response != null) {
+                    // Save Claude's response to history
+                    history.addAssistantMessage(response);
+                    databaseService.saveMessage(sessionId, "assistant", response);
+
+                    result.put("response", response);
+                    result.put("messageCount", history.getMessageCount());
+                    return ResponseEntity.ok(result);
+                } else {
+                    result.put("error", "Failed to get response from Claude");
+                    return ResponseEntity.internalServerError().body(result);
+                }
+            });
+        });
     }
 
     /**
@@ -212,8 +298,13 @@ public class ChatController {
      */
     @PostMapping("/reset")
     public ResponseEntity<Map<String, String>> resetChat() {
-        history.clear();
-        databaseService.clearMessages(currentSessionId);
+        int sessionId = currentSessionId(securityContextHelper.getCurrentUserId());
+
+        // ⭐ SESSION 45: After any turn in flight, so its reply doesn't land in the cleared session
+        conversationRegistry.call(ConversationRegistry.chatKey(sessionId), () -> {
+            databaseService.clearMessages(sessionId);
+            return null;
+        });
         logger.info("Conversation history cleared");
 
         Map<String, String> result = new HashMap<>();
@@ -2,16 +2,20 @@ package dev.laszlo.controller;
 
 import dev.laszlo.model.StoryContent;
 import dev.laszlo.model.UserCurrency;
+import dev.laszlo.security.SecurityContextHelper;
 import dev.laszlo.service.CurrencyService;
+import dev.laszlo.service.GalleryCatalog;
 import dev.laszlo.service.GalleryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @RestController
 @RequestMapping("/api/gallery")
@@ -20,27 +24,33 @@ public class GalleryController {
 
     private final GalleryService galleryService;
     private final CurrencyService currencyService;
+    private final SecurityContextHelper securityContextHelper;
 
     // Constructor injection
-    public GalleryController(GalleryService galleryService, CurrencyService currencyService) {
+    public GalleryController(GalleryService galleryService, CurrencyService currencyService,
+                             SecurityContextHelper securityContextHelper) {
         this.galleryService = galleryService;
         this.currencyService = currencyService;
+        this.securityContextHelper = securityContextHelper;
     }
 
     /**
      * GET /api/gallery/{storyId}/content?type=scene
      * Get all content for a story with optional type filter
+     * ⭐ SESSION 45: ETag / If-None-Match - 304 without a body when catalog, unlocks and balance are unchanged
      */
     @GetMapping("/{storyId}/content")
     public ResponseEntity<Map<String, Object>> getGalleryContent(
             @PathVariable String storyId,
-            @RequestParam(required = false) String type) {
+            @RequestParam(required = false) String type,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
 
         try {
-            String userId = "default"; // TODO: Get from auth in future
+            String userId = securityContextHelper.getCurrentUserId();  // ⭐ SESSION 45: The account narrative turns award gems to
 
-            // Get content catalog
-            List<StoryContent> content = galleryService.getStoryContent(storyId, type);
+            // Get content catalog (cached - see GalleryCatalog)
+            GalleryCatalog.StoryCatalog catalog = galleryService.getCatalog(storyId);
+            List<StoryContent> content = catalog != null ? catalog.getContent(type) : List.of();
 
             // Get user's unlocked content IDs
             List<Integer> unlockedIds = galleryService.getUserUnlocks(userId, storyId);
@@ -48,6 +58,13 @@ public class GalleryController {
             // Get user's gem balance
             int gemBalance = currencyService.getGemBalance(userId);
 
+            // No ETag if the catalog failed to load - never let a client pin an error response
+            String etag = catalog != null ? etag(catalog, type, unlockedIds, gemBalance) : null;
+            if (etag != null && matches(ifNoneMatch, etag)) {
+                logger.debug("🖼️ Gallery content not modified for story: {}", storyId);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
             Map<String, Object> response = new HashMap<>();
             response.put("content", content);
             response.put("unlockedIds", unlockedIds);
@@ -57,7 +74,11 @@ public class GalleryController {
             logger.info("🖼️ Gallery content retrieved for story: {} ({} items, {} unlocked)",
                     storyId, content.size(), unlockedIds.size());
 
-            return ResponseEntity.ok(response);
+            ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+            if (etag != null) {
+                ok.eTag(etag);
+            }
+            return ok.body(response);
 
         } catch (Exception e) {
             logger.error("❌ Error retrieving gallery content: {}", e.getMessage());
@@ -99,18 +120,19 @@ public class GalleryController {
     /**
      * POST /api/gallery/unlock
      * Unlock a piece of content by spending gems
-     * Request body: {"userId": "default", "contentId": 1}
+     * Request body: {"contentId": 1} - spends the authenticated user's gems ("default" when anonymous)
+     * ⭐ SESSION 45: Idempotent - repeating an unlock returns success with "alreadyUnlocked": true, no charge
      */
     @PostMapping("/unlock")
     public ResponseEntity<Map<String, Object>> unlockContent(@RequestBody Map<String, Object> request) {
         try {
-            String userId = request.getOrDefault("userId", "default").toString();
+            String userId = securityContextHelper.getCurrentUserId();
             int contentId = Integer.parseInt(request.get("contentId").toString());
 
             // Attempt to unlock
-            boolean unlocked = galleryService.unlockContent(userId, contentId);
+            GalleryService.UnlockStatus status = galleryService.unlockContent(userId, contentId);
 
-            if (unlocked) {
+            if (status.isUnlocked()) {
                 // Get updated balance
                 int newBalance = currencyService.getGemBalance(userId);
 
@@ -118,17 +140,26 @@ public class GalleryController {
                 response.put("success", true);
                 response.put("contentId", contentId);
                 response.put("newBalance", newBalance);
+                response.put("alreadyUnlocked", status == GalleryService.UnlockStatus.ALREADY_UNLOCKED);
 
                 logger.info("🔓 Content {} unlocked for user {} (new balance: {})",
                         contentId, userId, newBalance);
 
                 return ResponseEntity.ok(response);
-            } else {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("error", "Insufficient gems or content already unlocked");
+            }
 
-                return ResponseEntity.badRequest().body(response);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            switch (status) {
+                case INSUFFICIENT_GEMS:
+                    response.put("error", "Insufficient gems");
+                    return ResponseEntity.badRequest().body(response);
+                case NOT_FOUND:
+                    response.put("error", "Content not found");
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+                default:
+                    response.put("error", "Failed to unlock content");
+                    return ResponseEntity.internalServerError().body(response);
             }
 
         } catch (Exception e) {
@@ -179,4 +210,34 @@ public class GalleryController {
         status.put("status", "running");
         return ResponseEntity.ok(status);
     }
+
+    /**
+     * ⭐ SESSION 45: ETag of the whole /content response - the catalog's content hash plus everything
+     * per-user in the body, so an unlock or a gem award changes it too.
+     */
+    private static String etag(GalleryCatalog.StoryCatalog catalog, String type, List<Integer> unlockedIds,
+                               int gemBalance) {
+        String catalogTag = catalog.getEtag().substring(1, catalog.getEtag().length() - 1);
+        int userPart = Objects.hash(type == null || type.isEmpty() ? null : type, unlockedIds, gemBalance);
+        return "\"" + catalogTag + "-" + Integer.toHexString(userPart) + "\"";
+    }
+
+    /**
+     * If-None-Match can list several tags, or "*"; weak (W/) tags compare equal to strong ones for GET.
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
\ No newline at end of file
@@ -5,10 +5,17 @@ import dev.laszlo.database.DatabaseService;
 import dev.laszlo.model.Character;
 import dev.laszlo.model.NarrativeResponse;
 import dev.laszlo.model.Session;
+import dev.laszlo.security.SecurityContextHelper;
 import dev.laszlo.service.ConversationHistory;
-import dev.laszlo.service.CurrencyService;
+import dev.laszlo.service.ConversationRegistry;
+import dev.laszlo.service.ConversationSummarizer;
 import dev.laszlo.service.NarrativeEngine;
 import dev.laszlo.service.StorySaveService;
+import dev.laszlo.service.StorySessionCache;
+import dev.laszlo.service.StreamingJsonFieldExtractor;
+import dev.laszlo.service.TurnCommitService;
+import dev.laszlo.service.TurnLog;
+import dev.laszlo.service.TurnMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import dev.laszlo.dto.SaveInfoDTO;
@@ -17,14 +24,17 @@ import dev.laszlo.dto.CompletionStats;
 import java.time.LocalDateTime;
 import java.util.stream.Collectors;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST controller for narrative interactions.
@@ -42,9 +52,22 @@ public class NarrativeController {
     private final CharacterDatabase characterDb;
     private final DatabaseService databaseService;
     private final StorySaveService storySaveService;  // ⭐ SESSION 26: Database save service
-    private final CurrencyService currencyService;
+    private final StorySessionCache storySessionCache;  // ⭐ SESSION 45: Write-behind cache in front of it
+    private final TurnCommitService turnCommitService;  // ⭐ SESSION 45: Turn writes in one transaction
+    private final ConversationSummarizer conversationSummarizer;  // ⭐ SESSION 45: Rolling context summary
+    private final TurnMetrics turnMetrics;  // ⭐ SESSION 45: Per-turn latency breakdown (Micrometer)
+    private final SecurityContextHelper securityContextHelper;  // ⭐ SESSION 45: Saves belong to the logged-in user
+    private final ConversationRegistry conversationRegistry;  // ⭐ SESSION 45: Turns on one save run in order
 
-    private int currentSessionId;
+    // Legacy sessions/messages/user_choices log shared by all narrative turns - fixed at startup.
+    // ⭐ SESSION 45: Conversation state is per (user, story, slot) - see StorySessionCache and ConversationRegistry
+    private final int legacySessionId;
+
+    // ⭐ SESSION 45: SSE connections stay open for the whole LLM turn (dialogue + choices)
+    private static final long STREAM_TIMEOUT_MS = 120_000L;
+
+    // ⭐ SESSION 45: Largest transcript page a client can ask for
+    private static final int MAX_PAGE_SIZE = 200;
 
     /**
      * Spring automatically injects these dependencies.
@@ -55,32 +78,44 @@ public class NarrativeController {
             CharacterDatabase characterDb,
             DatabaseService databaseService,
             StorySaveService storySaveService,  // ⭐ NEW
-            CurrencyService currencyService
+            StorySessionCache storySessionCache,
+            TurnCommitService turnCommitService,
+            ConversationSummarizer conversationSummarizer,
+            TurnMetrics turnMetrics,
+            SecurityContextHelper securityContextHelper,
+            ConversationRegistry conversationRegistry
     ) {
         this.narrativeEngine = narrativeEngine;
         this.characterDb = characterDb;
         this.databaseService = databaseService;
         this.storySaveService = storySaveService;  // ⭐ NEW
-        this.currencyService = currencyService;
-
-        // Initialize with a default session
-        List<Session> sessions = databaseService.getAllSessions();
+        this.storySessionCache = storySessionCache;
+        this.turnCommitService = turnCommitService;
+        this.conversationSummarizer = conversationSummarizer;
+        this.turnMetrics = turnMetrics;
+        this.securityContextHelper = securityContextHelper;
+        this.conversationRegistry = conversationRegistry;
+
+        // Initialize with a default session (⭐ SESSION 45: only the newest one is read)
+        List<Session> sessions = databaseService.getSessionsPage(null, 1);
         if (sessions.isEmpty()) {
-            this.currentSessionId = databaseService.createSession("Narrative Session");
+            this.legacySessionId = databaseService.createSession("Narrative Session");
         } else {
-            this.currentSessionId = sessions.get(0).getId();
+            this.legacySessionId = sessions.get(0).getId();
         }
 
-        logger.info("🎭 NarrativeController initialized with session {} and persistent save system", currentSessionId);
+        logger.info("🎭 NarrativeController initialized with session {} and persistent save system", legacySessionId);
     }
 
     /**
      * ⭐ SESSION 26: UPDATED - Get or create conversation history from DATABASE.
      * Each story maintains independent conversation context.
      * Now persists across server restarts!
+     * ⭐ SESSION 45: Served from the write-behind cache while the story is active
+     * ⭐ SESSION 45: Per user - resolve userId on the request thread (the security context doesn't follow async work)
      */
-    private ConversationHistory getHistoryForStory(String storyId, int saveSlot) {
-        ConversationHistory history = storySaveService.loadStoryProgress(storyId, saveSlot);
+    private ConversationHistory getHistoryForStory(String userId, String storyId, int saveSlot) {
+        ConversationHistory history = storySessionCache.load(userId, storyId, saveSlot);
 
         if (history != null) {
             logger.info("📂 Loaded existing save for story: {} slot: {} ({} messages)",
@@ -95,9 +130,15 @@ public class NarrativeController {
     /**
      * ⭐ SESSION 26: NEW - Save conversation progress to database.
      * Called after each user interaction to persist state.
+     * ⭐ SESSION 45: Goes through the write-behind cache (batched flushes to story_saves)
+     * ⭐ SESSION 45: Kicks off a background context summary once old turns outgrow the token budget
+     * ⭐ SESSION 45: The rest of the turn's writes (legacy rows, completion, gems) commit together with it
      */
-    private void saveHistoryForStory(String storyId, int saveSlot, ConversationHistory history, String currentSpeaker) {
-        boolean saved = storySaveService.saveStoryProgress(storyId, saveSlot, history, currentSpeaker);
+    private void saveHistoryForStory(String userId, String storyId, int saveSlot, ConversationHistory history,
+                                     String currentSpeaker, TurnCommitService.TurnWrites turn) {
+        // Endings flush immediately - the save row must exist to be marked completed
+        boolean saved = storySessionCache.commitTurn(userId, storyId, saveSlot, history, currentSpeaker,
+                turn.isCompleted(), saves -> turnCommitService.commit(turn, saves));
 
         if (saved) {
             logger.debug("💾 Auto-saved progress for story: {} slot: {} ({} messages)",
@@ -105,6 +146,8 @@ public class NarrativeController {
         } else {
             logger.warn("⚠️ Failed to save progress for story: {} slot: {}", storyId, saveSlot);
         }
+
+        conversationSummarizer.summarizeIfNeeded(userId, storyId, saveSlot, history);
     }
 
     /**
@@ -172,7 +215,8 @@ public class NarrativeController {
      * }
      */
     @PostMapping("/speak")
-    public ResponseEntity<NarrativeResponse> speak(@RequestBody Map<String, String> request) {
+    public CompletableFuture<ResponseEntity<NarrativeResponse>> speak(@RequestBody Map<String, String> request) {
+        long turnStart = System.nanoTime();
         String userMessage = request.get("message");
         String speakerId = request.get("speaker");
         String storyId = request.get("storyId");  // ⭐ NEW: Get storyId from request
@@ -182,7 +226,7 @@ public class NarrativeController {
         if (userMessage == null || userMessage.isBlank()) {
             NarrativeResponse error = new NarrativeResponse();
             error.setDialogue("Error: Message cannot be empty");
-            return ResponseEntity.badRequest().body(error);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
         }
 
         if (speakerId == null || speakerId.isBlank()) {
@@ -195,38 +239,82 @@ public class NarrativeController {
             logger.debug("No storyId provided, defaulting to 'observatory'");
         }
 
-        logger.info("💬 User: '{}' | Speaker: {} | Story: {}", userMessage, speakerId, storyId);
+        logger.info("💬 User: '{}' | Speaker: {} | Story: {}", TurnLog.truncate(userMessage), speakerId, storyId);
+        String userId = securityContextHelper.getCurrentUserId();
 
         // Get the character
         Character speaker = characterDb.getCharacter(speakerId);
         if (speaker == null) {
             NarrativeResponse error = new NarrativeResponse();
             error.setDialogue("Error: Character not found: " + speakerId);
-            return ResponseEntity.badRequest().body(error);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
         }
 
-        // ⭐ SESSION 26: Load story-specific history from database
-        ConversationHistory history = getHistoryForStory(storyId, saveSlot);
+        // ⭐ SESSION 45: Non-blocking - the request thread is released while Claude responds
+        // ⭐ SESSION 45: Load -> Claude -> save runs as one turn, after any earlier turn on this save
+        String finalSpeakerId = speakerId;
+        String finalStoryId = storyId;
+        return conversationRegistry.submit(ConversationRegistry.storyKey(userId, storyId, saveSlot), () -> {
+            // ⭐ SESSION 26: Load story-specific history from database
+            ConversationHistory history = loadHistoryTimed(userId, finalStoryId, saveSlot, finalSpeakerId);
+
+            return narrativeEngine.generateResponseWithChoicesAsync(
+                    userMessage,
+                    finalSpeakerId,
+                    finalStoryId,
+                    history  // ✅ NEW: story-scoped history (now from database)
+            ).thenApply(response -> {
+                completeSpeakTurn(userId, finalStoryId, saveSlot, userMessage, finalSpeakerId, history, response);
+                return response;
+            });
+        }).thenApply(response -> {
+            recordTurn("speak", finalStoryId, finalSpeakerId, response, turnStart);
+            return ResponseEntity.ok(response);
+        });
+    }
 
-        NarrativeResponse response = narrativeEngine.generateResponseWithChoices(
-                userMessage,
-                speakerId,
-                storyId,
-                history  // ✅ NEW: story-scoped history (now from database)
-        );
+    /**
+     * ⭐ SESSION 45: getHistoryForStory, timed as the history_load phase.
+     */
+    private ConversationHistory loadHistoryTimed(String userId, String storyId, int saveSlot, String characterId) {
+        return turnMetrics.timePhase(TurnMetrics.Phase.HISTORY_LOAD, storyId, characterId,
+                () -> getHistoryForStory(userId, storyId, saveSlot));
+    }
 
-        // Save to old session database (backwards compatibility)
-        databaseService.saveMessage(currentSessionId, "user", userMessage);
-        databaseService.saveMessage(currentSessionId, speakerId, response.getDialogue());
+    /**
+     * ⭐ SESSION 45: Whole-turn timer (ok / degraded / ending).
+     */
+    private void recordTurn(String endpoint, String storyId, String characterId, NarrativeResponse response,
+                            long turnStart) {
+        String outcome = response.isDegraded() ? "degraded" : response.isEnding() ? "ending" : "ok";
+        turnMetrics.recordTurn(endpoint, storyId, characterId, narrativeEngine.getChoiceMode(storyId).name(),
+                outcome, turnStart);
+    }
+
+    /**
+     * Persist a finished /speak turn: legacy session messages + story save (one transaction).
+     */
+    private void completeSpeakTurn(String userId, String storyId, int saveSlot, String userMessage, String speakerId,
+                                   ConversationHistory history, NarrativeResponse response) {
+        // ⭐ SESSION 45: Claude was unavailable - nothing happened in the story, so nothing to save
+        if (response.isDegraded()) {
+            logger.warn("⚠️ Degraded turn for {} - progress not saved", storyId);
+            return;
+        }
+
+        // Old session database rows (backwards compatibility)
+        TurnCommitService.TurnWrites turn =
+                new TurnCommitService.TurnWrites(userId, storyId, saveSlot, legacySessionId)
+                .message("user", userMessage)
+                .message(speakerId, response.getDialogue());
 
         // ⭐ SESSION 26: Auto-save progress to database
-        saveHistoryForStory(storyId, saveSlot, history, response.getSpeaker());
+        turnMetrics.timePhase(TurnMetrics.Phase.SAVE, storyId, speakerId,
+                () -> saveHistoryForStory(userId, storyId, saveSlot, history, response.getSpeaker(), turn));
 
         logger.info("✅ {} responded with {} choices (progress auto-saved)",
                 response.getSpeakerName(),
                 response.getChoices().size());
-
-        return ResponseEntity.ok(response);
     }
 
     /**
@@ -245,7 +333,8 @@ public class NarrativeController {
      * Response: NarrativeResponse with new dialogue and choices
      */
     @PostMapping("/choose")
-    public ResponseEntity<NarrativeResponse> choose(@RequestBody Map<String, String> request) {
+    public CompletableFuture<ResponseEntity<NarrativeResponse>> choose(@RequestBody Map<String, String> request) {
+        long turnStart = System.nanoTime();
         String choiceId = request.get("choiceId");
         String choiceLabel = request.get("label");
         String nextSpeaker = request.get("nextSpeaker");
@@ -256,7 +345,7 @@ public class NarrativeController {
         if (choiceId == null || nextSpeaker == null) {
             NarrativeResponse error = new NarrativeResponse();
             error.setDialogue("Error: Invalid choice (missing choiceId or nextSpeaker)");
-            return ResponseEntity.badRequest().body(error);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
         }
 
         if (choiceLabel == null) {
@@ -269,50 +358,241 @@ public class NarrativeController {
             logger.debug("No storyId provided, defaulting to 'observatory'");
         }
 
-        logger.info("🎯 User chose: '{}' -> {} | Story: {}", choiceLabel, nextSpeaker, storyId);
-
-        // Save the choice to old database (backwards compatibility)
-        databaseService.saveUserChoice(currentSessionId, choiceId, choiceLabel, nextSpeaker);
+        logger.info("🎯 User chose: '{}' -> {} | Story: {}", TurnLog.truncate(choiceLabel), nextSpeaker, storyId);
 
         // Create transition message based on the choice
         String transitionMessage = "You chose: " + choiceLabel;
+        String userId = securityContextHelper.getCurrentUserId();
+
+        // ⭐ SESSION 45: Non-blocking - the request thread is released while Claude responds
+        // ⭐ SESSION 45: Load -> Claude -> save runs as one turn, after any earlier turn on this save
+        String finalStoryId = storyId;
+        String finalChoiceLabel = choiceLabel;
+        return conversationRegistry.submit(ConversationRegistry.storyKey(userId, storyId, saveSlot), () -> {
+            // ⭐ SESSION 26: Load story-specific history from database
+            ConversationHistory history = loadHistoryTimed(userId, finalStoryId, saveSlot, nextSpeaker);
+
+            return narrativeEngine.generateResponseWithChoicesAsync(
+                    transitionMessage,
+                    nextSpeaker,
+                    finalStoryId,
+                    history  // ✅ NEW: story-scoped history (now from database)
+            ).thenApply(response -> {
+                completeChooseTurn(userId, finalStoryId, saveSlot, choiceId, finalChoiceLabel, transitionMessage,
+                        nextSpeaker, history, response);
+                return response;
+            });
+        }).thenApply(response -> {
+            recordTurn("choose", finalStoryId, nextSpeaker, response, turnStart);
+            return ResponseEntity.ok(response);
+        });
+    }
 
-        // ⭐ SESSION 26: Load story-specific history from database
-        ConversationHistory history = getHistoryForStory(storyId, saveSlot);
-
-        NarrativeResponse response = narrativeEngine.generateResponseWithChoices(
-                transitionMessage,
-                nextSpeaker,
-                storyId,
-                history  // ✅ NEW: story-scoped history (now from database)
-        );
-
-        // Save messages to old session database (backwards compatibility)
-        databaseService.saveMessage(currentSessionId, "user", transitionMessage);
-        databaseService.saveMessage(currentSessionId, nextSpeaker, response.getDialogue());
+    /**
+     * Persist a finished /choose turn: legacy choice + session messages, story save, completion and
+     * gem award - one transaction (TurnCommitService).
+     */
+    private void completeChooseTurn(String userId, String storyId, int saveSlot, String choiceId, String choiceLabel,
+                                    String transitionMessage, String nextSpeaker,
+                                    ConversationHistory history, NarrativeResponse response) {
+        // ⭐ SESSION 45: Claude was unavailable - no save, no gems for a turn that didn't happen
+        if (response.isDegraded()) {
+            logger.warn("⚠️ Degraded turn for {} - progress not saved", storyId);
+            return;
+        }
 
-        // ⭐ SESSION 26: Auto-save progress to database
-        saveHistoryForStory(storyId, saveSlot, history, response.getSpeaker());
+        // Choice + messages to old session database (backwards compatibility)
+        TurnCommitService.TurnWrites turn =
+                new TurnCommitService.TurnWrites(userId, storyId, saveSlot, legacySessionId)
+                .choice(choiceId, choiceLabel, nextSpeaker)
+                .message("user", transitionMessage)
+                .message(nextSpeaker, response.getDialogue());
 
         // ⭐ SESSION 34: Handle story completion and gem awards using ending detection
-        String userId = "default";
-
         if (response.isEnding() && response.getEndingId() != null) {
             // Story completed with specific ending - award completion bonus
-            storySaveService.markStoryCompleted(storyId, saveSlot, userId, response.getEndingId());
-            currencyService.awardGems(userId, 100, "story_completed", storyId);
+            turn.completed(response.getEndingId()).gems(100, "story_completed");
             logger.info("🏆 Story {} completed with ending '{}' ! +100 gem bonus", storyId, response.getEndingId());
         } else {
             // Story continues - award per-choice gems
-            currencyService.awardGems(userId, 5, "choice_made", storyId);
+            turn.gems(5, "choice_made");
             logger.debug("💎 +5 gems for choice in {}", storyId);
         }
 
+        // ⭐ SESSION 26: Auto-save progress to database
+        turnMetrics.timePhase(TurnMetrics.Phase.SAVE, storyId, nextSpeaker,
+                () -> saveHistoryForStory(userId, storyId, saveSlot, history, response.getSpeaker(), turn));
+
         logger.info("✅ {} responded after choice with {} new choices (progress auto-saved)",
                 response.getSpeakerName(),
                 response.getChoices().size());
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // ⭐ SESSION 45: STREAMING ENDPOINTS (Server-Sent Events)
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Streaming version of /speak. Same request body, but the response is an SSE stream:
+     * <pre>
+     * event: dialogue    data: {"delta": "The stars "}     (repeated while Claude writes)
+     * event: actionText  data: {"delta": "She turns..."}   (repeated)
+     * event: mood        data: {"value": "wary"}
+     * event: complete    data: {full NarrativeResponse incl. choices / isEnding}
+     * event: error       data: {"error": "..."}            (only on failure)
+     * </pre>
+     * POST /api/narrative/speak/stream
+     */
+    @PostMapping(value = "/speak/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> speakStream(@RequestBody Map<String, String> request) {
+        long turnStart = System.nanoTime();
+        String userMessage = request.get("message");
+        String speakerId = request.get("speaker");
+        String storyId = request.get("storyId");
+        int saveSlot = Integer.parseInt(request.getOrDefault("saveSlot", "1"));
 
-        return ResponseEntity.ok(response);
+        if (userMessage == null || userMessage.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (speakerId == null || speakerId.isBlank()) {
+            speakerId = "narrator";
+        }
+        if (storyId == null || storyId.isBlank()) {
+            storyId = "observatory";
+        }
+        if (characterDb.getCharacter(speakerId) == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        logger.info("💬 [stream] User: '{}' | Speaker: {} | Story: {}", TurnLog.truncate(userMessage), speakerId, storyId);
+
+        String userId = securityContextHelper.getCurrentUserId();
+        String finalSpeakerId = speakerId;
+        String finalStoryId = storyId;
+        SseEmitter emitter = newStreamEmitter("speak_stream");
+
+        Thread.ofVirtual().name("narrative-stream-speak").start(TurnLog.wrap(() -> {
+            try {
+                NarrativeResponse response = conversationRegistry.call(
+                        ConversationRegistry.storyKey(userId, finalStoryId, saveSlot), () -> {
+                            ConversationHistory history = loadHistoryTimed(userId, finalStoryId, saveSlot, finalSpeakerId);
+                            NarrativeResponse turn = narrativeEngine.generateResponseWithChoicesStreaming(
+                                    userMessage, finalSpeakerId, finalStoryId, history, sseFieldListener(emitter));
+
+                            completeSpeakTurn(userId, finalStoryId, saveSlot, userMessage, finalSpeakerId, history, turn);
+                            return turn;
+                        });
+                recordTurn("speak_stream", finalStoryId, finalSpeakerId, response, turnStart);
+
+                sendQuietly(emitter, "complete", response);
+                emitter.complete();
+            } catch (Exception e) {
+                failStream(emitter, e);
+            }
+        }));
+
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Streaming version of /choose. Same request body and event sequence as /speak/stream.
+     * POST /api/narrative/choose/stream
+     */
+    @PostMapping(value = "/choose/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> chooseStream(@RequestBody Map<String, String> request) {
+        long turnStart = System.nanoTime();
+        String choiceId = request.get("choiceId");
+        String choiceLabel = request.getOrDefault("label", "Continue");
+        String nextSpeaker = request.get("nextSpeaker");
+        String storyId = request.get("storyId");
+        int saveSlot = Integer.parseInt(request.getOrDefault("saveSlot", "1"));
+
+        if (choiceId == null || nextSpeaker == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (storyId == null || storyId.isBlank()) {
+            storyId = "observatory";
+        }
+
+        logger.info("🎯 [stream] User chose: '{}' -> {} | Story: {}", TurnLog.truncate(choiceLabel), nextSpeaker, storyId);
+
+        String transitionMessage = "You chose: " + choiceLabel;
+        String userId = securityContextHelper.getCurrentUserId();
+        String finalStoryId = storyId;
+        SseEmitter emitter = newStreamEmitter("choose_stream");
+
+        Thread.ofVirtual().name("narrative-stream-choose").start(TurnLog.wrap(() -> {
+            try {
+                NarrativeResponse response = conversationRegistry.call(
+                        ConversationRegistry.storyKey(userId, finalStoryId, saveSlot), () -> {
+                            ConversationHistory history = loadHistoryTimed(userId, finalStoryId, saveSlot, nextSpeaker);
+                            NarrativeResponse turn = narrativeEngine.generateResponseWithChoicesStreaming(
+                                    transitionMessage, nextSpeaker, finalStoryId, history, sseFieldListener(emitter));
+
+                            completeChooseTurn(userId, finalStoryId, saveSlot, choiceId, choiceLabel, transitionMessage,
+                                    nextSpeaker, history, turn);
+                            return turn;
+                        });
+                recordTurn("choose_stream", finalStoryId, nextSpeaker, response, turnStart);
+
+                sendQuietly(emitter, "complete", response);
+                emitter.complete();
+            } catch (Exception e) {
+                failStream(emitter, e);
+            }
+        }));
+
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * ⭐ SESSION 45: SSE emitter for a streaming turn. A client that disconnects or times out only
+     * stops the events - the turn keeps generating and is saved, so that is logged, not treated as a failure.
+     */
+    private SseEmitter newStreamEmitter(String endpoint) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        emitter.onTimeout(() -> {
+            logger.warn("⚠️ [{}] Stream timed out after {} ms - the turn is still saved", endpoint, STREAM_TIMEOUT_MS);
+            emitter.complete();
+        });
+        emitter.onError(e -> logger.debug("[{}] Stream client disconnected: {}", endpoint, e.getMessage()));
+        return emitter;
+    }
+
+    /**
+     * Relay dialogue/actionText deltas and the final mood to the SSE client.
+     */
+    private StreamingJsonFieldExtractor.FieldListener sseFieldListener(SseEmitter emitter) {
+        return new StreamingJsonFieldExtractor.FieldListener() {
+            @Override
+            public void onFieldDelta(String field, String delta) {
+                if (!"mood".equals(field)) {
+                    sendQuietly(emitter, field, Map.of("delta", delta));
+                }
+            }
+
+            @Override
+            public void onFieldComplete(String field, String value) {
+                if ("mood".equals(field)) {
+                    sendQuietly(emitter, field, Map.of("value", value.trim()));
+                }
+            }
+        };
+    }
+
+    private void sendQuietly(SseEmitter emitter, String eventName, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data));
+        } catch (Exception e) {
+            // Client went away - keep generating so the turn is still saved
+            logger.debug("SSE send failed ({}): {}", eventName, e.getMessage());
+        }
+    }
+
+    private void failStream(SseEmitter emitter, Exception e) {
+        logger.error("❌ Streaming turn failed: {}", e.getMessage(), e);
+        sendQuietly(emitter, "error", Map.of("error", "Failed to generate response"));
+        emitter.complete();
     }
 
     /**
@@ -324,19 +604,29 @@ public class NarrativeController {
         Map<String, Object> status = new HashMap<>();
         status.put("status", "running");
         status.put("charactersAvailable", characterDb.getAllCharacters().size());
-        status.put("currentSession", currentSessionId);
-        status.put("choiceCount", databaseService.getChoiceCount(currentSessionId));
+        status.put("currentSession", legacySessionId);
+        status.put("choiceCount", databaseService.getChoiceCount(legacySessionId));
         return ResponseEntity.ok(status);
     }
 
+    /**
+     * ⭐ SESSION 45: Per-turn latency (p50/p99) for each choice generation mode, overall and per story
+     * (a view of the storyforge.turn timers - in Prometheus, group by the choice_mode tag).
+     * GET /api/narrative/choice-latency
+     */
+    @GetMapping("/choice-latency")
+    public ResponseEntity<Map<String, Object>> getChoiceLatency() {
+        return ResponseEntity.ok(narrativeEngine.getChoiceLatencyStats());
+    }
+
     /**
      * NEW: Session 14 - Get choice history for current session.
      * GET /api/narrative/choices
      */
     @GetMapping("/choices")
     public ResponseEntity<List<String[]>> getChoiceHistory() {
-        List<String[]> choices = databaseService.getChoiceHistory(currentSessionId);
-        logger.info("📊 Returning {} choices from session {}", choices.size(), currentSessionId);
+        List<String[]> choices = databaseService.getChoiceHistory(legacySessionId);
+        logger.info("📊 Returning {} choices from session {}", choices.size(), legacySessionId);
         return ResponseEntity.ok(choices);
     }
 
@@ -352,7 +642,8 @@ public class NarrativeController {
     @GetMapping("/saves")
     public ResponseEntity<List<SaveInfoDTO>> getAllSaves() {
         try {
-            String userId = "default";  // Future: get from authentication
+            String userId = securityContextHelper.getCurrentUserId();
+            storySessionCache.flushUser(userId);  // ⭐ SESSION 45: Show progress still in the write-behind cache
             List<StorySaveService.SaveInfo> saves = storySaveService.getAllSavesForUser(userId);
 
             // Convert SaveInfo to SaveInfoDTO (⭐ SESSION 34: Include endingId and completedAt)
@@ -387,7 +678,8 @@ public class NarrativeController {
     @GetMapping("/saves/{storyId}")
     public ResponseEntity<SaveInfoDTO> getSaveByStory(@PathVariable String storyId) {
         try {
-            String userId = "default";  // Future: get from authentication
+            String userId = securityContextHelper.getCurrentUserId();
+            storySessionCache.flushUser(userId);  // ⭐ SESSION 45: Show progress still in the write-behind cache
             StorySaveService.SaveInfo save = storySaveService.getSaveByStoryId(userId, storyId);
 
             if (save == null) {
@@ -423,7 +715,8 @@ public class NarrativeController {
     @DeleteMapping("/saves/{storyId}")
     public ResponseEntity<Void> deleteSave(@PathVariable String storyId) {
         try {
-            String userId = "default";  // Future: get from authentication
+            String userId = securityContextHelper.getCurrentUserId();
+            storySessionCache.evict(userId, storyId, 1);
             boolean deleted = storySaveService.deleteSaveByStoryId(userId, storyId);  // ⭐ FIXED
 
             if (deleted) {
@@ -455,7 +748,8 @@ public class NarrativeController {
     @GetMapping("/saves/story/{storyId}")
     public ResponseEntity<List<SaveInfoDTO>> getSavesForStory(@PathVariable String storyId) {
         try {
-            String userId = "default";  // Future: get from authentication
+            String userId = securityContextHelper.getCurrentUserId();
+            storySessionCache.flushUser(userId);  // ⭐ SESSION 45: Show progress still in the write-behind cache
             List<StorySaveService.SaveInfo> saves = storySaveService.getAllSavesForStory(userId, storyId);
 
             // Convert SaveInfo to SaveInfoDTO (⭐ SESSION 34: Include endingId and completedAt)
@@ -496,8 +790,9 @@ public class NarrativeController {
             @PathVariable int saveSlot
     ) {
         try {
-            String userId = "default";  // Future: get from authentication
-            boolean deleted = storySaveService.deleteSave(storyId, saveSlot);
+            String userId = securityContextHelper.getCurrentUserId();
+            storySessionCache.evict(userId, storyId, saveSlot);
+            boolean deleted = storySaveService.deleteSave(userId, storyId, saveSlot);
 
             if (deleted) {
                 logger.info("🗑️ Deleted save for story: {} slot: {}", storyId, saveSlot);
@@ -513,6 +808,40 @@ public class NarrativeController {
         }
     }
 
+    /**
+     * ⭐ SESSION 45: One page of a save's transcript, oldest first within the page.
+     * Walk backwards by passing the returned nextBefore until it is null.
+     *
+     * GET /api/narrative/saves/{storyId}/{saveSlot}/messages?before=120&limit=50
+     *
+     * Returns: {messages: [{seq: 70, role: "user", content: "..."}, ...], total: 180, nextBefore: 70}
+     */
+    @GetMapping("/saves/{storyId}/{saveSlot}/messages")
+    public ResponseEntity<StorySaveService.TranscriptPage> getSaveMessages(
+            @PathVariable String storyId,
+            @PathVariable int saveSlot,
+            @RequestParam(required = false) Integer before,
+            @RequestParam(defaultValue = "50") int limit
+    ) {
+        try {
+            String userId = securityContextHelper.getCurrentUserId();
+            storySessionCache.flush(userId, storyId, saveSlot);  // Include turns still in the write-behind cache
+            StorySaveService.TranscriptPage page = storySaveService.getTranscriptPage(
+                    userId, storyId, saveSlot, before, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+
+            if (page == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            logger.info("📜 Returning {} messages for story: {} slot: {}", page.messages().size(), storyId, saveSlot);
+            return ResponseEntity.ok(page);
+
+        } catch (Exception e) {
+            logger.error("❌ Error fetching messages for {} slot {}: {}", storyId, saveSlot, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     // ═══════════════════════════════════════════════════════════════════════════
     // ⭐ SESSION 34: STORY COMPLETION & ENDINGS ENDPOINTS
     // ═══════════════════════════════════════════════════════════════════════════
@@ -528,7 +857,7 @@ public class NarrativeController {
     @GetMapping("/{storyId}/endings")
     public ResponseEntity<List<EndingSummary>> getStoryEndings(@PathVariable String storyId) {
         try {
-            String userId = "default";  // Future: get from authentication
+            String userId = securityContextHelper.getCurrentUserId();
 
             // Get all completed saves for this story to find discovered endings
             List<StorySaveService.SaveInfo> completedSaves = storySaveService.getAllSavesForStory(userId, storyId)
@@ -584,7 +913,7 @@ public class NarrativeController {
     @GetMapping("/{storyId}/completion-stats")
     public ResponseEntity<CompletionStats> getCompletionStats(@PathVariable String storyId) {
         try {
-            String userId = "default";  // Future: get from authentication
+            String userId = securityContextHelper.getCurrentUserId();
 
             // Get all saves for this story
             List<StorySaveService.SaveInfo> allSaves = storySaveService.getAllSavesForStory(userId, storyId);
@@ -5,21 +5,35 @@ import dev.laszlo.service.BaseService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Manages character data in the PostgreSQL database.
  * Handles creating, reading, and storing characters.
  * <p>
  * ⭐ SESSION 35: Migrated from SQLite to PostgreSQL
+ * ⭐ SESSION 45: Lookups are served from an in-memory index (by id and by story), loaded at
+ * startup and rebuilt after any write. A warm turn makes no character queries.
  */
 public class CharacterDatabase extends BaseService {
 
     private static final Logger logger = LoggerFactory.getLogger(CharacterDatabase.class);
 
+    // Read-through cache: null = not loaded / invalidated. Version guards against installing a stale load.
+    private final Object indexLock = new Object();
+    private volatile CharacterIndex index;
+    private long indexVersion = 0;
+
+    public CharacterDatabase(DataSource dataSource) {
+        super(dataSource);
+    }
+
     /**
      * Initialize the character system.
      * Creates the table and adds default characters.
@@ -27,6 +41,7 @@ public class CharacterDatabase extends BaseService {
     public void initializeCharacterTables() {
         createCharactersTable();
         seedDefaultCharacters();
+        index();  // Warm the cache at startup
         logger.info("✅ Character system initialized");
     }
 
@@ -185,9 +200,10 @@ public class CharacterDatabase extends BaseService {
     /**
      * Save a character to the database.
      * ⭐ UPDATED: PostgreSQL UPSERT syntax
+     * ⭐ SESSION 45: H2 (tests, load harness) gets the equivalent MERGE so characters are seeded there too
      */
     private void saveCharacter(Character character) {
-        String sql = """
+        String upsertSql = """
                 INSERT INTO characters 
                 (id, name, role, personality, speech_style, avatar_url, 
                  default_mood, relationship_to_user, description, story_id)
@@ -203,9 +219,16 @@ public class CharacterDatabase extends BaseService {
                     description = EXCLUDED.description,
                     story_id = EXCLUDED.story_id
                 """;
+        String mergeSql = """
+                MERGE INTO characters
+                (id, name, role, personality, speech_style, avatar_url,
+                 default_mood, relationship_to_user, description, story_id)
+                KEY (id)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """;
 
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(isPostgres(conn) ? upsertSql : mergeSql)) {
 
             pstmt.setString(1, character.getId());
             pstmt.setString(2, character.getName());
@@ -219,6 +242,7 @@ public class CharacterDatabase extends BaseService {
             pstmt.setString(10, character.getStoryId());
 
             pstmt.executeUpdate();
+            invalidate();
             logger.debug("Saved character: {} (story: {})", character.getName(), character.getStoryId());
 
         } catch (SQLException e) {
@@ -226,126 +250,139 @@ public class CharacterDatabase extends BaseService {
         }
     }
 
+    // ═══════════════════════════════════════════════════════════════════════════
+    // CACHED LOOKUPS
+    // ═══════════════════════════════════════════════════════════════════════════
+
     /**
      * Get a character by ID.
      * Returns null if character doesn't exist.
+     * <p>
+     * ⭐ SESSION 45: Served from the in-memory index - no query on a warm cache
      */
     public Character getCharacter(String id) {
-        String sql = "SELECT * FROM characters WHERE id = ?";
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        return index().byId().get(id);
+    }
 
-            pstmt.setString(1, id);
-            ResultSet rs = pstmt.executeQuery();
+    /**
+     * Get all available characters.
+     */
+    public List<Character> getAllCharacters() {
+        return new ArrayList<>(index().all());
+    }
 
-            if (rs.next()) {
-                Character character = new Character();
-                character.setId(rs.getString("id"));
-                character.setName(rs.getString("name"));
-                character.setRole(rs.getString("role"));
+    /**
+     * Get characters filtered by story ID.
+     * This is used to generate choices only from characters in the same story.
+     */
+    public List<Character> getCharactersByStory(String storyId) {
+        return new ArrayList<>(index().byStory().getOrDefault(storyId, List.of()));
+    }
 
-                // Parse personality (stored as comma-separated string)
-                String personalityStr = rs.getString("personality");
-                character.setPersonality(Arrays.asList(personalityStr.split(",")));
+    /**
+     * Drop the cached index so the next lookup reloads it from the database.
+     * Call this after changing the characters table outside this class (admin tools, migrations).
+     */
+    public void invalidate() {
+        synchronized (indexLock) {
+            indexVersion++;
+            index = null;
+        }
+        logger.debug("🔄 Character cache invalidated");
+    }
 
-                character.setSpeechStyle(rs.getString("speech_style"));
-                character.setAvatarUrl(rs.getString("avatar_url"));
-                character.setDefaultMood(rs.getString("default_mood"));
-                character.setRelationshipToUser(rs.getString("relationship_to_user"));
-                character.setDescription(rs.getString("description"));
-                character.setStoryId(rs.getString("story_id"));
+    /**
+     * Current index, loading it on first use or after invalidation.
+     * A load that raced with an invalidation is served but not cached, so it can't pin stale data.
+     */
+    private CharacterIndex index() {
+        CharacterIndex current = index;
+        if (current != null) {
+            return current;
+        }
 
-                return character;
+        long version;
+        synchronized (indexLock) {
+            if (index != null) {
+                return index;
             }
+            version = indexVersion;
+        }
 
-        } catch (SQLException e) {
-            logger.error("❌ Failed to get character {}: {}", id, e.getMessage());
+        CharacterIndex loaded = loadIndex();
+        if (loaded == null) {
+            return CharacterIndex.EMPTY;  // Not cached - the next lookup retries
         }
 
-        return null;  // Character not found
+        synchronized (indexLock) {
+            if (indexVersion == version) {
+                index = loaded;
+            }
+        }
+        return loaded;
     }
 
     /**
-     * Get all available characters.
+     * Read the whole characters table and build the id / story indexes.
+     * Returns null if the query fails.
      */
-    public List<Character> getAllCharacters() {
-        List<Character> characters = new ArrayList<>();
+    private CharacterIndex loadIndex() {
         String sql = "SELECT * FROM characters ORDER BY id";
 
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
+            List<Character> all = new ArrayList<>();
             while (rs.next()) {
-                Character character = new Character();
-                character.setId(rs.getString("id"));
-                character.setName(rs.getString("name"));
-                character.setRole(rs.getString("role"));
-
-                // Parse personality
-                String personalityStr = rs.getString("personality");
-                character.setPersonality(Arrays.asList(personalityStr.split(",")));
-
-                character.setSpeechStyle(rs.getString("speech_style"));
-                character.setAvatarUrl(rs.getString("avatar_url"));
-                character.setDefaultMood(rs.getString("default_mood"));
-                character.setRelationshipToUser(rs.getString("relationship_to_user"));
-                character.setDescription(rs.getString("description"));
-                character.setStoryId(rs.getString("story_id"));
-
-                characters.add(character);
+                all.add(mapCharacter(rs));
+            }
+
+            Map<String, Character> byId = new HashMap<>();
+            Map<String, List<Character>> byStory = new HashMap<>();
+            for (Character character : all) {
+                byId.put(character.getId(), character);
+                if (character.getStoryId() != null) {
+                    byStory.computeIfAbsent(character.getStoryId(), k -> new ArrayList<>()).add(character);
+                }
             }
+            byStory.replaceAll((story, characters) -> List.copyOf(characters));
 
-            logger.info("📂 Loaded {} characters", characters.size());
+            logger.info("📂 Loaded {} characters into cache ({} stories)", all.size(), byStory.size());
+            return new CharacterIndex(Map.copyOf(byId), Map.copyOf(byStory), List.copyOf(all));
 
         } catch (SQLException e) {
-            logger.error("❌ Failed to get all characters: {}", e.getMessage());
+            logger.error("❌ Failed to load characters: {}", e.getMessage());
+            return null;
         }
+    }
 
-        return characters;
+    private Character mapCharacter(ResultSet rs) throws SQLException {
+        Character character = new Character();
+        character.setId(rs.getString("id"));
+        character.setName(rs.getString("name"));
+        character.setRole(rs.getString("role"));
+
+        // Parse personality (stored as comma-separated string)
+        String personalityStr = rs.getString("personality");
+        character.setPersonality(Arrays.asList(personalityStr.split(",")));
+
+        character.setSpeechStyle(rs.getString("speech_style"));
+        character.setAvatarUrl(rs.getString("avatar_url"));
+        character.setDefaultMood(rs.getString("default_mood"));
+        character.setRelationshipToUser(rs.getString("relationship_to_user"));
+        character.setDescription(rs.getString("description"));
+        character.setStoryId(rs.getString("story_id"));
+        return character;
     }
 
     /**
-     * Get characters filtered by story ID.
-     * This is used to generate choices only from characters in the same story.
+     * Immutable snapshot of the characters table. Cached Character objects are shared between
+     * requests and must be treated as read-only.
      */
-    public List<Character> getCharactersByStory(String storyId) {
-        List<Character> characters = new ArrayList<>();
-        String sql = "SELECT * FROM characters WHERE story_id = ? ORDER BY id";
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, storyId);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                Character character = new Character();
-                character.setId(rs.getString("id"));
-                character.setName(rs.getString("name"));
-                character.setRole(rs.getString("role"));
-
-                // Parse personality
-                String personalityStr = rs.getString("personality");
-                character.setPersonality(Arrays.asList(personalityStr.split(",")));
-
-                character.setSpeechStyle(rs.getString("speech_style"));
-                character.setAvatarUrl(rs.getString("avatar_url"));
-                character.setDefaultMood(rs.getString("default_mood"));
-                character.setRelationshipToUser(rs.getString("relationship_to_user"));
-                character.setDescription(rs.getString("description"));
-                character.setStoryId(rs.getString("story_id"));
-
-                characters.add(character);
-            }
-
-            logger.info("📂 Loaded {} characters for story '{}'", characters.size(), storyId);
-
-        } catch (SQLException e) {
-            logger.error("❌ Failed to get characters for story {}: {}", storyId, e.getMessage());
-        }
-
-        return characters;
+    private record CharacterIndex(Map<String, Character> byId,
+                                  Map<String, List<Character>> byStory,
+                                  List<Character> all) {
+        static final CharacterIndex EMPTY = new CharacterIndex(Map.of(), Map.of(), List.of());
     }
-}
\ No newline at end of file
+}
@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -17,13 +18,12 @@ import java.util.List;
 public class DatabaseService extends BaseService {
 
     private static final Logger logger = LoggerFactory.getLogger(DatabaseService.class);
-    private final DataSource dataSource;
 
     /**
      * Constructor - creates database tables if they don't exist.
      */
     public DatabaseService(DataSource dataSource) {
-        this.dataSource = dataSource;
+        super(dataSource);
         initializeDatabase();
     }
 
@@ -50,6 +50,12 @@ public class DatabaseService extends BaseService {
         createStoriesTable();
         migrateCreatorOwnership();
 
+        // Session 45: Balance versions for the gem balance cache
+        migrateCurrencyVersion();
+
+        // Session 45: Per-session message counters for the session list
+        migrateSessionCounters();
+
         logger.info("✅ Database initialized successfully");
     }
 
@@ -68,7 +74,9 @@ public class DatabaseService extends BaseService {
                     CREATE TABLE IF NOT EXISTS sessions (
                         id SERIAL PRIMARY KEY,
                         name VARCHAR(255) NOT NULL,
-                        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        message_count INTEGER DEFAULT 0 NOT NULL,
+                        last_message_at TIMESTAMP
                     )
                     """;
             try (Statement stmt = conn.createStatement()) {
@@ -90,6 +98,8 @@ public class DatabaseService extends BaseService {
                     """;
             try (Statement stmt = conn.createStatement()) {
                 stmt.execute(messagesSql);
+                // ⭐ SESSION 45: Paged history reads walk one session's rows by id
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_messages_session ON messages(session_id, id)");
                 logger.info("✓ Messages table created");
             }
 
@@ -106,12 +116,12 @@ public class DatabaseService extends BaseService {
                         current_speaker VARCHAR(50),
                         message_count INTEGER DEFAULT 0,
                         choice_count INTEGER DEFAULT 0,
-                        conversation_json TEXT NOT NULL,
+                        conversation_json TEXT,
+                        conversation_data BYTEA,
                         progress_metadata TEXT,
                         is_completed BOOLEAN DEFAULT FALSE,
                         ending_id VARCHAR(100),
-                        completed_at TIMESTAMP,
-                        UNIQUE(story_id, save_slot, user_id)
+                        completed_at TIMESTAMP
                     )
                     """;
             try (Statement stmt = conn.createStatement()) {
@@ -120,13 +130,7 @@ public class DatabaseService extends BaseService {
             }
 
             // Create indexes for story_saves
-            String indexLookup = """
-                    CREATE INDEX IF NOT EXISTS idx_story_saves_lookup
-                    ON story_saves(story_id, save_slot, user_id)
-                    """;
-            try (Statement stmt = conn.createStatement()) {
-                stmt.execute(indexLookup);
-            }
+            createStorySaveIndexes(conn);
 
             String indexRecent = """
                     CREATE INDEX IF NOT EXISTS idx_story_saves_recent
@@ -136,14 +140,6 @@ public class DatabaseService extends BaseService {
                 stmt.execute(indexRecent);
             }
 
-            String indexUser = """
-                    CREATE INDEX IF NOT EXISTS idx_story_saves_user
-                    ON story_saves(user_id, last_played_at DESC)
-                    """;
-            try (Statement stmt = conn.createStatement()) {
-                stmt.execute(indexUser);
-            }
-
             String indexCompleted = """
                     CREATE INDEX IF NOT EXISTS idx_story_saves_completed
                     ON story_saves(is_completed)
@@ -152,13 +148,48 @@ public class DatabaseService extends BaseService {
                 stmt.execute(indexCompleted);
             }
 
+            // ⭐ SESSION 45: Append-only message log per save (see StorySaveService)
+            // NULL snapshot_message_count = legacy row whose conversation_json holds the full conversation
+            String snapshotColumn = """
+                    ALTER TABLE story_saves ADD COLUMN IF NOT EXISTS snapshot_message_count INTEGER
+                    """;
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(snapshotColumn);
+            }
+
+            // ⭐ SESSION 45: Rolling summary of the oldest messages (context windowing, see ConversationSummarizer)
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE story_saves ADD COLUMN IF NOT EXISTS context_summary TEXT");
+                stmt.execute("ALTER TABLE story_saves ADD COLUMN IF NOT EXISTS summarized_message_count INTEGER DEFAULT 0");
+            }
+
+            // ⭐ SESSION 45: Compact snapshots (ConversationCodec). Rows still holding version "1.0"
+            // conversation_json are read as before and move to conversation_data on their next compaction
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE story_saves ADD COLUMN IF NOT EXISTS conversation_data BYTEA");
+                stmt.execute("ALTER TABLE story_saves ALTER COLUMN conversation_json DROP NOT NULL");
+            }
+
+            logger.info("Creating story_save_messages table...");
+            String saveMessagesSql = """
+                    CREATE TABLE IF NOT EXISTS story_save_messages (
+                        save_id INTEGER NOT NULL REFERENCES story_saves(id) ON DELETE CASCADE,
+                        seq INTEGER NOT NULL,
+                        role VARCHAR(20) NOT NULL,
+                        content TEXT NOT NULL,
+                        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        PRIMARY KEY (save_id, seq)
+                    )
+                    """;
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(saveMessagesSql);
+                logger.info("✓ Story_save_messages table created");
+            }
+
             logger.info("=== ALL TABLES CREATED SUCCESSFULLY ===");
 
         } catch (SQLException e) {
-            String errorMessage = "❌ FATAL ERROR CREATING TABLES: " + e.getMessage();
-            logger.error(errorMessage);
-            System.err.println(errorMessage);
-            e.printStackTrace();
+            logger.error("❌ FATAL ERROR CREATING TABLES: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to create database tables", e);
         }
     }
@@ -179,6 +210,44 @@ public class DatabaseService extends BaseService {
         logger.debug("📊 user_choices table ready");
     }
 
+    /**
+     * ⭐ SESSION 45: Per-user story_saves keys. Every save query leads with user_id, and the two
+     * save-library queries are answered from the index alone on PostgreSQL (INCLUDE columns):
+     * - idx_story_saves_user_slot: unique (user_id, story_id, save_slot) - save lookups, the upsert's
+     *   ON CONFLICT target and getAllSavesForStory
+     * - idx_story_saves_library: (user_id, last_played_at DESC) - getAllSavesForUser
+     * Replaces the old (story_id, save_slot, user_id) key, which put every player's slot 1 of a story
+     * next to each other. With user_id leading, the table can later be hash-partitioned by user
+     * without changing a query.
+     */
+    private void createStorySaveIndexes(Connection conn) throws SQLException {
+        boolean postgres = conn.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres");
+        // H2 (tests) has no INCLUDE - same keys, just not covering
+        String slotInclude = postgres
+                ? " INCLUDE (created_at, last_played_at, current_speaker, message_count, choice_count,"
+                + " is_completed, ending_id, completed_at)"
+                : "";
+        String libraryInclude = postgres
+                ? " INCLUDE (story_id, save_slot, created_at, current_speaker, message_count, choice_count,"
+                + " is_completed, ending_id, completed_at)"
+                : "";
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_story_saves_user_slot "
+                    + "ON story_saves(user_id, story_id, save_slot)" + slotInclude);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_story_saves_library "
+                    + "ON story_saves(user_id, last_played_at DESC)" + libraryInclude);
+
+            // Superseded by the two above (older databases)
+            stmt.execute("DROP INDEX IF EXISTS idx_story_saves_lookup");
+            stmt.execute("DROP INDEX IF EXISTS idx_story_saves_user");
+            if (postgres) {
+                stmt.execute("ALTER TABLE story_saves DROP CONSTRAINT IF EXISTS story_saves_story_id_save_slot_user_id_key");
+            }
+        }
+        logger.info("✓ Story_saves per-user indexes ready");
+    }
+
     /**
      * ⭐ PHASE 1 GALLERY: User gem balance
      */
@@ -190,7 +259,8 @@ public class DatabaseService extends BaseService {
                     total_earned INTEGER DEFAULT 0 NOT NULL,
                     total_spent INTEGER DEFAULT 0 NOT NULL,
                     last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    version BIGINT DEFAULT 0 NOT NULL
                 )
                 """;
 
@@ -444,6 +514,40 @@ public class DatabaseService extends BaseService {
         logger.info("✅ Creator ownership migration complete");
     }
 
+    /**
+     * ⭐ SESSION 45: Migration - Add user_currency.version, bumped by every balance write.
+     * CurrencyService's balance cache uses it to keep the newest snapshot and to spot writes
+     * made by other instances. Idempotent: checks if the column exists before adding.
+     */
+    private void migrateCurrencyVersion() {
+        if (!columnExists("user_currency", "version")) {
+            executeSQL("ALTER TABLE user_currency ADD COLUMN version BIGINT DEFAULT 0 NOT NULL");
+            logger.info("💰 Added version to user_currency table");
+        } else {
+            logger.debug("💰 user_currency.version already exists, skipping");
+        }
+    }
+
+    /**
+     * ⭐ SESSION 45: Migration - Add sessions.message_count / last_message_at, kept up to date by every
+     * message write so listing sessions no longer joins and groups the whole messages table.
+     * Backfilled once from the existing messages. Idempotent: checks if the column exists before adding.
+     */
+    private void migrateSessionCounters() {
+        if (!columnExists("sessions", "message_count")) {
+            executeSQL("ALTER TABLE sessions ADD COLUMN message_count INTEGER DEFAULT 0 NOT NULL");
+            executeSQL("ALTER TABLE sessions ADD COLUMN last_message_at TIMESTAMP");
+            executeSQL("""
+                    UPDATE sessions SET
+                        message_count = (SELECT COUNT(*) FROM messages m WHERE m.session_id = sessions.id),
+                        last_message_at = (SELECT MAX(m.timestamp) FROM messages m WHERE m.session_id = sessions.id)
+                    """);
+            logger.info("💬 Added message counters to sessions table");
+        } else {
+            logger.debug("💬 sessions.message_count already exists, skipping");
+        }
+    }
+
     /**
      * Check if a column exists in a table (for idempotent migrations).
      */
@@ -485,16 +589,23 @@ public class DatabaseService extends BaseService {
 
     // ==================== MESSAGE OPERATIONS ====================
 
+    /**
+     * Save one message.
+     * ⭐ SESSION 45: The session's message counter is bumped in the same transaction.
+     */
     public void saveMessage(int sessionId, String role, String content) {
-        String insertSQL = "INSERT INTO messages (session_id, role, content) VALUES (?, ?, ?)";
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
-
-            pstmt.setInt(1, sessionId);
-            pstmt.setString(2, role);
-            pstmt.setString(3, content);
-            pstmt.executeUpdate();
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                saveMessages(conn, sessionId, List.<String[]>of(new String[]{role, content}));
+                bumpMessageCounter(conn, sessionId, 1);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
 
             logger.debug("💬 Message saved: {} -> {}", role, content.substring(0, Math.min(50, content.length())));
 
@@ -503,6 +614,46 @@ public class DatabaseService extends BaseService {
         }
     }
 
+    /**
+     * ⭐ SESSION 45: Insert several {role, content} messages as one JDBC batch, on the caller's
+     * connection and transaction (see TurnCommitService). The caller adds them to the session's
+     * counter with bumpMessageCounter.
+     */
+    public void saveMessages(Connection conn, int sessionId, List<String[]> messages) throws SQLException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        String insertSQL = "INSERT INTO messages (session_id, role, content) VALUES (?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
+            for (String[] message : messages) {
+                pstmt.setInt(1, sessionId);
+                pstmt.setString(2, message[0]);
+                pstmt.setString(3, message[1]);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * ⭐ SESSION 45: Add saved messages to the session's counter. This locks the sessions row until
+     * the caller commits - and every narrative turn shares one legacy session - so run it as the
+     * last statement before commit().
+     */
+    public void bumpMessageCounter(Connection conn, int sessionId, int added) throws SQLException {
+        String counterSQL = """
+                UPDATE sessions SET message_count = message_count + ?, last_message_at = CURRENT_TIMESTAMP
+                WHERE id = ?
+                """;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(counterSQL)) {
+            pstmt.setInt(1, added);
+            pstmt.setInt(2, sessionId);
+            pstmt.executeUpdate();
+        }
+    }
+
     public List<String[]> getMessages(int sessionId) {
         List<String[]> messages = new ArrayList<>();
         String selectSQL = "SELECT role, content FROM messages WHERE session_id = ? ORDER BY id ASC";
@@ -536,14 +687,93 @@ public class DatabaseService extends BaseService {
         return getMessages(sessionId);
     }
 
-    public void clearMessages(int sessionId) {
-        String deleteSQL = "DELETE FROM messages WHERE session_id = ?";
+    /**
+     * ⭐ SESSION 45: One page of a session's messages, oldest first. Keyset pagination on the message id
+     * (idx_messages_session), so a page costs the same however deep into a long session it is.
+     *
+     * @param beforeId only messages with a smaller id (null = up to the newest)
+     * @param limit    page size
+     */
+    public List<MessageRow> getMessagesPage(int sessionId, Integer beforeId, int limit) {
+        List<MessageRow> page = new ArrayList<>();
+        String selectSQL = """
+                SELECT id, role, content FROM messages
+                WHERE session_id = ? AND id < ?
+                ORDER BY id DESC
+                LIMIT ?
+                """;
 
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(deleteSQL)) {
+             PreparedStatement pstmt = conn.prepareStatement(selectSQL)) {
 
             pstmt.setInt(1, sessionId);
-            pstmt.executeUpdate();
+            pstmt.setInt(2, beforeId != null ? beforeId : Integer.MAX_VALUE);
+            pstmt.setInt(3, limit);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                page.add(new MessageRow(rs.getInt("id"), rs.getString("role"), rs.getString("content")));
+            }
+            Collections.reverse(page);
+
+        } catch (SQLException e) {
+            logger.error("❌ Failed to load messages page: {}", e.getMessage());
+        }
+
+        return page;
+    }
+
+    /**
+     * ⭐ SESSION 45: Number of messages in a session, without loading them (the session's counter).
+     */
+    public int countMessages(int sessionId) {
+        String countSQL = "SELECT message_count FROM sessions WHERE id = ?";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(countSQL)) {
+
+            pstmt.setInt(1, sessionId);
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+
+        } catch (SQLException e) {
+            logger.error("❌ Failed to count messages: {}", e.getMessage());
+        }
+
+        return 0;
+    }
+
+    /**
+     * ⭐ SESSION 45: A chat message with its id (the pagination cursor).
+     */
+    public record MessageRow(int id, String role, String content) {
+    }
+
+    /**
+     * Delete a session's messages.
+     * ⭐ SESSION 45: Resets the session's message counter in the same transaction.
+     */
+    public void clearMessages(int sessionId) {
+        String deleteSQL = "DELETE FROM messages WHERE session_id = ?";
+        String counterSQL = "UPDATE sessions SET message_count = 0, last_message_at = NULL WHERE id = ?";
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(deleteSQL);
+                 PreparedStatement counter = conn.prepareStatement(counterSQL)) {
+                pstmt.setInt(1, sessionId);
+                pstmt.executeUpdate();
+                counter.setInt(1, sessionId);
+                counter.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
             logger.info("🗑️ Messages cleared from session {}", sessionId);
 
         } catch (SQLException e) {
@@ -572,6 +802,22 @@ public class DatabaseService extends BaseService {
         }
     }
 
+    /**
+     * ⭐ SESSION 45: Same as saveUserChoice, on the caller's connection and transaction.
+     */
+    public void saveUserChoice(Connection conn, int sessionId, String choiceId, String choiceLabel,
+                               String nextSpeaker) throws SQLException {
+        String insertSQL = "INSERT INTO user_choices (session_id, choice_id, choice_label, next_speaker) VALUES (?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
+            pstmt.setInt(1, sessionId);
+            pstmt.setString(2, choiceId);
+            pstmt.setString(3, choiceLabel);
+            pstmt.setString(4, nextSpeaker);
+            pstmt.executeUpdate();
+        }
+    }
+
     public List<String[]> getChoiceHistory(int sessionId) {
         List<String[]> choices = new ArrayList<>();
         String selectSQL = "SELECT choice_id, choice_label, next_speaker, chosen_at FROM user_choices WHERE session_id = ? ORDER BY id ASC";
@@ -645,26 +891,46 @@ public class DatabaseService extends BaseService {
         return -1;
     }
 
+    /**
+     * All sessions, newest first.
+     * ⭐ SESSION 45: Message counts come from the sessions row - no join over messages.
+     * Prefer getSessionsPage wherever the list is shown.
+     */
     public List<Session> getAllSessions() {
+        return getSessionsPage(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * ⭐ SESSION 45: One page of sessions, newest first. Keyset pagination on the primary key, so a
+     * page reads only its own rows however many sessions and messages exist.
+     *
+     * @param beforeId only sessions with a smaller id (null = from the newest)
+     * @param limit    page size
+     */
+    public List<Session> getSessionsPage(Integer beforeId, int limit) {
         List<Session> sessions = new ArrayList<>();
         String selectSQL = """
-                SELECT s.id, s.name, s.created_at, COUNT(m.id) as msg_count
-                FROM sessions s
-                LEFT JOIN messages m ON s.id = m.session_id
-                GROUP BY s.id, s.name, s.created_at
-                ORDER BY s.id DESC
+                SELECT id, name, created_at, message_count, last_message_at
+                FROM sessions
+                WHERE id < ?
+                ORDER BY id DESC
+                LIMIT ?
                 """;
 
         try (Connection conn = dataSource.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(selectSQL)) {
+             PreparedStatement pstmt = conn.prepareStatement(selectSQL)) {
+
+            pstmt.setInt(1, beforeId != null ? beforeId : Integer.MAX_VALUE);
+            pstmt.setInt(2, limit);
+            ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
                 int id = rs.getInt("id");
                 String name = rs.getString("name");
                 String createdAt = rs.getString("created_at");
-                int msgCount = rs.getInt("msg_count");
-                sessions.add(new Session(id, name, msgCount, createdAt));
+                int msgCount = rs.getInt("message_count");
+                String lastMessageAt = rs.getString("last_message_at");
+                sessions.add(new Session(id, name, msgCount, createdAt, lastMessageAt));
             }
 
             logger.info("📂 Loaded {} sessions", sessions.size());
@@ -19,6 +19,7 @@ public class NarrativeResponse {
     private List<Choice> choices;       // Available choices for the user
     private boolean isEnding = false;   // ⭐ SESSION 34: True if story has ended
     private String endingId;            // ⭐ SESSION 34: Ending identifier (e.g., "good_ending")
+    private boolean degraded = false;   // ⭐ SESSION 45: True if Claude was unavailable (fallback turn, not saved)
 
     // Default constructor
     public NarrativeResponse() {
@@ -110,6 +111,15 @@ public class NarrativeResponse {
         this.endingId = endingId;
     }
 
+    // ⭐ SESSION 45: Degraded (fallback) turn getters/setters
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public void setDegraded(boolean degraded) {
+        this.degraded = degraded;
+    }
+
     // Convenience method to add a single choice
     public void addChoice(Choice choice) {
         this.choices.add(choice);
@@ -125,6 +135,7 @@ public class NarrativeResponse {
                 ", actionTextLength=" + (actionText != null ? actionText.length() : 0) +
                 ", isEnding=" + isEnding +
                 ", endingId='" + endingId + '\'' +
+                ", degraded=" + degraded +
                 '}';
     }
 }
\ No newline at end of file
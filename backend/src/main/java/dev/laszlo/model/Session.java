@@ -9,12 +9,18 @@ public class Session {
     private final String name;
     private final int messageCount;
     private final String createdAt;
+    private final String lastMessageAt;  // ⭐ SESSION 45: null until the first message
 
     public Session(int id, String name, int messageCount, String createdAt) {
+        this(id, name, messageCount, createdAt, null);
+    }
+
+    public Session(int id, String name, int messageCount, String createdAt, String lastMessageAt) {
         this.id = id;
         this.name = name;
         this.messageCount = messageCount;
         this.createdAt = createdAt;
+        this.lastMessageAt = lastMessageAt;
     }
 
     public int getId() {
@@ -32,4 +38,8 @@ public class Session {
     public String getCreatedAt() {
         return createdAt;
     }
+
+    public String getLastMessageAt() {
+        return lastMessageAt;
+    }
 }
@@ -3,6 +3,7 @@ package dev.laszlo.service;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +12,24 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Handles All communication with Claude's API.
@@ -19,91 +38,674 @@ import java.time.Duration;
  * - Build HTTP request with proper headers
  * - Send conversation history to API
  * - Parse response and extract text
+ * - Stream text deltas for token-by-token responses (⭐ SESSION 45)
+ * - Non-blocking sends via HttpClient.sendAsync (⭐ SESSION 45)
+ * - Prompt caching breakpoints + cache token accounting (⭐ SESSION 45)
+ * - Context windowing: only a token budget's worth of recent turns + a rolling summary (⭐ SESSION 45)
+ * - Resilience: bounded retries with backoff (honouring retry-after), optional hedged requests,
+ *   a per-model circuit breaker and a cap on concurrent API calls (⭐ SESSION 45)
+ * <p>
+ * Failures never throw - callers get null and build a degraded turn (see NarrativeEngine).
  */
 public class ChatService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
 
     // API configuration
-    private static final String API_URL = "https://api.anthropic.com/v1/messages";
+    public static final String DEFAULT_BASE_URL = "https://api.anthropic.com";
+    private static final String MESSAGES_PATH = "/v1/messages";
     private static final String API_VERSION = "2023-06-01";
     private static final String MODEL = "claude-sonnet-4-20250514";
     private static final int MAX_TOKENS = 1024;
+    private static final int CACHED_USER_TURNS = 2;
+
+    // ⭐ SESSION 45: Worth retrying - rate limits, overload (529), gateway errors. Anything else 4xx is our bug.
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(408, 429, 500, 502, 503, 504, 529);
+    private static final int IO_ERROR = -1;   // Attempt status for timeouts / connection failures
+    private static final Duration PERMIT_WAIT = Duration.ofSeconds(20);
 
-    // Reusable HTTP client
+    // Reusable HTTP client (one connection pool for every call)
     private final HttpClient client;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
     private final String apiKey;
+    private final URI apiUrl;  // ⭐ SESSION 45: Configurable - point at a local stub for load tests
+
+    // ⭐ SESSION 45: Prompt caching - system prompt + recent user turns get cache_control breakpoints
+    private volatile boolean promptCachingEnabled = true;
+
+    // ⭐ SESSION 45: Max estimated conversation tokens per request (0 = send the full history)
+    private volatile int contextTokenBudget = 0;
+
+    // ⭐ SESSION 45: Token usage totals from each response's "usage" block
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong inputTokens = new AtomicLong();
+    private final AtomicLong outputTokens = new AtomicLong();
+    private final AtomicLong cacheCreationInputTokens = new AtomicLong();
+    private final AtomicLong cacheReadInputTokens = new AtomicLong();
+
+    // ⭐ SESSION 45: Resilience settings (see AppConfig) and counters
+    private volatile int maxRetries = 2;
+    private volatile Duration baseBackoff = Duration.ofMillis(500);
+    private volatile Duration maxBackoff = Duration.ofSeconds(8);
+    private volatile Duration requestTimeout = Duration.ofSeconds(60);
+    private volatile Duration hedgeDelay = Duration.ZERO;  // ZERO = no hedging
+    private volatile int maxConcurrentRequests = 32;
+    private volatile Semaphore permits = new Semaphore(32, true);
+    private volatile int breakerFailureThreshold = 5;
+    private volatile Duration breakerOpenDuration = Duration.ofSeconds(30);
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedgedRequests = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong saturatedCalls = new AtomicLong();
+
+    // ⭐ SESSION 45: Micrometer token / call counters (no-op until AppConfig sets the real registry)
+    private volatile TurnMetrics metrics = TurnMetrics.noop();
 
     /**
      * Constructor - sets up the HTTP client.
+     * ⭐ SESSION 45: Response handling runs on virtual threads, so thousands of in-flight
+     * requests cost no platform threads while waiting on Claude.
      */
     public ChatService(String apiKey) {
+        this(apiKey, DEFAULT_BASE_URL);
+    }
+
+    /**
+     * ⭐ SESSION 45: Send requests to another Messages API host (e.g. the LLM stub used by load tests).
+     *
+     * @param baseUrl scheme + host (+ port), without the /v1/messages path
+     */
+    public ChatService(String apiKey, String baseUrl) {
         this.apiKey = apiKey;
+        this.apiUrl = URI.create(baseUrl.replaceAll("/+$", "") + MESSAGES_PATH);
         this.client = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(30))
+                .executor(executor)
                 .build();
     }
 
     /**
-     * Send conversation to Claude and get response.
+     * Send conversation to Claude and get response (blocking).
      *
      * @param history the full conversation history
      * @return Claude's response text, or null if error
      */
     public String sendMessage(ConversationHistory history) {
+        return sendMessageAsync(history).join();
+    }
+
+    /**
+     * ⭐ SESSION 45: Send conversation to Claude without blocking the calling thread.
+     * The request body is built immediately, so later changes to the history don't affect this call.
+     * Retries, hedging and the concurrency cap run on a virtual thread (see callWithResilience).
+     *
+     * @param history the full conversation history
+     * @return future completing with Claude's response text, or null if error (never completes exceptionally)
+     */
+    public CompletableFuture<String> sendMessageAsync(ConversationHistory history) {
         try {
             String requestBody = buildRequestBody(history);
-            logger.debug("request body: {}", requestBody);
+            logger.debug("request body: {}", TurnLog.truncate(requestBody));
+
+            HttpRequest request = newRequest(requestBody, false);
+            return CompletableFuture.supplyAsync(
+                    () -> callWithResilience("Request", semaphore -> sendOnce(request, semaphore)),
+                    TurnLog.propagating(executor));
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(API_URL))
-                    .header("Content-Type", "application/json")
-                    .header("x-api-key", apiKey)
-                    .header("anthropic-version", API_VERSION)
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                    .timeout(Duration.ofSeconds(60))
-                    .build();
+        } catch (Exception e) {
+            logger.error("Request failed: {}", e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
 
-            HttpResponse<String> response = client.send(request,
-                    HttpResponse.BodyHandlers.ofString());
+    /**
+     * One attempt (plus a hedge if the primary is slow). Runs while holding a permit.
+     */
+    private Attempt<String> sendOnce(HttpRequest request, Semaphore semaphore) {
+        try {
+            HttpResponse<String> response = hedgeDelay.isZero()
+                    ? send(request)
+                    : sendHedged(request, semaphore);
 
             if (response.statusCode() == 200) {
-                return parseResponse(response.body());
-            } else {
-                logger.error("API error {}: {}", response.statusCode(), response.body());
-                return null;
+                return new Attempt<>(parseResponse(response.body()), 200, null);
             }
+            logger.error("API error {}: {}", response.statusCode(), TurnLog.truncate(response.body()));
+            return new Attempt<>(null, response.statusCode(), retryAfter(response));
 
         } catch (Exception e) {
-            logger.error("Request failed: {}", e.getMessage());
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            logger.error("Request failed: {}", cause.toString());
+            return new Attempt<>(null, IO_ERROR, null);
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        requestCount.incrementAndGet();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * ⭐ SESSION 45: Hedged request - if the primary hasn't answered within hedgeDelay, send a duplicate
+     * and take whichever succeeds first. The hedge needs a free permit, so it never breaks the concurrency cap.
+     */
+    private HttpResponse<String> sendHedged(HttpRequest request, Semaphore semaphore) throws Exception {
+        requestCount.incrementAndGet();
+        CompletableFuture<HttpResponse<String>> primary = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        try {
+            return primary.get(hedgeDelay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException slow) {
+            if (!semaphore.tryAcquire()) {
+                return primary.get();  // At the cap - no hedge
+            }
+        }
+
+        requestCount.incrementAndGet();
+        hedgedRequests.incrementAndGet();
+        metrics.recordLlmHedge(MODEL);
+        CompletableFuture<HttpResponse<String>> hedge = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        hedge.whenComplete((response, error) -> semaphore.release());  // Also runs when cancelled below
+
+        HttpResponse<String> winner = firstSuccessful(List.of(primary, hedge)).get();
+        if (hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.getNow(null) == winner) {
+            hedgeWins.incrementAndGet();
+        }
+        primary.cancel(true);  // Aborts the loser; no-op for the winner
+        hedge.cancel(true);
+        return winner;
+    }
+
+    /**
+     * First 200 response; if none succeeds, the last outcome (response or failure).
+     */
+    private static CompletableFuture<HttpResponse<String>> firstSuccessful(
+            List<CompletableFuture<HttpResponse<String>>> calls) {
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(calls.size());
+        for (CompletableFuture<HttpResponse<String>> call : calls) {
+            call.whenComplete((response, error) -> {
+                if (error == null && response.statusCode() == 200) {
+                    result.complete(response);
+                } else if (remaining.decrementAndGet() == 0) {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(response);
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * ⭐ SESSION 45: Send conversation to Claude with "stream": true.
+     * Each text delta is handed to the consumer as soon as it arrives (server-sent events
+     * from the Messages API), and the complete text is returned at the end.
+     *
+     * @param history      the full conversation history
+     * @param onTextDelta  receives each text fragment in order (called on the calling thread)
+     * @return Claude's complete response text, or null if error
+     */
+    public String streamMessage(ConversationHistory history, Consumer<String> onTextDelta) {
+        try {
+            String requestBody = buildRequestBody(history, true);
+            logger.debug("stream request body: {}", TurnLog.truncate(requestBody));
+
+            HttpRequest request = newRequest(requestBody, true);
+            return callWithResilience("Stream request", semaphore -> streamOnce(request, onTextDelta));
+
+        } catch (Exception e) {
+            logger.error("Stream request failed: {}", e.getMessage());
             return null;
         }
     }
 
+    /**
+     * One streaming attempt. Only failures before the first delta are retryable - once text
+     * has reached the consumer a retry would repeat it.
+     */
+    private Attempt<String> streamOnce(HttpRequest request, Consumer<String> onTextDelta) {
+        StringBuilder fullText = new StringBuilder();
+        try {
+            requestCount.incrementAndGet();
+            HttpResponse<Stream<String>> response = client.send(request,
+                    HttpResponse.BodyHandlers.ofLines());
+
+            if (response.statusCode() != 200) {
+                String errorBody;
+                try (Stream<String> lines = response.body()) {
+                    errorBody = String.join("\n", lines.toList());
+                }
+                logger.error("API stream error {}: {}", response.statusCode(), TurnLog.truncate(errorBody));
+                return new Attempt<>(null, response.statusCode(), retryAfter(response));
+            }
+
+            try (Stream<String> lines = response.body()) {
+                for (String line : (Iterable<String>) lines::iterator) {
+                    if (!line.startsWith("data:")) {
+                        continue;  // "event:" names and blank separators
+                    }
+
+                    JsonObject event = JsonParser.parseString(line.substring(5).trim()).getAsJsonObject();
+                    String type = event.has("type") ? event.get("type").getAsString() : "";
+
+                    if ("content_block_delta".equals(type)) {
+                        JsonObject delta = event.getAsJsonObject("delta");
+                        if (delta != null && "text_delta".equals(delta.get("type").getAsString())) {
+                            String text = delta.get("text").getAsString();
+                            fullText.append(text);
+                            onTextDelta.accept(text);
+                        }
+                    } else if ("error".equals(type)) {
+                        logger.error("API stream error event: {}", event);
+                        return new Attempt<>(null, fullText.isEmpty() ? IO_ERROR : 200, null);
+                    } else if ("message_start".equals(type) && event.has("message")) {
+                        // Input + cache token counts arrive up front...
+                        recordUsage(event.getAsJsonObject("message").getAsJsonObject("usage"));
+                    } else if ("message_delta".equals(type)) {
+                        // ...output tokens at the end
+                        recordUsage(event.getAsJsonObject("usage"));
+                    } else if ("message_stop".equals(type)) {
+                        break;
+                    }
+                }
+            }
+
+            return new Attempt<>(fullText.toString(), 200, null);
+
+        } catch (Exception e) {
+            // Mid-stream (reset, read timeout, bad event): text already went out, so don't retry
+            logger.error("Stream request failed: {}", e.toString());
+            return new Attempt<>(null, fullText.isEmpty() ? IO_ERROR : 200, null);
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // ⭐ SESSION 45: RESILIENCE (retries, backoff, circuit breaker, concurrency cap)
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Outcome of one attempt: value on success, otherwise the HTTP status (IO_ERROR for timeouts /
+     * connection failures) and the server's retry-after hint, if any.
+     */
+    private record Attempt<T>(T value, int status, Duration retryAfter) {
+        boolean retryable() {
+            return status == IO_ERROR || RETRYABLE_STATUS.contains(status);
+        }
+    }
+
+    /**
+     * Run attempts until one succeeds, a failure isn't worth retrying, retries run out or the
+     * circuit opens. Each attempt holds a concurrency permit; backoff sleeps don't.
+     *
+     * @return the successful value, or null
+     */
+    private <T> T callWithResilience(String label, Function<Semaphore, Attempt<T>> call) {
+        CircuitBreaker breaker = breakerFor(MODEL);
+
+        for (int attempt = 0; ; attempt++) {
+            if (!breaker.tryAcquire()) {
+                logger.warn("⛔ {} skipped - circuit open for {}", label, MODEL);
+                failedCalls.incrementAndGet();
+                metrics.recordLlmCall(MODEL, "circuit_open");
+                return null;
+            }
+
+            Semaphore semaphore = permits;
+            if (!acquirePermit(semaphore)) {
+                breaker.release();
+                saturatedCalls.incrementAndGet();
+                metrics.recordLlmCall(MODEL, "saturated");
+                logger.warn("🚦 {} skipped - {} API calls already in flight", label, maxConcurrentRequests);
+                return null;
+            }
+
+            Attempt<T> result;
+            try {
+                result = call.apply(semaphore);
+            } finally {
+                semaphore.release();
+            }
+
+            if (result.value() != null) {
+                breaker.recordSuccess();
+                metrics.recordLlmCall(MODEL, "success");
+                return result.value();
+            }
+            if (!result.retryable()) {
+                breaker.release();  // The API answered - a 4xx says nothing about its health
+                failedCalls.incrementAndGet();
+                metrics.recordLlmCall(MODEL, "failed");
+                return null;
+            }
+
+            breaker.recordFailure();
+            Duration delay = attempt < maxRetries ? backoff(attempt, result.retryAfter()) : null;
+            if (delay == null) {
+                logger.error("❌ {} failed after {} attempt(s) (last status {})", label, attempt + 1, result.status());
+                failedCalls.incrementAndGet();
+                metrics.recordLlmCall(MODEL, "failed");
+                return null;
+            }
+
+            retries.incrementAndGet();
+            metrics.recordLlmRetry(MODEL);
+            logger.warn("🔁 {} failed (status {}) - retry {}/{} in {} ms",
+                    label, result.status(), attempt + 1, maxRetries, delay.toMillis());
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter (half fixed, half random), capped at maxBackoff.
+     * A retry-after hint from the server wins; if it's longer than maxBackoff we give up instead
+     * of holding the player's turn hostage.
+     *
+     * @return delay before the next attempt, or null to stop retrying
+     */
+    Duration backoff(int attempt, Duration retryAfter) {
+        long capMs = maxBackoff.toMillis();
+        if (retryAfter != null) {
+            return retryAfter.toMillis() <= capMs ? retryAfter : null;
+        }
+        long exponentialMs = Math.min(capMs, baseBackoff.toMillis() << Math.min(attempt, 20));
+        return Duration.ofMillis(exponentialMs / 2 + ThreadLocalRandom.current().nextLong(exponentialMs / 2 + 1));
+    }
+
+    private static Duration retryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue("retry-after")
+                .map(value -> {
+                    try {
+                        return Duration.ofMillis((long) (Double.parseDouble(value.trim()) * 1000));
+                    } catch (NumberFormatException e) {
+                        return null;  // HTTP-date form - fall back to our own backoff
+                    }
+                })
+                .orElse(null);
+    }
+
+    private boolean acquirePermit(Semaphore semaphore) {
+        try {
+            return semaphore.tryAcquire(PERMIT_WAIT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private CircuitBreaker breakerFor(String model) {
+        return breakers.computeIfAbsent(model,
+                m -> new CircuitBreaker(breakerFailureThreshold, breakerOpenDuration));
+    }
+
+    private HttpRequest newRequest(String requestBody, boolean stream) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(apiUrl)
+                .header("Content-Type", "application/json")
+                .header("x-api-key", apiKey)
+                .header("anthropic-version", API_VERSION)
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .timeout(requestTimeout);
+        if (stream) {
+            builder.header("Accept", "text/event-stream");
+        }
+        return builder.build();
+    }
+
     /**
      * Build JSON request body including system prompt and all messages.
      */
     private String buildRequestBody(ConversationHistory history) {
+        return buildRequestBody(history, false);
+    }
+
+    // Package-private for the JMH benchmarks (src/jmh/java)
+    String buildRequestBody(ConversationHistory history, boolean stream) {
         JsonObject body = new JsonObject();
         body.addProperty("model", MODEL);
         body.addProperty("max_tokens", MAX_TOKENS);
+        if (stream) {
+            body.addProperty("stream", true);
+        }
+
+        // ⭐ SESSION 45: Recent turns within the budget; older ones are represented by the summary
+        ConversationHistory.ContextWindow window = history.contextWindow(contextTokenBudget);
+        String systemPrompt = history.getSystemPrompt();
+        String storySoFar = window.summary() != null
+                ? "CONVERSATION SO FAR (summary of earlier turns):\n" + window.summary()
+                : null;
 
         // Add system prompt if set
-        if (history.getSystemPrompt() != null) {
-            body.addProperty("system", history.getSystemPrompt());
+        if (promptCachingEnabled) {
+            // ⭐ SESSION 45: Structured system blocks - base + character layer is static per character and
+            // cached; the summary changes as the story goes on, so it follows in its own uncached block
+            JsonArray system = new JsonArray();
+            if (systemPrompt != null) {
+                system.add(cachedTextBlock(systemPrompt));
+            }
+            if (storySoFar != null) {
+                system.add(textBlock(storySoFar));
+            }
+            if (!system.isEmpty()) {
+                body.add("system", system);
+            }
+        } else {
+            if (systemPrompt != null && storySoFar != null) {
+                body.addProperty("system", systemPrompt + "\n\n" + storySoFar);
+            } else if (systemPrompt != null || storySoFar != null) {
+                body.addProperty("system", systemPrompt != null ? systemPrompt : storySoFar);
+            }
         }
 
         // Add conversation messages
-        body.add("messages", history.toJsonArray());
+        body.add("messages", promptCachingEnabled
+                ? withConversationBreakpoints(window.messages())
+                : window.messages());
 
         return new Gson().toJson(body);
     }
 
+    /**
+     * ⭐ SESSION 45: Mark the last two user turns as cache breakpoints.
+     * The newest one writes the cache for the next turn; the previous one reads what the last turn wrote.
+     * Together with the system block that's 3 of the 4 breakpoints the API allows.
+     * Marked messages are copied - the history's own objects are never modified.
+     */
+    private JsonArray withConversationBreakpoints(JsonArray messages) {
+        JsonArray result = new JsonArray();
+        for (int i = 0; i < messages.size(); i++) {
+            result.add(messages.get(i));
+        }
+
+        int marked = 0;
+        for (int i = result.size() - 1; i >= 0 && marked < CACHED_USER_TURNS; i--) {
+            JsonObject message = result.get(i).getAsJsonObject();
+            if (!"user".equals(message.get("role").getAsString())) {
+                continue;
+            }
+
+            JsonObject cached = new JsonObject();
+            cached.addProperty("role", "user");
+            JsonArray content = new JsonArray();
+            content.add(cachedTextBlock(message.get("content").getAsString()));
+            cached.add("content", content);
+
+            result.set(i, cached);
+            marked++;
+        }
+
+        return result;
+    }
+
+    private JsonObject cachedTextBlock(String text) {
+        JsonObject cacheControl = new JsonObject();
+        cacheControl.addProperty("type", "ephemeral");
+
+        JsonObject block = textBlock(text);
+        block.add("cache_control", cacheControl);
+        return block;
+    }
+
+    private static JsonObject textBlock(String text) {
+        JsonObject block = new JsonObject();
+        block.addProperty("type", "text");
+        block.addProperty("text", text);
+        return block;
+    }
+
+    /**
+     * ⭐ SESSION 45: Add one response's "usage" block to the running totals.
+     */
+    private void recordUsage(JsonObject usage) {
+        if (usage == null) {
+            return;
+        }
+
+        long input = usageValue(usage, "input_tokens");
+        long output = usageValue(usage, "output_tokens");
+        long cacheWrite = usageValue(usage, "cache_creation_input_tokens");
+        long cacheRead = usageValue(usage, "cache_read_input_tokens");
+
+        inputTokens.addAndGet(input);
+        outputTokens.addAndGet(output);
+        cacheCreationInputTokens.addAndGet(cacheWrite);
+        cacheReadInputTokens.addAndGet(cacheRead);
+
+        metrics.recordTokens(MODEL, "input", input);
+        metrics.recordTokens(MODEL, "output", output);
+        metrics.recordTokens(MODEL, "cache_write", cacheWrite);
+        metrics.recordTokens(MODEL, "cache_read", cacheRead);
+
+        if (input > 0 || cacheWrite > 0 || cacheRead > 0) {
+            logger.debug("🪙 Tokens - input: {}, cache write: {}, cache read: {}, output: {}",
+                    input, cacheWrite, cacheRead, output);
+        }
+    }
+
+    private static long usageValue(JsonObject usage, String field) {
+        return usage.has(field) && !usage.get(field).isJsonNull() ? usage.get(field).getAsLong() : 0L;
+    }
+
+    /**
+     * ⭐ SESSION 45: Enable/disable cache_control breakpoints (on by default).
+     */
+    public void setPromptCachingEnabled(boolean enabled) {
+        this.promptCachingEnabled = enabled;
+    }
+
+    /**
+     * ⭐ SESSION 45: Max estimated conversation tokens per request (0 or less = unlimited).
+     */
+    public void setContextTokenBudget(int tokens) {
+        this.contextTokenBudget = Math.max(0, tokens);
+    }
+
+    public int getContextTokenBudget() {
+        return contextTokenBudget;
+    }
+
+    /**
+     * ⭐ SESSION 45: Retries after the first attempt (0 = no retries) and the backoff range.
+     */
+    public void setRetryPolicy(int maxRetries, Duration baseBackoff, Duration maxBackoff) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * ⭐ SESSION 45: Per-attempt timeout (connect to last byte).
+     */
+    public void setRequestTimeout(Duration timeout) {
+        this.requestTimeout = timeout;
+    }
+
+    /**
+     * ⭐ SESSION 45: Send a duplicate request when the first hasn't answered after this long
+     * (Duration.ZERO disables hedging). Blocking calls only - streams are never hedged.
+     */
+    public void setHedgeDelay(Duration delay) {
+        this.hedgeDelay = delay;
+    }
+
+    /**
+     * ⭐ SESSION 45: Max API calls in flight (hedges included). Calls beyond it wait up to 20 s for a slot.
+     */
+    public void setMaxConcurrentRequests(int max) {
+        this.maxConcurrentRequests = Math.max(1, max);
+        this.permits = new Semaphore(this.maxConcurrentRequests, true);
+    }
+
+    /**
+     * ⭐ SESSION 45: Open the per-model circuit after this many consecutive failures, for this long.
+     */
+    public void setCircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.breakerFailureThreshold = failureThreshold;
+        this.breakerOpenDuration = openDuration;
+        breakers.clear();
+    }
+
+    /**
+     * ⭐ SESSION 45: Export token and call counters through Micrometer.
+     */
+    public void setMetrics(TurnMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * ⭐ SESSION 45: Retry / hedge / breaker counters since startup.
+     */
+    public Map<String, Object> getResilienceStats() {
+        Map<String, Object> circuits = new LinkedHashMap<>();
+        breakers.forEach((model, breaker) -> circuits.put(model, breaker.snapshot()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("retries", retries.get());
+        stats.put("hedgedRequests", hedgedRequests.get());
+        stats.put("hedgeWins", hedgeWins.get());
+        stats.put("failedCalls", failedCalls.get());
+        stats.put("saturatedCalls", saturatedCalls.get());
+        stats.put("maxConcurrentRequests", maxConcurrentRequests);
+        stats.put("inFlight", maxConcurrentRequests - permits.availablePermits());
+        stats.put("circuitBreakers", circuits);
+        return stats;
+    }
+
+    /**
+     * ⭐ SESSION 45: Token usage since startup, including prompt cache reads/writes.
+     * cacheHitRatio = share of prompt tokens served from the cache.
+     */
+    public Map<String, Object> getUsageStats() {
+        long uncached = inputTokens.get();
+        long written = cacheCreationInputTokens.get();
+        long read = cacheReadInputTokens.get();
+        long totalPrompt = uncached + written + read;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requestCount.get());
+        stats.put("inputTokens", uncached);
+        stats.put("cacheCreationInputTokens", written);
+        stats.put("cacheReadInputTokens", read);
+        stats.put("outputTokens", outputTokens.get());
+        stats.put("cacheHitRatio", totalPrompt > 0 ? (double) read / totalPrompt : 0.0);
+        stats.put("promptCachingEnabled", promptCachingEnabled);
+        return stats;
+    }
+
     /**
      * Extract the content from Claude's response.
      */
     private String parseResponse(String responseJson) {
         JsonObject json = new Gson().fromJson(responseJson, JsonObject.class);
+        recordUsage(json.getAsJsonObject("usage"));
         JsonArray content = json.getAsJsonArray("content");
 
         if (content != null && content.size() > 0) {
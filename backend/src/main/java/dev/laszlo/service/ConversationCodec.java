@@ -0,0 +1,167 @@
+package dev.laszlo.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact storage format for save snapshots (story_saves.conversation_data, BYTEA).
+ * <p>
+ * Layout: one format byte, one compression byte (0 = none, 1 = deflate), then the body - minified JSON
+ * with short keys and messages as [role, content] pairs:
+ * <pre>
+ * {"ref": "pirates:captain:1a2b3c4d", "m": [["u", "Hello"], ["a", "Ahoy!"]]}
+ * </pre>
+ * A system prompt built by NarrativeEngine is stored by reference only (story, character and a hash of
+ * the prompt text) - the engine rebuilds it every turn, so repeating it in every save is wasted space.
+ * A prompt without a reference is stored inline ("sp"). Bodies under {@value #COMPRESS_MIN_BYTES}
+ * bytes are left uncompressed.
+ * <p>
+ * Rows written before this format keep their conversation_json text (version "1.0") and are read with
+ * ConversationHistory.fromJson until their next compaction rewrites them.
+ * ⭐ SESSION 45: Compact history storage
+ */
+public final class ConversationCodec {
+
+    public static final byte FORMAT_VERSION = 2;
+
+    private static final byte UNCOMPRESSED = 0;
+    private static final byte DEFLATE = 1;
+    private static final int COMPRESS_MIN_BYTES = 512;
+
+    private static final Gson gson = new Gson();
+
+    private ConversationCodec() {
+    }
+
+    /**
+     * Reference for a prompt built for (story, character): changes whenever the prompt text does.
+     */
+    public static String promptRef(String storyId, String characterId, String prompt) {
+        return storyId + ":" + characterId + ":" + String.format("%08x", prompt.hashCode());
+    }
+
+    /**
+     * Encode a history's system prompt (or its reference) and messages.
+     * The context summary is not included - it has its own columns.
+     *
+     * @throws IllegalStateException if the history is a lazy window
+     */
+    public static byte[] encode(ConversationHistory history) {
+        history.requireComplete();
+        JsonObject root = new JsonObject();
+        if (history.getPromptRef() != null) {
+            root.addProperty("ref", history.getPromptRef());
+        } else if (history.getSystemPrompt() != null) {
+            root.addProperty("sp", history.getSystemPrompt());
+        }
+
+        JsonArray messages = new JsonArray();
+        for (JsonObject msg : history.getMessages()) {
+            JsonArray pair = new JsonArray(2);
+            pair.add("user".equals(msg.get("role").getAsString()) ? "u" : "a");
+            pair.add(msg.get("content"));
+            messages.add(pair);
+        }
+        root.add("m", messages);
+
+        byte[] body = gson.toJson(root).getBytes(StandardCharsets.UTF_8);
+        boolean compress = body.length >= COMPRESS_MIN_BYTES;
+        if (compress) {
+            body = deflate(body);
+        }
+
+        byte[] encoded = new byte[body.length + 2];
+        encoded[0] = FORMAT_VERSION;
+        encoded[1] = compress ? DEFLATE : UNCOMPRESSED;
+        System.arraycopy(body, 0, encoded, 2, body.length);
+        return encoded;
+    }
+
+    /**
+     * Decode a snapshot written by {@link #encode}. A referenced prompt comes back as its reference
+     * only (getSystemPrompt() is null until the engine sets the prompt for the next turn).
+     *
+     * @throws IllegalArgumentException if the data is not in a known format
+     */
+    public static ConversationHistory decode(byte[] data) {
+        if (data == null || data.length < 2) {
+            throw new IllegalArgumentException("Conversation data is empty");
+        }
+        if (data[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unknown conversation format: " + data[0]);
+        }
+
+        try {
+            byte[] body = switch (data[1]) {
+                case UNCOMPRESSED -> Arrays.copyOfRange(data, 2, data.length);
+                case DEFLATE -> inflate(data, 2);
+                default -> throw new IllegalArgumentException("Unknown conversation compression: " + data[1]);
+            };
+
+            JsonObject root = JsonParser.parseString(new String(body, StandardCharsets.UTF_8)).getAsJsonObject();
+            ConversationHistory history = new ConversationHistory();
+            if (root.has("ref")) {
+                history.setSystemPrompt(null, root.get("ref").getAsString());
+            } else if (root.has("sp")) {
+                history.setSystemPrompt(root.get("sp").getAsString());
+            }
+
+            for (JsonElement element : root.getAsJsonArray("m")) {
+                JsonArray pair = element.getAsJsonArray();
+                history.addMessage("u".equals(pair.get(0).getAsString()) ? "user" : "assistant",
+                        pair.get(1).getAsString());
+            }
+            return history;
+
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Failed to decode conversation data: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 3 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input, int offset) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input, offset, input.length - offset);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated conversation data");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package dev.laszlo.service;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
@@ -15,32 +14,62 @@ import java.util.List;
  * This class stores them and converts to JSON format for the API.
  *
  * ⭐ SESSION 26: Added JSON serialization for database persistence
+ * ⭐ SESSION 45: Context windowing - requests carry a rolling summary + the recent turns that fit a
+ * token budget, while the full transcript stays here for saves and the UI
+ * ⭐ SESSION 45: Saves use ConversationCodec (compact, prompt by reference); toJson/fromJson stay for version "1.0" rows
+ * ⭐ SESSION 45: Lazy window - a history loaded for a turn may hold only its newest messages (see {@link #window})
  */
 public class ConversationHistory {
 
     // Store messages as a list of JSON objects
     private final List<JsonObject> messages = new ArrayList<>();
 
+    // ⭐ SESSION 45: Leading messages that exist in the save but were not loaded (0 = complete history).
+    // Indexes in the public API are positions in the whole conversation; messages.get(i - windowOffset).
+    private int windowOffset = 0;
+
     // System prompt (sets Claude's personality/behavior)
     private String systemPrompt;
 
+    // ⭐ SESSION 45: Which prompt systemPrompt is (story:character:hash) - saves store this instead of the text
+    private String promptRef;
+
+    // ⭐ SESSION 45: Rolling summary of the first summarizedMessageCount messages (null = none yet)
+    private String contextSummary;
+    private int summarizedMessageCount = 0;
+
+    // Rough token estimate for English prose (Claude averages ~4 characters per token)
+    private static final int CHARS_PER_TOKEN = 4;
+
     // ⭐ SESSION 26: Gson instance for serialization
-    private static final Gson gson = new GsonBuilder()
-            .setPrettyPrinting()
-            .create();
+    // ⭐ SESSION 45: Compact output - snapshots are stored, not read by humans
+    private static final Gson gson = new Gson();
 
     /**
      * Set the system prompt - tells Claude how to behave.
      * Example: "You are a story-teller who writes atmospheric scenes."
      */
     public void setSystemPrompt(String prompt) {
+        setSystemPrompt(prompt, null);
+    }
+
+    /**
+     * ⭐ SESSION 45: Set a prompt that can be rebuilt from its reference (see ConversationCodec.promptRef).
+     * A history decoded from a save has the reference but no text until the next turn sets it again.
+     */
+    public void setSystemPrompt(String prompt, String promptRef) {
         this.systemPrompt = prompt;
+        this.promptRef = promptRef;
     }
 
     public String getSystemPrompt() {
         return systemPrompt;
     }
 
+    public String getPromptRef() {
+        return promptRef;
+    }
+
     /**
      * Add user message to history.
      */
@@ -61,8 +90,31 @@ public class ConversationHistory {
         messages.add(message);
     }
 
+    /**
+     * ⭐ SESSION 45: Drop the trailing user message of a turn that got no reply,
+     * so a retry doesn't leave two copies in the transcript. No-op if the last message isn't a user message.
+     */
+    public void discardLastUserMessage() {
+        if (!messages.isEmpty() && "user".equals(messages.get(messages.size() - 1).get("role").getAsString())) {
+            messages.remove(messages.size() - 1);
+        }
+    }
+
+    /**
+     * ⭐ SESSION 45: Add a message with an explicit role ("user" / "assistant").
+     * Used when replaying a saved message log.
+     */
+    public void addMessage(String role, String content) {
+        if ("user".equals(role)) {
+            addUserMessage(content);
+        } else {
+            addAssistantMessage(content);
+        }
+    }
+
     /**
      * Convert All messages to JsonArray for API request.
+     * ⭐ SESSION 45: Only the loaded messages of a window
      */
     public JsonArray toJsonArray() {
         JsonArray array = new JsonArray();
@@ -74,9 +126,10 @@ public class ConversationHistory {
 
     /**
      * Get message count (useful for debugging).
+     * ⭐ SESSION 45: Counts the whole conversation, including messages a window didn't load
      */
     public int getMessageCount() {
-        return messages.size();
+        return windowOffset + messages.size();
     }
 
     /**
@@ -84,6 +137,199 @@ public class ConversationHistory {
      */
     public void clear() {
         messages.clear();
+        windowOffset = 0;
+        contextSummary = null;
+        summarizedMessageCount = 0;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // ⭐ SESSION 45: LAZY WINDOW
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * A history holding only messages [offset, offset + recent.size()) of a longer conversation -
+     * enough for the next request when everything before offset is covered by the context summary.
+     * The window must start with a user message.
+     *
+     * @param offset number of earlier messages that stay in the store
+     * @param recent the messages from offset on, as {role, content} objects
+     */
+    public static ConversationHistory window(int offset, List<JsonObject> recent) {
+        ConversationHistory history = new ConversationHistory();
+        history.windowOffset = Math.max(0, offset);
+        history.messages.addAll(recent);
+        return history;
+    }
+
+    /**
+     * Number of leading messages not loaded (0 = this is the complete history).
+     */
+    public int getWindowOffset() {
+        return windowOffset;
+    }
+
+    public boolean isComplete() {
+        return windowOffset == 0;
+    }
+
+    /**
+     * Message at a position in the whole conversation (must be loaded).
+     */
+    public JsonObject getMessage(int index) {
+        if (index < windowOffset) {
+            throw new IndexOutOfBoundsException("Message " + index + " is before the loaded window (" + windowOffset + ")");
+        }
+        return messages.get(index - windowOffset);
+    }
+
+    /**
+     * Messages [from, to) of the whole conversation (must be loaded).
+     */
+    public List<JsonObject> getMessages(int from, int to) {
+        if (from < windowOffset) {
+            throw new IndexOutOfBoundsException("Message " + from + " is before the loaded window (" + windowOffset + ")");
+        }
+        return new ArrayList<>(messages.subList(from - windowOffset, to - windowOffset));
+    }
+
+    /**
+     * Complete a window with the messages before it (loaded from the store), in place.
+     *
+     * @param earlier messages [0, getWindowOffset())
+     */
+    public void prepend(List<JsonObject> earlier) {
+        if (earlier.size() != windowOffset) {
+            throw new IllegalArgumentException("Expected " + windowOffset + " earlier messages, got " + earlier.size());
+        }
+        messages.addAll(0, earlier);
+        windowOffset = 0;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // ⭐ SESSION 45: CONTEXT WINDOWING
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Rolling summary of the oldest messages, or null if nothing has been summarized yet.
+     */
+    public String getContextSummary() {
+        return contextSummary;
+    }
+
+    /**
+     * Number of leading messages the context summary covers.
+     */
+    public int getSummarizedMessageCount() {
+        return summarizedMessageCount;
+    }
+
+    /**
+     * Replace the rolling summary. Messages are kept - the summary only stands in for them in requests.
+     *
+     * @param summary         summary of messages [0, coveredMessages)
+     * @param coveredMessages how many leading messages the summary covers
+     */
+    public void setContextSummary(String summary, int coveredMessages) {
+        if (summary == null || coveredMessages <= 0) {
+            this.contextSummary = null;
+            this.summarizedMessageCount = 0;
+            return;
+        }
+        this.contextSummary = summary;
+        this.summarizedMessageCount = Math.min(coveredMessages, getMessageCount());
+    }
+
+    /**
+     * Messages to send for a request limited to roughly {@code tokenBudget} tokens of conversation.
+     * <p>
+     * If everything fits, that's the whole history. Otherwise the window starts after the summarized
+     * prefix (stable between summaries, so prompt caching keeps hitting) - or, if the unsummarized tail
+     * alone is over budget, at the newest user turn that still fits. The window always starts with a
+     * user message and always includes the last message.
+     *
+     * ⭐ SESSION 45: A lazy window never reaches before its first loaded message.
+     *
+     * @param tokenBudget max estimated conversation tokens, 0 or less = unlimited
+     */
+    public ContextWindow contextWindow(int tokenBudget) {
+        if (windowOffset == 0 && (tokenBudget <= 0 || tokensFrom(0) <= tokenBudget)) {
+            return new ContextWindow(null, toJsonArray());
+        }
+
+        int start = Math.max(contextSummary != null ? summarizedMessageCount : 0, windowOffset);
+        if (tokenBudget > 0 && tokensFrom(start) > tokenBudget) {
+            start = Math.max(start, windowStart(tokenBudget));
+        }
+
+        JsonArray window = new JsonArray();
+        for (int i = start; i < getMessageCount(); i++) {
+            window.add(getMessage(i));
+        }
+        return new ContextWindow(contextSummary, window);
+    }
+
+    /**
+     * True if the messages not yet covered by the summary no longer fit the budget.
+     */
+    public boolean needsSummary(int tokenBudget) {
+        return tokenBudget > 0 && tokensFrom(Math.max(summarizedMessageCount, windowOffset)) > tokenBudget;
+    }
+
+    /**
+     * Index of the first message of the longest suffix that fits the budget and starts with a user turn.
+     * Falls back to the last user turn (or last message) when even that is over budget.
+     */
+    public int windowStart(int tokenBudget) {
+        int count = getMessageCount();
+        int tokens = 0;
+        int start = count;
+        for (int i = count - 1; i >= windowOffset; i--) {
+            tokens += estimateTokens(getMessage(i));
+            if (tokens > tokenBudget) {
+                break;
+            }
+            start = i;
+        }
+
+        // Advance to a user turn - the API expects the conversation to open with one
+        while (start < count && !"user".equals(getMessage(start).get("role").getAsString())) {
+            start++;
+        }
+        if (start < count) {
+            return start;
+        }
+
+        for (int i = count - 1; i >= windowOffset; i--) {
+            if ("user".equals(getMessage(i).get("role").getAsString())) {
+                return i;
+            }
+        }
+        return Math.max(windowOffset, count - 1);
+    }
+
+    /**
+     * Rough token estimate for a piece of text.
+     */
+    public static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private int tokensFrom(int fromIndex) {
+        int tokens = 0;
+        for (int i = Math.max(fromIndex, windowOffset); i < getMessageCount(); i++) {
+            tokens += estimateTokens(getMessage(i));
+        }
+        return tokens;
+    }
+
+    private static int estimateTokens(JsonObject message) {
+        return estimateTokens(message.get("content").getAsString());
+    }
+
+    /**
+     * What a request actually carries: an optional summary of older turns + the recent messages.
+     */
+    public record ContextWindow(String summary, JsonArray messages) {
     }
 
     // ═══════════════════════════════════════════════════════════════════════════
@@ -96,6 +342,7 @@ public class ConversationHistory {
      * @return JSON string containing all messages and system prompt
      */
     public String toJson() {
+        requireComplete();
         JsonObject root = new JsonObject();
 
         // Add system prompt (may be null)
@@ -168,10 +415,37 @@ public class ConversationHistory {
         return messages.isEmpty();
     }
 
+    /**
+     * ⭐ SESSION 45: Independent copy (system prompt + deep-copied messages).
+     * Lets the save cache hand out and keep histories without sharing mutable state.
+     */
+    public ConversationHistory copy() {
+        ConversationHistory copy = new ConversationHistory();
+        copy.systemPrompt = systemPrompt;
+        copy.promptRef = promptRef;
+        copy.windowOffset = windowOffset;
+        copy.contextSummary = contextSummary;
+        copy.summarizedMessageCount = summarizedMessageCount;
+        for (JsonObject msg : messages) {
+            copy.messages.add(msg.deepCopy());
+        }
+        return copy;
+    }
+
     /**
      * Get a copy of all messages (for debugging or analysis).
+     * ⭐ SESSION 45: Of a window, only the loaded ones - check isComplete() or use getMessages(from, to)
      */
     public List<JsonObject> getMessages() {
         return new ArrayList<>(messages);  // Return copy to prevent modification
     }
+
+    /**
+     * ⭐ SESSION 45: Fail fast where the whole conversation is needed (snapshots).
+     */
+    void requireComplete() {
+        if (windowOffset > 0) {
+            throw new IllegalStateException("History is a window starting at message " + windowOffset);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+package dev.laszlo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Per-conversation turn ordering and session lookup, so controllers hold no conversation state of their own.
+ * <p>
+ * A conversation is keyed by (user, story, slot) for narrative saves and by session id for the chat API.
+ * Turns on the same key run one after another - load, LLM call and save of one turn all finish before
+ * the next turn loads - so two tabs on the same save can't both extend the same old history and lose a
+ * turn. Turns on different keys never wait for each other.
+ * <p>
+ * Ordering is a per-key chain of futures rather than a lock: an async turn holds no thread while it
+ * waits for Claude, and a key's entry is removed as soon as its last queued turn finishes.
+ * ⭐ SESSION 45: Per-request conversation state
+ */
+@Service
+public class ConversationRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationRegistry.class);
+
+    // Completion signal of the last turn queued per key (absent = idle)
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    // Queued turns start on their own virtual thread, not on the one that finished the previous turn
+    private final Executor queuedTurns = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Chat API: the session each user is currently writing to
+    private final ConcurrentHashMap<String, Integer> chatSessions = new ConcurrentHashMap<>();
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // TURN ORDERING
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Run an async turn once every earlier turn on the same key has finished.
+     * <p>
+     * {@code turn} is started on the calling thread if the key is idle, otherwise on a new virtual thread
+     * once the previous turn is done (with the caller's log context). The key is released when the future
+     * it returns completes, so everything the turn must do before the next one starts belongs inside it.
+     *
+     * @return completes with the turn's result (or its failure)
+     */
+    public <T> CompletableFuture<T> submit(String key, Supplier<CompletableFuture<T>> turn) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = tails.put(key, done);
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        Runnable start = TurnLog.wrap(() -> {
+            try {
+                turn.get().whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                    release(key, done);
+                });
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                release(key, done);
+            }
+        });
+
+        if (previous == null) {
+            start.run();
+        } else {
+            logger.debug("🔒 Turn queued behind an active turn: {}", key);
+            previous.thenRunAsync(start, queuedTurns);
+        }
+        return result;
+    }
+
+    /**
+     * Blocking variant of {@link #submit} for callers that already run on their own (virtual) thread,
+     * e.g. streaming turns. Waits for earlier turns on the key, then runs {@code turn} on this thread.
+     */
+    public <T> T call(String key, Supplier<T> turn) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = tails.put(key, done);
+        try {
+            if (previous != null) {
+                logger.debug("🔒 Turn waiting for an active turn: {}", key);
+                previous.join();
+            }
+            return turn.get();
+        } finally {
+            release(key, done);
+        }
+    }
+
+    /**
+     * Number of keys with a running or queued turn (for status/metrics).
+     */
+    public int activeConversations() {
+        return tails.size();
+    }
+
+    private void release(String key, CompletableFuture<Void> done) {
+        tails.remove(key, done);  // Only if no later turn queued behind this one
+        done.complete(null);
+    }
+
+    public static String storyKey(String userId, String storyId, int saveSlot) {
+        return "story|" + userId + "|" + storyId + "|" + saveSlot;
+    }
+
+    public static String chatKey(int sessionId) {
+        return "chat|" + sessionId;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // CHAT SESSIONS
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * The chat session a user is writing to, picking one via {@code defaultSession} on first use.
+     */
+    public int chatSession(String userId, IntSupplier defaultSession) {
+        return chatSessions.computeIfAbsent(userId, id -> defaultSession.getAsInt());
+    }
+
+    /**
+     * Point a user's chat at another session (create / switch).
+     */
+    public void switchChatSession(String userId, int sessionId) {
+        chatSessions.put(userId, sessionId);
+    }
+}
@@ -0,0 +1,128 @@
+package dev.laszlo.service;
+
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Folds old turns of a story into its rolling context summary, in the background.
+ * <p>
+ * ChatService only sends a token budget's worth of recent turns (ConversationHistory.contextWindow).
+ * Once the turns after the current summary outgrow that budget, this asks Claude to extend the
+ * summary with the oldest of them - enough that the remaining tail is about half the budget, so it
+ * runs every few turns rather than every turn. The result is attached to the cached save
+ * (StorySessionCache.applySummary) and stored with it; the full transcript is never touched.
+ * <p>
+ * ⭐ SESSION 45: Context windowing + rolling summarization
+ */
+@Service
+public class ConversationSummarizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationSummarizer.class);
+
+    private static final String SUMMARY_PROMPT = """
+            You maintain the running summary of an interactive story between a player and its characters.
+            Update the summary so it covers everything in PREVIOUS SUMMARY plus the NEW TURNS.
+            Keep: names, who said or did what, choices the player made, relationships and how they changed,
+            promises, secrets, items, locations and unresolved threads.
+            Write compact past-tense prose, at most 300 words. Reply with the summary text only.
+            """;
+
+    private final ChatService chatService;
+    private final StorySessionCache storySessionCache;
+
+    // One summary request per save at a time
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public ConversationSummarizer(ChatService chatService, StorySessionCache storySessionCache) {
+        this.chatService = chatService;
+        this.storySessionCache = storySessionCache;
+    }
+
+    /**
+     * Start a background summary of the oldest unsummarized turns if they no longer fit the budget.
+     * Returns immediately; the summary lands in the save cache when Claude answers.
+     *
+     * @return true if a summary request was started
+     */
+    public boolean summarizeIfNeeded(String userId, String storyId, int saveSlot, ConversationHistory history) {
+        int budget = chatService.getContextTokenBudget();
+        if (!history.needsSummary(budget)) {
+            return false;
+        }
+
+        // ⭐ SESSION 45: Absolute positions - a lazily loaded history starts at the summarized prefix
+        int from = Math.max(history.getSummarizedMessageCount(), history.getWindowOffset());
+        int to = limitChunk(history, from, history.windowStart(budget / 2), budget);
+        if (to <= from) {
+            return false;
+        }
+
+        String key = userId + "|" + storyId + "|" + saveSlot;
+        if (!inFlight.add(key)) {
+            return false;
+        }
+
+        logger.info("📝 Summarizing messages {}-{} of {} (slot {})", from, to - 1, storyId, saveSlot);
+
+        ConversationHistory request = buildSummaryRequest(history.getContextSummary(), history.getMessages(from, to));
+        chatService.sendMessageAsync(request)
+                .thenAccept(summary -> {
+                    if (summary == null || summary.isBlank()) {
+                        logger.warn("⚠️ Context summary for {} (slot {}) failed - will retry next turn", storyId, saveSlot);
+                    } else if (storySessionCache.applySummary(userId, storyId, saveSlot, summary.trim(), to)) {
+                        logger.info("📝 Context summary for {} (slot {}) now covers {} messages", storyId, saveSlot, to);
+                    }
+                })
+                .whenComplete((ignored, e) -> inFlight.remove(key));
+        return true;
+    }
+
+    /**
+     * Cap one summary request at about a budget's worth of transcript (a long legacy save catches up
+     * over several turns instead of in one huge request). The end is moved back to a user turn,
+     * because the request window starts right after the summarized messages.
+     */
+    private int limitChunk(ConversationHistory history, int from, int to, int budget) {
+        int tokens = 0;
+        int end = from;
+        while (end < to && tokens <= budget) {
+            tokens += ConversationHistory.estimateTokens(history.getMessage(end).get("content").getAsString());
+            end++;
+        }
+        int chunkEnd = end;
+        while (end > from && !"user".equals(history.getMessage(end).get("role").getAsString())) {
+            end--;
+        }
+        if (end == from) {
+            // A single oversized turn - take it whole, up to the next user turn
+            end = chunkEnd;
+            while (end < to && !"user".equals(history.getMessage(end).get("role").getAsString())) {
+                end++;
+            }
+        }
+        return end;
+    }
+
+    private ConversationHistory buildSummaryRequest(String previousSummary, List<JsonObject> turns) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("PREVIOUS SUMMARY:\n")
+                .append(previousSummary != null ? previousSummary : "(none - this is the start of the story)")
+                .append("\n\nNEW TURNS:\n");
+        for (JsonObject message : turns) {
+            prompt.append("user".equals(message.get("role").getAsString()) ? "Player: " : "Story: ")
+                    .append(message.get("content").getAsString())
+                    .append("\n");
+        }
+
+        ConversationHistory request = new ConversationHistory();
+        request.setSystemPrompt(SUMMARY_PROMPT);
+        request.addUserMessage(prompt.toString());
+        return request;
+    }
+}
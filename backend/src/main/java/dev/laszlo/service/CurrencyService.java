@@ -4,21 +4,49 @@ import dev.laszlo.model.UserCurrency;
 import dev.laszlo.model.GemTransaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for managing user gem currency and transactions.
  * ⭐ SESSION 35: Migrated from SQLite to PostgreSQL
+ * ⭐ SESSION 45: Per-user balance cache - reads right after our own writes come from memory.
+ * <p>
+ * Every balance write bumps user_currency.version and hands the committed row back to the cache
+ * (write-through after commit, never before - a rolled back write leaves the cache alone). Entries
+ * only ever move to a newer version, so a slow read can't overwrite a fresher write. On PostgreSQL
+ * each write also sends a NOTIFY that other instances use to drop their stale copy (see
+ * GemBalanceListener); the TTL bounds staleness if a notification is missed.
  */
 @Service
 public class CurrencyService extends BaseService {
     private static final Logger logger = LoggerFactory.getLogger(CurrencyService.class);
 
+    // ⭐ SESSION 45: NOTIFY channel for balance writes, payload "userId:version"
+    static final String BALANCE_CHANNEL = "gem_balance";
+
+    private final TurnMetrics metrics;  // ⭐ SESSION 45: storyforge.db timings
+
+    // ⭐ SESSION 45: Balance cache (userId -> newest known row)
+    private final ConcurrentHashMap<String, CachedBalance> balances = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+
+    // Constructor injection
+    public CurrencyService(DataSource dataSource, TurnMetrics metrics,
+                           @Value("${storyforge.currency.cache-ttl-seconds:60}") long cacheTtlSeconds) {
+        super(dataSource);
+        this.metrics = metrics;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(cacheTtlSeconds);
+    }
+
     /**
      * 💎 Award gems to a user for completing actions
      *
@@ -29,11 +57,50 @@ public class CurrencyService extends BaseService {
      * @return true if successful, false otherwise
      */
     public boolean awardGems(String userId, int amount, String source, String storyId) {
+        return metrics.timeDb("award_gems", storyId, () -> award(userId, amount, source, storyId));
+    }
+
+    private boolean award(String userId, int amount, String source, String storyId) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false); // Start transaction
+            try {
+                BalanceSnapshot balance = award(conn, userId, amount, source, storyId);
+                if (balance == null) {
+                    conn.rollback();
+                    return false;
+                }
+                conn.commit();
+                committed(balance);
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            logger.error("❌ Failed to award gems: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * ⭐ SESSION 45: Balance update + ledger entry on the caller's connection and transaction
+     * (see TurnCommitService). The caller commits or rolls back, then passes the result to committed().
+     *
+     * A player's first award opens their currency row (see openAccount).
+     *
+     * @return the row as written, or null if the user has no currency row (nothing written)
+     */
+    BalanceSnapshot award(Connection conn, String userId, int amount, String source, String storyId)
+            throws SQLException {
         String updateBalanceSql = """
                 UPDATE user_currency
                 SET gem_balance = gem_balance + ?,
                     total_earned = total_earned + ?,
-                    last_updated = ?
+                    last_updated = ?,
+                    version = version + 1
                 WHERE user_id = ?
                 """;
 
@@ -42,45 +109,58 @@ public class CurrencyService extends BaseService {
                 VALUES (?, ?, 'earn', ?, ?)
                 """;
 
-        try (Connection conn = getConnection()) {
-            conn.setAutoCommit(false); // Start transaction
-
-            // Update user balance
-            try (PreparedStatement pstmt = conn.prepareStatement(updateBalanceSql)) {
-                pstmt.setInt(1, amount);
-                pstmt.setInt(2, amount);
-                pstmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
-                pstmt.setString(4, userId);
-
-                int updated = pstmt.executeUpdate();
-                if (updated == 0) {
-                    logger.error("❌ User {} not found in user_currency table", userId);
-                    conn.rollback();
-                    return false;
-                }
+        // Update user balance
+        try (PreparedStatement pstmt = conn.prepareStatement(updateBalanceSql)) {
+            pstmt.setInt(1, amount);
+            pstmt.setInt(2, amount);
+            pstmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            pstmt.setString(4, userId);
+
+            int updated = pstmt.executeUpdate();
+            if (updated == 0) {
+                // First gems for this player - open their account and try again
+                openAccount(conn, userId);
+                updated = pstmt.executeUpdate();
             }
-
-            // Log transaction
-            try (PreparedStatement pstmt = conn.prepareStatement(insertTransactionSql)) {
-                pstmt.setString(1, userId);
-                pstmt.setInt(2, amount);
-                pstmt.setString(3, source);
-                pstmt.setString(4, storyId);
-                pstmt.executeUpdate();
+            if (updated == 0) {
+                logger.error("❌ User {} not found in user_currency table", userId);
+                return null;
             }
+        }
+
+        // Log transaction
+        try (PreparedStatement pstmt = conn.prepareStatement(insertTransactionSql)) {
+            pstmt.setString(1, userId);
+            pstmt.setInt(2, amount);
+            pstmt.setString(3, source);
+            pstmt.setString(4, storyId);
+            pstmt.executeUpdate();
+        }
 
-            conn.commit();
-            logger.info("💎 Awarded {} gems to {} (source: {})", amount, userId, source);
-            return true;
+        logger.info("💎 Awarded {} gems to {} (source: {})", amount, userId, source);
+        return written(conn, userId);
+    }
 
-        } catch (SQLException e) {
-            logger.error("❌ Failed to award gems: {}", e.getMessage());
-            return false;
+    /**
+     * ⭐ SESSION 45: Create an empty (0 gem) currency row for the user if there is none yet.
+     * Registered players have no row until they earn something - only 'default' is seeded.
+     * ON CONFLICT DO NOTHING lets two first awards race without aborting either transaction.
+     */
+    private void openAccount(Connection conn, String userId) throws SQLException {
+        String sql = isPostgres(conn)
+                ? "INSERT INTO user_currency (user_id) VALUES (?) ON CONFLICT (user_id) DO NOTHING"
+                : "MERGE INTO user_currency (user_id) KEY (user_id) VALUES (?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            if (pstmt.executeUpdate() > 0) {
+                logger.info("💎 Opened gem account for user {}", userId);
+            }
         }
     }
 
     /**
      * 💰 Spend gems for unlocking content
+     * ⭐ SESSION 45: Balance check and debit are one conditional UPDATE - concurrent spends can't overdraw
      *
      * @param userId    User identifier
      * @param amount    Number of gems to spend
@@ -88,19 +168,46 @@ public class CurrencyService extends BaseService {
      * @return true if successful, false if insufficient balance or error
      */
     public boolean spendGems(String userId, int amount, int contentId) {
-        // First check if user has enough gems
-        int currentBalance = getGemBalance(userId);
-        if (currentBalance < amount) {
-            logger.warn("⚠️ User {} has insufficient gems (has: {}, needs: {})", userId, currentBalance, amount);
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false); // Start transaction
+            try {
+                BalanceSnapshot balance = spend(conn, userId, amount, contentId);
+                if (balance == null) {
+                    conn.rollback();
+                    return false;
+                }
+                conn.commit();
+                committed(balance);
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            logger.error("❌ Failed to spend gems: {}", e.getMessage());
             return false;
         }
+    }
 
+    /**
+     * ⭐ SESSION 45: Debit + ledger entry on the caller's connection and transaction (see
+     * GalleryService.unlockContent). The {@code gem_balance >= ?} condition is evaluated under the
+     * row lock, so two concurrent spends of the last gems can't both succeed.
+     * The caller commits or rolls back, then passes the result to committed().
+     *
+     * @return the row as written, or null if the balance is too low or the user has no currency row
+     */
+    BalanceSnapshot spend(Connection conn, String userId, int amount, int contentId) throws SQLException {
         String updateBalanceSql = """
                 UPDATE user_currency
                 SET gem_balance = gem_balance - ?,
                     total_spent = total_spent + ?,
-                    last_updated = ?
-                WHERE user_id = ?
+                    last_updated = ?,
+                    version = version + 1
+                WHERE user_id = ? AND gem_balance >= ?
                 """;
 
         String insertTransactionSql = """
@@ -108,93 +215,152 @@ public class CurrencyService extends BaseService {
                 VALUES (?, ?, 'spend', 'unlock_content', ?)
                 """;
 
-        try (Connection conn = getConnection()) {
-            conn.setAutoCommit(false); // Start transaction
-
-            // Deduct gems from balance
-            try (PreparedStatement pstmt = conn.prepareStatement(updateBalanceSql)) {
-                pstmt.setInt(1, amount);
-                pstmt.setInt(2, amount);
-                pstmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
-                pstmt.setString(4, userId);
-                pstmt.executeUpdate();
+        // Deduct gems from balance - only if there are enough
+        try (PreparedStatement pstmt = conn.prepareStatement(updateBalanceSql)) {
+            pstmt.setInt(1, amount);
+            pstmt.setInt(2, amount);
+            pstmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            pstmt.setString(4, userId);
+            pstmt.setInt(5, amount);
+
+            if (pstmt.executeUpdate() == 0) {
+                logger.warn("⚠️ User {} has insufficient gems (needs: {})", userId, amount);
+                return null;
             }
+        }
 
-            // Log transaction
-            try (PreparedStatement pstmt = conn.prepareStatement(insertTransactionSql)) {
-                pstmt.setString(1, userId);
-                pstmt.setInt(2, amount);
-                pstmt.setInt(3, contentId);
-                pstmt.executeUpdate();
-            }
+        // Log transaction
+        try (PreparedStatement pstmt = conn.prepareStatement(insertTransactionSql)) {
+            pstmt.setString(1, userId);
+            pstmt.setInt(2, amount);
+            pstmt.setInt(3, contentId);
+            pstmt.executeUpdate();
+        }
 
-            conn.commit();
-            logger.info("💰 User {} spent {} gems (new balance: {})", userId, amount, currentBalance - amount);
-            return true;
+        logger.info("💰 User {} spent {} gems", userId, amount);
+        return written(conn, userId);
+    }
 
-        } catch (SQLException e) {
-            logger.error("❌ Failed to spend gems: {}", e.getMessage());
-            return false;
+    /**
+     * Read back the row we just updated (our transaction holds its lock, so this is exactly our write)
+     * and, on PostgreSQL, queue a NOTIFY for other instances. NOTIFY is delivered on commit and
+     * dropped on rollback, like the write itself.
+     */
+    private BalanceSnapshot written(Connection conn, String userId) throws SQLException {
+        BalanceSnapshot balance = read(conn, userId);
+        if (balance != null && isPostgres(conn)) {
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT pg_notify(?, ?)")) {
+                pstmt.setString(1, BALANCE_CHANNEL);
+                pstmt.setString(2, userId + ":" + balance.version());
+                pstmt.execute();
+            }
+        }
+        return balance;
+    }
+
+    private BalanceSnapshot read(Connection conn, String userId) throws SQLException {
+        String sql = "SELECT * FROM user_currency WHERE user_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                UserCurrency currency = new UserCurrency(
+                        rs.getString("user_id"),
+                        rs.getInt("gem_balance"),
+                        rs.getInt("total_earned"),
+                        rs.getInt("total_spent"),
+                        getTimestampAsString(rs, "last_updated"),
+                        getTimestampAsString(rs, "created_at")
+                );
+                return new BalanceSnapshot(currency, rs.getLong("version"));
+            }
         }
     }
 
     /**
      * 💵 Get user's current gem balance
+     * ⭐ SESSION 45: Served from the balance cache when fresh
      *
      * @param userId User identifier
      * @return Current gem balance, or 0 if user not found
      */
     public int getGemBalance(String userId) {
-        String sql = "SELECT gem_balance FROM user_currency WHERE user_id = ?";
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                return rs.getInt("gem_balance");
-            }
-
-        } catch (SQLException e) {
-            logger.error("❌ Failed to get gem balance: {}", e.getMessage());
-        }
-
-        return 0;
+        BalanceSnapshot balance = balance(userId);
+        return balance != null ? balance.currency().getGemBalance() : 0;
     }
 
     /**
      * 📊 Get user's complete currency information
+     * ⭐ SESSION 45: Served from the balance cache when fresh
      *
      * @param userId User identifier
      * @return UserCurrency object or null if not found
      */
     public UserCurrency getUserCurrency(String userId) {
-        String sql = "SELECT * FROM user_currency WHERE user_id = ?";
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        BalanceSnapshot balance = balance(userId);
+        return balance != null ? copy(balance.currency()) : null;
+    }
 
-            pstmt.setString(1, userId);
-            ResultSet rs = pstmt.executeQuery();
+    private BalanceSnapshot balance(String userId) {
+        CachedBalance cached = balances.get(userId);
+        if (cached != null && System.nanoTime() - cached.cachedAt() < ttlNanos) {
+            return cached.balance();
+        }
 
-            if (rs.next()) {
-                return new UserCurrency(
-                        rs.getString("user_id"),
-                        rs.getInt("gem_balance"),
-                        rs.getInt("total_earned"),
-                        rs.getInt("total_spent"),
-                        getTimestampAsString(rs, "last_updated"),
-                        getTimestampAsString(rs, "created_at")
-                );
+        try (Connection conn = getConnection()) {
+            BalanceSnapshot balance = read(conn, userId);
+            if (balance != null) {
+                committed(balance);
             }
+            return balance;
 
         } catch (SQLException e) {
             logger.error("❌ Failed to get user currency: {}", e.getMessage());
+            return null;
         }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // BALANCE CACHE
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Remember a committed (or freshly read) row. Keeps whichever of cached and new has the higher
+     * version; an equal version refreshes the TTL.
+     */
+    void committed(BalanceSnapshot balance) {
+        CachedBalance fresh = new CachedBalance(balance, System.nanoTime());
+        balances.merge(balance.currency().getUserId(), fresh,
+                (old, candidate) -> candidate.balance().version() >= old.balance().version() ? candidate : old);
+    }
+
+    /**
+     * Drop the cached row if it is older than a version written elsewhere (another instance).
+     */
+    void evictIfOlder(String userId, long version) {
+        balances.computeIfPresent(userId, (id, cached) -> cached.balance().version() < version ? null : cached);
+    }
 
-        return null;
+    /**
+     * Forget one user's balance - for writes that bypass this service (admin SQL, tests).
+     */
+    public void evict(String userId) {
+        balances.remove(userId);
+    }
+
+    /**
+     * Forget every balance - e.g. after the NOTIFY listener lost its connection and may have missed writes.
+     */
+    public void evictAll() {
+        balances.clear();
+    }
+
+    // Callers may mutate what they get back - never hand out the cached instance
+    private static UserCurrency copy(UserCurrency currency) {
+        return new UserCurrency(currency.getUserId(), currency.getGemBalance(), currency.getTotalEarned(),
+                currency.getTotalSpent(), currency.getLastUpdated(), currency.getCreatedAt());
     }
 
     /**
@@ -240,4 +406,17 @@ public class CurrencyService extends BaseService {
 
         return transactions;
     }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // INNER CLASSES
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * A user_currency row and its version, as written by award/spend or read from the table.
+     */
+    record BalanceSnapshot(UserCurrency currency, long version) {
+    }
+
+    private record CachedBalance(BalanceSnapshot balance, long cachedAt) {
+    }
 }
\ No newline at end of file
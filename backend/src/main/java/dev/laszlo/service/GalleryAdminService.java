@@ -3,6 +3,7 @@ package dev.laszlo.service;
 import dev.laszlo.dto.CreateGalleryItemRequest;
 import dev.laszlo.dto.GalleryItemDto;
 import dev.laszlo.dto.UpdateGalleryItemRequest;
+import dev.laszlo.model.StoryContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -18,15 +19,18 @@ import java.util.List;
 /**
  * Service for gallery item (story_content) CRUD operations for creators.
  * Uses JDBC with story ownership verification.
+ * ⭐ SESSION 45: Every write invalidates the story's cached catalog (GalleryCatalog)
  */
 @Service
 public class GalleryAdminService {
 
     private static final Logger logger = LoggerFactory.getLogger(GalleryAdminService.class);
     private final JdbcTemplate jdbcTemplate;
+    private final GalleryCatalog galleryCatalog;
 
-    public GalleryAdminService(JdbcTemplate jdbcTemplate) {
+    public GalleryAdminService(JdbcTemplate jdbcTemplate, GalleryCatalog galleryCatalog) {
         this.jdbcTemplate = jdbcTemplate;
+        this.galleryCatalog = galleryCatalog;
     }
 
     /**
@@ -88,6 +92,7 @@ public class GalleryAdminService {
                 request.getThumbnailUrl(),
                 request.getDisplayOrder() != null ? request.getDisplayOrder() : 0,
                 creatorUserId);
+        galleryCatalog.invalidate(request.getStoryId());
 
         logger.info("🖼️ Created gallery item '{}' for story '{}' by user {}",
                 request.getTitle(), request.getStoryId(), creatorUserId);
@@ -113,11 +118,17 @@ public class GalleryAdminService {
 
     /**
      * Get all gallery items for a specific story (with ownership check)
+     * ⭐ SESSION 45: Served from the cached catalog, falling back to the table if it can't load
      */
     public List<GalleryItemDto> getGalleryItemsByStory(String storyId, Long creatorUserId) {
         // Verify creator owns the story
         verifyStoryOwnership(storyId, creatorUserId);
 
+        GalleryCatalog.StoryCatalog catalog = galleryCatalog.get(storyId);
+        if (catalog != null) {
+            return catalog.getItems().stream().map(GalleryAdminService::toDto).toList();
+        }
+
         String sql = """
             SELECT content_id, story_id, content_type, content_category, title, description,
                 unlock_cost, rarity, unlock_condition, content_url, thumbnail_url, display_order,
@@ -221,6 +232,7 @@ public class GalleryAdminService {
         params.add(contentId);
 
         GalleryItemDto item = jdbcTemplate.queryForObject(sqlBuilder.toString(), galleryItemRowMapper, params.toArray());
+        galleryCatalog.invalidate(existing.getStoryId());
 
         logger.info("📝 Updated gallery item {} for user {}", contentId, creatorUserId);
         return item;
@@ -231,16 +243,40 @@ public class GalleryAdminService {
      */
     public void deleteGalleryItem(Long contentId, Long creatorUserId) {
         // Verify ownership by loading item and checking story
-        getGalleryItemById(contentId, creatorUserId);
+        GalleryItemDto existing = getGalleryItemById(contentId, creatorUserId);
 
         String sql = "DELETE FROM story_content WHERE content_id = ?";
         int rowsAffected = jdbcTemplate.update(sql, contentId);
 
         if (rowsAffected > 0) {
+            galleryCatalog.invalidate(existing.getStoryId());
             logger.info("🗑️ Deleted gallery item {} for user {}", contentId, creatorUserId);
         }
     }
 
+    /**
+     * Catalog item to a fresh DTO (the catalog's objects are shared)
+     */
+    private static GalleryItemDto toDto(GalleryCatalog.Item item) {
+        StoryContent content = item.content();
+        GalleryItemDto dto = new GalleryItemDto();
+        dto.setContentId((long) content.getContentId());
+        dto.setStoryId(content.getStoryId());
+        dto.setContentType(content.getContentType());
+        dto.setContentCategory(content.getContentCategory());
+        dto.setTitle(content.getTitle());
+        dto.setDescription(content.getDescription());
+        dto.setUnlockCost(content.getUnlockCost());
+        dto.setRarity(content.getRarity());
+        dto.setUnlockCondition(content.getUnlockCondition());
+        dto.setContentUrl(content.getContentUrl());
+        dto.setThumbnailUrl(content.getThumbnailUrl());
+        dto.setDisplayOrder(content.getDisplayOrder());
+        dto.setCreatedByUserId(item.createdByUserId());
+        dto.setCreatedAt(item.createdAt());
+        return dto;
+    }
+
     /**
      * Verify that the creator owns the story.
      * Uses simplified SELECT 1 approach.
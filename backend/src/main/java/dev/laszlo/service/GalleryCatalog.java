@@ -0,0 +1,204 @@
+package dev.laszlo.service;
+
+import dev.laszlo.model.StoryContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory gallery catalog: one story's story_content rows, loaded once, sorted by display_order and
+ * pre-split by content type. The catalog only changes when a creator edits it, so gallery screens
+ * no longer query story_content on every open.
+ * <p>
+ * GalleryAdminService invalidates a story after each create/update/delete. A global generation
+ * counter keeps a load that raced an invalidation from being cached. Other instances don't hear
+ * about the edit - the TTL bounds how long they serve the old catalog.
+ * <p>
+ * Each catalog carries an ETag computed from its content, so it is the same on every instance and
+ * after every reload of unchanged rows.
+ * ⭐ SESSION 45: Gallery catalog cache
+ */
+@Service
+public class GalleryCatalog extends BaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GalleryCatalog.class);
+
+    private final ConcurrentHashMap<String, StoryCatalog> catalogs = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final long ttlNanos;
+
+    // Constructor injection
+    public GalleryCatalog(DataSource dataSource,
+                          @Value("${storyforge.gallery.catalog-ttl-seconds:300}") long ttlSeconds) {
+        super(dataSource);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * 🖼️ Get a story's catalog, loading it on first use
+     *
+     * @param storyId Story identifier
+     * @return The catalog (empty if the story has no content), or null if it could not be loaded
+     */
+    public StoryCatalog get(String storyId) {
+        StoryCatalog cached = catalogs.get(storyId);
+        if (cached != null && System.nanoTime() - cached.loadedAt < ttlNanos) {
+            return cached;
+        }
+
+        long seen = generation.get();
+        StoryCatalog loaded = load(storyId);
+        if (loaded != null && generation.get() == seen) {
+            catalogs.put(storyId, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Drop a story's catalog after its content changed. Call after the write committed.
+     */
+    public void invalidate(String storyId) {
+        generation.incrementAndGet();
+        catalogs.remove(storyId);
+        logger.debug("🖼️ Gallery catalog invalidated for story: {}", storyId);
+    }
+
+    private StoryCatalog load(String storyId) {
+        String sql = "SELECT * FROM story_content WHERE story_id = ? ORDER BY display_order, content_id";
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, storyId);
+            List<Item> items = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    StoryContent content = new StoryContent(
+                            rs.getInt("content_id"),
+                            rs.getString("story_id"),
+                            rs.getString("content_type"),
+                            rs.getString("content_category"),
+                            rs.getString("title"),
+                            rs.getString("description"),
+                            rs.getInt("unlock_cost"),
+                            rs.getString("rarity"),
+                            rs.getString("unlock_condition"),
+                            rs.getString("content_url"),
+                            rs.getString("thumbnail_url"),
+                            rs.getInt("display_order"),
+                            rs.getString("created_at")
+                    );
+                    long creatorId = rs.getLong("created_by_user_id");
+                    Long createdBy = rs.wasNull() ? null : creatorId;
+                    Timestamp createdAt = rs.getTimestamp("created_at");
+                    items.add(new Item(content, createdBy, createdAt != null ? createdAt.toLocalDateTime() : null));
+                }
+            }
+
+            logger.debug("🖼️ Loaded gallery catalog for story: {} ({} items)", storyId, items.size());
+            return new StoryCatalog(items, System.nanoTime());
+
+        } catch (SQLException e) {
+            logger.error("❌ Failed to load gallery catalog: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // INNER CLASSES
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * A story_content row with the creator columns the admin view needs.
+     * Shared by every reader - treat the StoryContent as read-only.
+     */
+    public record Item(StoryContent content, Long createdByUserId, LocalDateTime createdAt) {
+    }
+
+    /**
+     * One story's catalog: all items in display order plus per-type views, built once per load.
+     */
+    public static final class StoryCatalog {
+        private final List<Item> items;
+        private final List<StoryContent> content;
+        private final Map<String, List<StoryContent>> contentByType;
+        private final String etag;
+        private final long loadedAt;
+
+        private StoryCatalog(List<Item> items, long loadedAt) {
+            this.items = Collections.unmodifiableList(items);
+            this.loadedAt = loadedAt;
+
+            List<StoryContent> all = new ArrayList<>(items.size());
+            Map<String, List<StoryContent>> byType = new LinkedHashMap<>();
+            for (Item item : items) {
+                all.add(item.content());
+                byType.computeIfAbsent(item.content().getContentType(), type -> new ArrayList<>())
+                        .add(item.content());
+            }
+            byType.replaceAll((type, list) -> Collections.unmodifiableList(list));
+            this.content = Collections.unmodifiableList(all);
+            this.contentByType = byType;
+            this.etag = fingerprint(items);
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        /**
+         * @param contentType Optional filter (scene, character, lore, extra); null or empty for all
+         */
+        public List<StoryContent> getContent(String contentType) {
+            if (contentType == null || contentType.isEmpty()) {
+                return content;
+            }
+            return contentByType.getOrDefault(contentType, List.of());
+        }
+
+        /** Quoted strong ETag of the whole story catalog, e.g. "3f2a9c0d11b8e4a7" */
+        public String getEtag() {
+            return etag;
+        }
+
+        private static String fingerprint(List<Item> items) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (Item item : items) {
+                    StoryContent c = item.content();
+                    String row = String.join("\u001f", String.valueOf(c.getContentId()), c.getStoryId(),
+                            c.getContentType(), c.getContentCategory(), c.getTitle(), c.getDescription(),
+                            String.valueOf(c.getUnlockCost()), c.getRarity(), c.getUnlockCondition(),
+                            c.getContentUrl(), c.getThumbnailUrl(), String.valueOf(c.getDisplayOrder()),
+                            String.valueOf(item.createdByUserId()), c.getCreatedAt());
+                    digest.update(row.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) '\n');
+                }
+                return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 8) + "\"";
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -17,111 +18,141 @@ import java.util.List;
 public class GalleryService extends BaseService {
     private static final Logger logger = LoggerFactory.getLogger(GalleryService.class);
 
+    // SQLSTATE for unique constraint violations (PostgreSQL and H2)
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    /**
+     * ⭐ SESSION 45: Outcome of an unlock. ALREADY_UNLOCKED is a success for the caller - a retried or
+     * double-clicked unlock must not charge twice, and must not report an error either.
+     */
+    public enum UnlockStatus {
+        UNLOCKED, ALREADY_UNLOCKED, INSUFFICIENT_GEMS, NOT_FOUND, FAILED;
+
+        public boolean isUnlocked() {
+            return this == UNLOCKED || this == ALREADY_UNLOCKED;
+        }
+    }
+
     private final CurrencyService currencyService;
+    private final GalleryCatalog galleryCatalog;  // ⭐ SESSION 45: Cached story_content
 
     // Constructor injection
-    public GalleryService(CurrencyService currencyService) {
+    public GalleryService(DataSource dataSource, CurrencyService currencyService, GalleryCatalog galleryCatalog) {
+        super(dataSource);
         this.currencyService = currencyService;
+        this.galleryCatalog = galleryCatalog;
     }
 
     /**
      * 🖼️ Get all content for a story, optionally filtered by type
+     * ⭐ SESSION 45: Served from the in-memory catalog (see GalleryCatalog)
      *
      * @param storyId Story identifier
      * @param contentType Optional filter (scene, character, lore, extra)
      * @return List of story content
      */
     public List<StoryContent> getStoryContent(String storyId, String contentType) {
-        List<StoryContent> contentList = new ArrayList<>();
-
-        String sql = contentType == null || contentType.isEmpty()
-                ? "SELECT * FROM story_content WHERE story_id = ? ORDER BY display_order, content_id"
-                : "SELECT * FROM story_content WHERE story_id = ? AND content_type = ? ORDER BY display_order, content_id";
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, storyId);
-            if (contentType != null && !contentType.isEmpty()) {
-                pstmt.setString(2, contentType);
-            }
-
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                StoryContent content = new StoryContent(
-                        rs.getInt("content_id"),
-                        rs.getString("story_id"),
-                        rs.getString("content_type"),
-                        rs.getString("content_category"),
-                        rs.getString("title"),
-                        rs.getString("description"),
-                        rs.getInt("unlock_cost"),
-                        rs.getString("rarity"),
-                        rs.getString("unlock_condition"),
-                        rs.getString("content_url"),
-                        rs.getString("thumbnail_url"),
-                        rs.getInt("display_order"),
-                        rs.getString("created_at")
-                );
-                contentList.add(content);
-            }
-
-            logger.debug("🖼️ Retrieved {} content items for story: {}", contentList.size(), storyId);
-
-        } catch (SQLException e) {
-            logger.error("❌ Failed to get story content: {}", e.getMessage());
-        }
+        GalleryCatalog.StoryCatalog catalog = galleryCatalog.get(storyId);
+        return catalog != null ? catalog.getContent(contentType) : List.of();
+    }
 
-        return contentList;
+    /**
+     * ⭐ SESSION 45: A story's whole catalog, with its ETag
+     *
+     * @return The catalog, or null if it could not be loaded
+     */
+    public GalleryCatalog.StoryCatalog getCatalog(String storyId) {
+        return galleryCatalog.get(storyId);
     }
 
     /**
      * 🔓 Unlock content by spending gems
+     * ⭐ SESSION 45: One transaction on one connection - unlock row, conditional debit and ledger entry
+     * commit together or not at all. Safe to retry: an existing unlock is reported, never charged again.
      *
      * @param userId User identifier
      * @param contentId Content to unlock
-     * @return true if successful, false otherwise
+     * @return UNLOCKED / ALREADY_UNLOCKED on success, otherwise why nothing changed
      */
-    public boolean unlockContent(String userId, int contentId) {
-        // Check if already unlocked
-        if (isContentUnlocked(userId, contentId)) {
-            logger.warn("⚠️ Content {} already unlocked for user {}", contentId, userId);
-            return false;
-        }
+    public UnlockStatus unlockContent(String userId, int contentId) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Unlock unlock = unlock(conn, userId, contentId);
+                if (unlock.status() == UnlockStatus.UNLOCKED) {
+                    conn.commit();
+                    currencyService.committed(unlock.balance());
+                } else {
+                    conn.rollback();
+                }
+                return unlock.status();
+            } catch (SQLException e) {
+                conn.rollback();
+                if (UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                    // H2: a concurrent request for the same content committed first
+                    logger.info("🔓 Content {} already unlocked for user {}", contentId, userId);
+                    return UnlockStatus.ALREADY_UNLOCKED;
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
 
-        // Get content details to check unlock cost
-        StoryContent content = getContentById(contentId);
-        if (content == null) {
-            logger.error("❌ Content {} not found", contentId);
-            return false;
+        } catch (SQLException e) {
+            logger.error("❌ Failed to unlock content: {}", e.getMessage());
+            return UnlockStatus.FAILED;
         }
+    }
 
-        // Spend gems (handles balance check internally)
-        boolean gemsSpent = currencyService.spendGems(userId, content.getUnlockCost(), contentId);
-        if (!gemsSpent) {
-            return false;
+    /**
+     * Claim the unlock row first, then charge. The unique (user, story, content) key serializes
+     * concurrent unlocks of the same item: the second one waits for the first and then finds the row,
+     * so it is never charged. The debit is a conditional UPDATE (see CurrencyService.spend).
+     */
+    private Unlock unlock(Connection conn, String userId, int contentId) throws SQLException {
+        String contentSql = "SELECT story_id, title, unlock_cost FROM story_content WHERE content_id = ?";
+        String storyId;
+        String title;
+        int cost;
+        try (PreparedStatement pstmt = conn.prepareStatement(contentSql)) {
+            pstmt.setInt(1, contentId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    logger.error("❌ Content {} not found", contentId);
+                    return new Unlock(UnlockStatus.NOT_FOUND, null);
+                }
+                storyId = rs.getString("story_id");
+                title = rs.getString("title");
+                cost = rs.getInt("unlock_cost");
+            }
         }
 
         // Add to user_unlocks (story_id is required by schema)
-        String sql = "INSERT INTO user_unlocks (user_id, story_id, content_id) VALUES (?, ?, ?)";
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
+        // PostgreSQL: ON CONFLICT keeps the transaction usable; H2 raises a unique violation instead
+        String insertSql = isPostgres(conn)
+                ? "INSERT INTO user_unlocks (user_id, story_id, content_id) VALUES (?, ?, ?) ON CONFLICT DO NOTHING"
+                : "INSERT INTO user_unlocks (user_id, story_id, content_id) VALUES (?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
             pstmt.setString(1, userId);
-            pstmt.setString(2, content.getStoryId());
+            pstmt.setString(2, storyId);
             pstmt.setInt(3, contentId);
-            pstmt.executeUpdate();
-
-            logger.info("🔓 User {} unlocked content: {} ({}) for story {}", userId, content.getTitle(), contentId, content.getStoryId());
-            return true;
+            if (pstmt.executeUpdate() == 0) {
+                logger.info("🔓 Content {} already unlocked for user {}", contentId, userId);
+                return new Unlock(UnlockStatus.ALREADY_UNLOCKED, null);
+            }
+        }
 
-        } catch (SQLException e) {
-            logger.error("❌ Failed to unlock content: {}", e.getMessage());
-            // TODO: Rollback gem transaction if unlock fails
-            return false;
+        CurrencyService.BalanceSnapshot balance = currencyService.spend(conn, userId, cost, contentId);
+        if (balance == null) {
+            return new Unlock(UnlockStatus.INSUFFICIENT_GEMS, null);
         }
+
+        logger.info("🔓 User {} unlocked content: {} ({}) for story {}", userId, title, contentId, storyId);
+        return new Unlock(UnlockStatus.UNLOCKED, balance);
+    }
+
+    // ⭐ SESSION 45: Outcome plus the charged balance, cached once the unlock commits
+    private record Unlock(UnlockStatus status, CurrencyService.BalanceSnapshot balance) {
     }
 
     /**
@@ -189,44 +220,4 @@ public class GalleryService extends BaseService {
             return false;
         }
     }
-
-    /**
-     * 🔍 Get content by ID
-     *
-     * @param contentId Content identifier
-     * @return StoryContent object or null if not found
-     */
-    private StoryContent getContentById(int contentId) {
-        String sql = "SELECT * FROM story_content WHERE content_id = ?";
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, contentId);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                return new StoryContent(
-                        rs.getInt("content_id"),
-                        rs.getString("story_id"),
-                        rs.getString("content_type"),
-                        rs.getString("content_category"),
-                        rs.getString("title"),
-                        rs.getString("description"),
-                        rs.getInt("unlock_cost"),
-                        rs.getString("rarity"),
-                        rs.getString("unlock_condition"),
-                        rs.getString("content_url"),
-                        rs.getString("thumbnail_url"),
-                        rs.getInt("display_order"),
-                        rs.getString("created_at")
-                );
-            }
-
-        } catch (SQLException e) {
-            logger.error("❌ Failed to get content by ID: {}", e.getMessage());
-        }
-
-        return null;
-    }
 }
\ No newline at end of file
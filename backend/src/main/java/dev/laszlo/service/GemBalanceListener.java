@@ -0,0 +1,140 @@
+package dev.laszlo.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Keeps CurrencyService's balance cache correct across instances: LISTENs on the gem_balance channel
+ * and drops a cached balance when another instance commits a newer version of it.
+ * <p>
+ * Uses its own connection outside the pool - a LISTEN connection is held forever and would otherwise
+ * take a pool slot and trip Hikari's leak detection. PostgreSQL only; on H2 (tests) nothing starts and
+ * the cache relies on being the only writer. Whenever the connection drops, the whole cache is
+ * cleared, since notifications sent in the meantime are lost.
+ * ⭐ SESSION 45: Gem balance cache
+ */
+@Component
+public class GemBalanceListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(GemBalanceListener.class);
+
+    private static final int POLL_TIMEOUT_MS = 5000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final DataSource dataSource;
+    private final CurrencyService currencyService;
+    private final boolean enabled;
+
+    private volatile boolean running;
+    private volatile Connection connection;
+    private Thread thread;
+
+    public GemBalanceListener(DataSource dataSource, CurrencyService currencyService,
+                              @Value("${storyforge.currency.listen:true}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.currencyService = currencyService;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled || !(dataSource instanceof HikariDataSource hikari)
+                || hikari.getJdbcUrl() == null || !hikari.getJdbcUrl().startsWith("jdbc:postgresql:")) {
+            logger.debug("💰 Gem balance listener not started (disabled or not PostgreSQL)");
+            return;
+        }
+
+        running = true;
+        thread = Thread.ofPlatform().daemon().name("gem-balance-listener").start(() -> run(hikari));
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        closeQuietly();
+    }
+
+    private void run(HikariDataSource hikari) {
+        while (running) {
+            try {
+                connection = DriverManager.getConnection(hikari.getJdbcUrl(), hikari.getUsername(),
+                        hikari.getPassword());
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("LISTEN " + CurrencyService.BALANCE_CHANNEL);
+                }
+                // Anything written before LISTEN took effect was never seen
+                currencyService.evictAll();
+                logger.info("💰 Listening for gem balance changes");
+
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            handle(notification.getParameter());
+                        }
+                    }
+                }
+
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                logger.warn("⚠️ Gem balance listener lost its connection, retrying in {} ms: {}",
+                        RECONNECT_DELAY_MS, e.getMessage());
+                currencyService.evictAll();
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            } finally {
+                closeQuietly();
+            }
+        }
+    }
+
+    /** Payload is "userId:version" (see CurrencyService) */
+    private void handle(String payload) {
+        int separator = payload.lastIndexOf(':');
+        if (separator <= 0) {
+            logger.warn("⚠️ Ignoring malformed gem balance notification: {}", payload);
+            return;
+        }
+        try {
+            currencyService.evictIfOlder(payload.substring(0, separator),
+                    Long.parseLong(payload.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            logger.warn("⚠️ Ignoring malformed gem balance notification: {}", payload);
+        }
+    }
+
+    private void closeQuietly() {
+        Connection conn = connection;
+        connection = null;
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                logger.debug("Closing gem balance listener connection failed: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -9,7 +9,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,6 +25,8 @@ import java.util.regex.Pattern;
  * Uses layered prompts to give each character a distinct personality and speaking style.
  *
  * ⭐ SESSION 34: Added ending detection for story completion tracking.
+ * ⭐ SESSION 45: Choices can be generated inline (same call) or speculatively (in parallel)
+ * instead of a second serial Claude round-trip - see {@link ChoiceMode}.
  */
 @Service
 public class NarrativeEngine {
@@ -26,11 +35,41 @@ public class NarrativeEngine {
     private final ChatService chatService;
     private final CharacterDatabase characterDb;
 
+    /**
+     * ⭐ SESSION 45: How the 2-3 player choices of a turn are produced.
+     */
+    public enum ChoiceMode {
+        /** Second Claude call after the dialogue call finishes (original behaviour, 2 serial round-trips) */
+        SEPARATE,
+        /** Choices requested as a "choices" array inside the dialogue JSON (1 round-trip) */
+        INLINE,
+        /** Dialogue is streamed; the choice call starts on a virtual thread as soon as enough dialogue arrived */
+        SPECULATIVE
+    }
+
+    // ⭐ SESSION 45: Choice mode selection (default + per-story overrides, set from AppConfig)
+    private volatile ChoiceMode defaultChoiceMode = ChoiceMode.INLINE;
+    private final Map<String, ChoiceMode> storyChoiceModes = new ConcurrentHashMap<>();
+
+    // ⭐ SESSION 45: Micrometer phase timers (prompt build, LLM calls, parse) - set from AppConfig
+    private volatile TurnMetrics metrics = TurnMetrics.noop();
+
+    // ⭐ SESSION 45: Turn post-processing and speculative choice calls are I/O bound - one cheap virtual thread each
+    // (tasks keep the caller's MDC, so their log lines carry the turnId)
+    private final Executor virtualExecutor = TurnLog.propagating(Executors.newVirtualThreadPerTaskExecutor());
+
+    // The choice prompt only uses the first 200 chars of dialogue, so speculation can start
+    // once more than that has streamed in - the prompt is then identical to the serial one
+    private static final int CHOICE_CONTEXT_CHARS = 200;
+
     // ⭐ SESSION 34: Pattern to detect story ending markers in Claude's response
     // Matches [END:ending_id] where ending_id is lowercase letters/underscores
     private static final Pattern ENDING_PATTERN =
             Pattern.compile("\\[END:([a-z_]+)\\]", Pattern.CASE_INSENSITIVE);
 
+    // ⭐ SESSION 45: JSON fields relayed to the client while the reply is streaming
+    private static final Set<String> STREAMED_FIELDS = Set.of("dialogue", "actionText", "mood");
+
     // Base narrative prompt - shared by all characters
     private static final String BASE_PROMPT = """
             You are an interactive narrative engine for a fantasy roleplay experience.
@@ -77,6 +116,10 @@ public class NarrativeEngine {
 
         // 5. Get Claude's response
         String response = chatService.sendMessage(history);
+        if (response == null) {
+            history.discardLastUserMessage();  // ⭐ SESSION 45: Don't store null as the reply
+            return "Error: No response from narrative engine";
+        }
 
         // 6. Add response to history
         history.addAssistantMessage(response);
@@ -91,6 +134,7 @@ public class NarrativeEngine {
      * This is the NEW method for Session 14's choice system.
      * <p>
      * ⭐ UPDATED FOR PHASE 2.3: Now parses JSON to extract dialogue and actionText
+     * ⭐ SESSION 45: Blocking wrapper around generateResponseWithChoicesAsync
      */
     public NarrativeResponse generateResponseWithChoices(
             String userInput,
@@ -98,9 +142,81 @@ public class NarrativeEngine {
             String storyId,
             ConversationHistory history
     ) {
-        logger.info("🎭 Generating response WITH CHOICES for character: {}", activeCharacterId);
+        return generateResponseWithChoicesAsync(userInput, activeCharacterId, storyId, history).join();
+    }
+
+    /**
+     * ⭐ SESSION 45: Non-blocking version of generateResponseWithChoices.
+     * The dialogue call goes out via HttpClient.sendAsync; parsing and any follow-up choice call
+     * run on a virtual thread, so no request thread waits on Claude.
+     */
+    public CompletableFuture<NarrativeResponse> generateResponseWithChoicesAsync(
+            String userInput,
+            String activeCharacterId,
+            String storyId,
+            ConversationHistory history
+    ) {
+        ChoiceMode mode = getChoiceMode(storyId);
+
+        // ⭐ SESSION 45: Speculative choices need the token stream - stream internally, nothing to relay
+        if (mode == ChoiceMode.SPECULATIVE) {
+            return CompletableFuture.supplyAsync(
+                    () -> generateResponseWithChoicesStreaming(userInput, activeCharacterId, storyId, history,
+                            new StreamingJsonFieldExtractor.FieldListener() {}),
+                    virtualExecutor);
+        }
+
+        logger.info("🎭 Generating response WITH CHOICES for character: {} (choices: {})", activeCharacterId, mode);
+        long startNanos = System.nanoTime();
 
         // 1. Get character from database
+        Character character = characterDb.getCharacter(activeCharacterId);
+        if (character == null) {
+            logger.error("❌ Character not found: {}", activeCharacterId);
+            NarrativeResponse error = new NarrativeResponse();
+            error.setDialogue("Error: Character not found");
+            return CompletableFuture.completedFuture(error);
+        }
+
+        // 2. Generate character's response (JSON - including choices in INLINE mode)
+        String prompt = metrics.timePhase(TurnMetrics.Phase.PROMPT_BUILD, storyId, activeCharacterId,
+                () -> buildTurnPrompt(character, storyId, mode));
+        history.setSystemPrompt(prompt, ConversationCodec.promptRef(storyId, activeCharacterId, prompt));
+        history.addUserMessage(userInput);
+
+        long llmStart = System.nanoTime();
+        return chatService.sendMessageAsync(history).thenApplyAsync(rawResponse -> {
+            metrics.recordPhase(TurnMetrics.Phase.LLM_DIALOGUE, storyId, activeCharacterId, llmStart);
+            if (rawResponse == null) {
+                return degradedResponse(character, storyId, history);
+            }
+            history.addAssistantMessage(rawResponse);
+
+            NarrativeResponse response = buildNarrativeResponse(rawResponse, character, storyId, mode, null);
+            logTurnLatency(storyId, mode, startNanos);
+            return response;
+        }, virtualExecutor);
+    }
+
+    /**
+     * ⭐ SESSION 45: Streaming variant of generateResponseWithChoices.
+     * Dialogue, actionText and mood are reported to the listener while Claude is still writing;
+     * choices and ending detection run once the reply is complete, exactly as in the blocking path.
+     *
+     * @param listener receives field deltas/completions for "dialogue", "actionText" and "mood"
+     * @return the complete NarrativeResponse (same shape as generateResponseWithChoices)
+     */
+    public NarrativeResponse generateResponseWithChoicesStreaming(
+            String userInput,
+            String activeCharacterId,
+            String storyId,
+            ConversationHistory history,
+            StreamingJsonFieldExtractor.FieldListener listener
+    ) {
+        ChoiceMode mode = getChoiceMode(storyId);
+        logger.info("🎭 Streaming response WITH CHOICES for character: {} (choices: {})", activeCharacterId, mode);
+        long startNanos = System.nanoTime();
+
         Character character = characterDb.getCharacter(activeCharacterId);
         if (character == null) {
             logger.error("❌ Character not found: {}", activeCharacterId);
@@ -109,108 +225,258 @@ public class NarrativeEngine {
             return error;
         }
 
-        // 2. Generate character's response (now returns JSON)
-        String rawResponse = generateResponse(userInput, activeCharacterId, history);
+        String prompt = metrics.timePhase(TurnMetrics.Phase.PROMPT_BUILD, storyId, activeCharacterId,
+                () -> buildTurnPrompt(character, storyId, mode));
+        history.setSystemPrompt(prompt, ConversationCodec.promptRef(storyId, activeCharacterId, prompt));
+        history.addUserMessage(userInput);
+
+        SpeculativeChoiceListener speculative = mode == ChoiceMode.SPECULATIVE
+                ? new SpeculativeChoiceListener(listener, activeCharacterId, storyId)
+                : null;
+
+        StreamingJsonFieldExtractor extractor = new StreamingJsonFieldExtractor(
+                STREAMED_FIELDS, speculative != null ? speculative : listener);
+        long llmStart = System.nanoTime();
+        String rawResponse = chatService.streamMessage(history, extractor::feed);
+        metrics.recordPhase(TurnMetrics.Phase.LLM_DIALOGUE, storyId, activeCharacterId, llmStart);
+
+        if (rawResponse == null) {
+            logger.error("❌ [{}] Streaming request returned no response", activeCharacterId);
+            if (speculative != null) {
+                speculative.cancel();
+            }
+            return degradedResponse(character, storyId, history);
+        }
+
+        history.addAssistantMessage(rawResponse);
+
+        NarrativeResponse response = buildNarrativeResponse(rawResponse, character, storyId, mode,
+                speculative != null ? speculative.getChoices() : null);
+        logTurnLatency(storyId, mode, startNanos);
+        return response;
+    }
+
+    /**
+     * ⭐ SESSION 45: Turn for when Claude is unavailable (retries exhausted, circuit open, at the
+     * concurrency cap). The player's message is taken back out of the history and they get the
+     * fallback choices, so they can simply try again.
+     */
+    private NarrativeResponse degradedResponse(Character character, String storyId, ConversationHistory history) {
+        history.discardLastUserMessage();
+
+        NarrativeResponse response = new NarrativeResponse();
+        response.setDialogue("Error: No response from narrative engine");
+        response.setSpeaker(character.getId());
+        response.setSpeakerName(character.getName());
+        response.setMood(character.getDefaultMood());
+        response.setAvatarUrl(character.getAvatarUrl());
+        response.setChoices(createFallbackChoices(character.getId(), storyId));
+        response.setDegraded(true);
 
-        // ⭐ DEBUG LOGGING: Track raw response for each character
-        logger.info("🔍 [{}] Raw Response Length: {}", activeCharacterId, rawResponse.length());
-        logger.info("🔍 [{}] Raw Response Preview (first 200 chars): {}",
-                activeCharacterId,
-                rawResponse.length() > 200 ? rawResponse.substring(0, 200) + "..." : rawResponse);
-        logger.info("🔍 [{}] Raw Response Full: {}", activeCharacterId, rawResponse);
+        logger.warn("⚠️ [{}] Degraded turn - Claude unavailable, offering fallback choices", character.getId());
+        return response;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // ⭐ SESSION 45: CHOICE MODE CONFIGURATION & LATENCY
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    public void setMetrics(TurnMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setDefaultChoiceMode(ChoiceMode mode) {
+        this.defaultChoiceMode = mode;
+        logger.info("🎲 Default choice mode: {}", mode);
+    }
+
+    public void setStoryChoiceMode(String storyId, ChoiceMode mode) {
+        storyChoiceModes.put(storyId, mode);
+        logger.info("🎲 Choice mode for story '{}': {}", storyId, mode);
+    }
+
+    /**
+     * Choice mode for a story: per-story override if configured, otherwise the default.
+     */
+    public ChoiceMode getChoiceMode(String storyId) {
+        if (storyId == null) {
+            return defaultChoiceMode;
+        }
+        return storyChoiceModes.getOrDefault(storyId, defaultChoiceMode);
+    }
+
+    /**
+     * Configured choice modes + whole-turn latency per mode from the storyforge.turn timers.
+     * Latency keys are "MODE" (all stories) and "storyId/MODE".
+     */
+    public Map<String, Object> getChoiceLatencyStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("defaultMode", defaultChoiceMode);
+        stats.put("storyModes", new LinkedHashMap<>(storyChoiceModes));
+        stats.put("latency", metrics.turnLatencyByChoiceMode());
+        return stats;
+    }
+
+    private void logTurnLatency(String storyId, ChoiceMode mode, long startNanos) {
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        logger.info("⏱️ Turn completed in {} ms (story: {}, choices: {})", millis, storyId, mode);
+    }
+
+    /**
+     * System prompt for a turn: the layered character prompt, plus choice instructions in INLINE mode.
+     */
+    private String buildTurnPrompt(Character character, String storyId, ChoiceMode mode) {
+        String prompt = buildLayeredPrompt(character);
+        if (mode == ChoiceMode.INLINE) {
+            prompt += buildInlineChoiceInstructions(storyId);
+        }
+        return prompt;
+    }
+
+    /**
+     * Relays stream events to the caller's listener and starts the choice call on a virtual thread
+     * as soon as the dialogue is long enough (or complete), overlapping it with the rest of the reply.
+     */
+    private class SpeculativeChoiceListener implements StreamingJsonFieldExtractor.FieldListener {
+        private final StreamingJsonFieldExtractor.FieldListener delegate;
+        private final String currentSpeaker;
+        private final String storyId;
+        private final StringBuilder dialogue = new StringBuilder();
+        private CompletableFuture<List<Choice>> choices;
+
+        SpeculativeChoiceListener(StreamingJsonFieldExtractor.FieldListener delegate,
+                                  String currentSpeaker, String storyId) {
+            this.delegate = delegate;
+            this.currentSpeaker = currentSpeaker;
+            this.storyId = storyId;
+        }
+
+        @Override
+        public void onFieldDelta(String field, String delta) {
+            if ("dialogue".equals(field) && choices == null) {
+                dialogue.append(delta);
+                if (dialogue.length() > CHOICE_CONTEXT_CHARS) {
+                    start();
+                }
+            }
+            delegate.onFieldDelta(field, delta);
+        }
+
+        @Override
+        public void onFieldComplete(String field, String value) {
+            if ("dialogue".equals(field) && choices == null) {
+                dialogue.setLength(0);
+                dialogue.append(value);
+                start();
+            }
+            delegate.onFieldComplete(field, value);
+        }
+
+        private void start() {
+            String context = dialogue.toString();
+            logger.info("🎲 Starting speculative choice generation after {} dialogue chars", context.length());
+            choices = CompletableFuture.supplyAsync(
+                    () -> generateChoices(currentSpeaker, context, storyId), virtualExecutor);
+        }
+
+        /** Null if the stream never produced a dialogue field */
+        CompletableFuture<List<Choice>> getChoices() {
+            return choices;
+        }
+
+        void cancel() {
+            if (choices != null) {
+                choices.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Parse Claude's raw reply and assemble the full NarrativeResponse
+     * (dialogue, actionText, mood, choices, ending). Shared by the blocking and streaming paths.
+     *
+     * @param speculativeChoices choice call already in flight (SPECULATIVE mode), or null
+     */
+    private NarrativeResponse buildNarrativeResponse(
+            String rawResponse,
+            Character character,
+            String storyId,
+            ChoiceMode mode,
+            CompletableFuture<List<Choice>> speculativeChoices
+    ) {
+        String activeCharacterId = character.getId();
+
+        // ⭐ SESSION 45: Payloads only for sampled turns (or at DEBUG), always truncated
+        boolean logPayloads = TurnLog.isPayloadSampled() || logger.isDebugEnabled();
+        if (logPayloads) {
+            logger.info("🔍 [{}] Raw response ({} chars): {}",
+                    activeCharacterId, rawResponse.length(), TurnLog.truncate(rawResponse));
+        }
 
 // ⭐ NEW: Extract and parse JSON more robustly
         String dialogue = rawResponse;  // Initialize with raw response as fallback
         String actionText = null;
         String extractedMood = null;  // ⭐ SESSION 26: Variable to store mood
+        List<Choice> inlineChoices = null;  // ⭐ SESSION 45: Choices from the same JSON (INLINE mode)
 
-        try {
-            // ⭐ IMPROVED: Find valid JSON by trying to parse from each '{' position
-            int jsonStart = rawResponse.indexOf('{');
-
-            logger.info("🔍 [{}] JSON Start Index: {}", activeCharacterId, jsonStart);
-
-            if (jsonStart >= 0) {
-                boolean parsed = false;
-                com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-
-                // Try to parse JSON starting from each '{' until we find valid JSON
-                for (int i = jsonStart; i < rawResponse.length() && !parsed; i++) {
-                    if (rawResponse.charAt(i) == '{') {
-                        // Try to parse from this position to the end
-                        String candidate = rawResponse.substring(i);
-
-                        try {
-                            // Attempt to parse - Jackson will find the correct end of JSON
-                            com.fasterxml.jackson.databind.JsonNode json = mapper.readTree(candidate);
-
-                            // Check if this JSON has the expected structure
-                            if (json.has("dialogue")) {
-                                dialogue = json.get("dialogue").asText();
-
-                                if (json.has("actionText")) {
-                                    actionText = json.get("actionText").asText();
-                                }
-
-                                // ⭐ SESSION 26: Extract mood from JSON
-                                if (json.has("mood")) {
-                                    extractedMood = json.get("mood").asText().trim();
-                                    logger.info("✅ [{}] Extracted mood from JSON: {}", activeCharacterId, extractedMood);
-                                }
-
-                                parsed = true;
-                                logger.info("✅ [{}] Successfully parsed JSON at position {}", activeCharacterId, i);
-                                logger.info("✅ [{}] Parsed dialogue: {}", activeCharacterId, dialogue);
-                                logger.info("✅ [{}] Parsed actionText: {}", activeCharacterId, actionText);
-                            }
-                        } catch (com.fasterxml.jackson.core.JsonParseException jpe) {
-                            // Not valid JSON at this position, try next '{'
-                            continue;
-                        }
-                    }
-                }
+        // ⭐ SESSION 45: Single pass over the reply (see NarrativeResponseParser)
+        long parseStart = System.nanoTime();
+        NarrativeResponseParser.ParsedReply parsed = NarrativeResponseParser.parse(rawResponse);
 
-                if (!parsed) {
-                    // No valid JSON found, use raw response
-                    dialogue = rawResponse;
-                    logger.warn("⚠️ [{}] No valid JSON with 'dialogue' field found, using raw text", activeCharacterId);
-                }
-            } else {
-                // No JSON found at all, use raw response
-                dialogue = rawResponse;
-                logger.warn("⚠️ [{}] No JSON braces found in response, using raw text", activeCharacterId);
+        if (parsed != null) {
+            dialogue = parsed.dialogue();
+            actionText = parsed.actionText();
+
+            // ⭐ SESSION 26: Extract mood from JSON
+            if (parsed.mood() != null) {
+                extractedMood = parsed.mood().trim();
+                logger.debug("✅ [{}] Extracted mood from JSON: {}", activeCharacterId, extractedMood);
             }
-        } catch (Exception e) {
-            // If parsing fails, use raw response as dialogue
-            dialogue = rawResponse;
-            actionText = null;
-            logger.error("❌ [{}] Failed to parse JSON response: {}", activeCharacterId, e.getMessage());
-            logger.error("❌ [{}] Exception details: ", activeCharacterId, e);
-        }
-
-        // ═══════════════════════════════════════════════════════════════════════════
-        // DEBUG LOGGING - CRITICAL FOR FINDING ILYRA BUG
-        // ═══════════════════════════════════════════════════════════════════════════
-        logger.info("═══════════════════════════════════════════════════════════════════");
-        logger.info("CHARACTER: {}", activeCharacterId);
-        logger.info("RAW AI RESPONSE: {}", rawResponse);
-        logger.info("AFTER JSON PARSING:");
-        logger.info("  - dialogue: {}", dialogue);
-        logger.info("  - actionText: {}", actionText);
-        logger.info("═══════════════════════════════════════════════════════════════════");
-
-        // 3. Generate choices based on the dialogue and context
-        List<Choice> choices = generateChoices(activeCharacterId, dialogue, storyId, history);
+
+            // ⭐ SESSION 45: Inline choices (INLINE mode)
+            if (parsed.choices() != null) {
+                inlineChoices = parseInlineChoices(parsed.choices());
+            }
+
+            logger.debug("✅ [{}] Parsed JSON at position {}", activeCharacterId, parsed.start());
+            if (logPayloads) {
+                logger.info("✅ [{}] Parsed dialogue: {} | actionText: {}",
+                        activeCharacterId, TurnLog.truncate(dialogue), TurnLog.truncate(actionText));
+            }
+        } else {
+            // No valid JSON found, use raw response
+            logger.warn("⚠️ [{}] No valid JSON with 'dialogue' field found, using raw text", activeCharacterId);
+        }
+        metrics.recordPhase(TurnMetrics.Phase.PARSE, storyId, activeCharacterId, parseStart);
+
+
+        // 3. Choices: speculative call in flight > inline from the same JSON > separate call
+        List<Choice> choices;
+        long choicesStart = System.nanoTime();
+        if (speculativeChoices != null) {
+            choices = awaitSpeculativeChoices(speculativeChoices, activeCharacterId, dialogue, storyId);
+            metrics.recordPhase(TurnMetrics.Phase.LLM_CHOICES, storyId, activeCharacterId, choicesStart);
+        } else if (mode == ChoiceMode.INLINE && inlineChoices != null && !inlineChoices.isEmpty()) {
+            choices = inlineChoices;
+            logger.info("✅ Using {} inline choices (no extra round-trip)", choices.size());
+        } else {
+            if (mode != ChoiceMode.SEPARATE) {
+                logger.warn("⚠️ [{}] No {} choices available, falling back to separate choice call",
+                        activeCharacterId, mode);
+            }
+            choices = generateChoices(activeCharacterId, dialogue, storyId);
+            metrics.recordPhase(TurnMetrics.Phase.LLM_CHOICES, storyId, activeCharacterId, choicesStart);
+        }
 
         // 4. Determine character's mood from the response
         // ⭐ SESSION 26: Use extracted mood if available, otherwise determine from response
         String mood;
         if (extractedMood != null && !extractedMood.isEmpty()) {
             mood = extractedMood;
-            logger.info("✅ Using mood from JSON: {}", mood);
+            logger.debug("✅ Using mood from JSON: {}", mood);
         } else {
             mood = determineMood(dialogue, character);
-            logger.info("🔍 Determined mood from text analysis: {}", mood);
+            logger.debug("🔍 Determined mood from text analysis: {}", mood);
         }
 
         // 5. Build complete narrative response
@@ -223,8 +489,9 @@ public class NarrativeEngine {
         response.setAvatarUrl(character.getAvatarUrl());
         response.setChoices(choices);
 
-        logger.info("✅ Generated narrative response: {} with {} choices",
-                character.getName(), choices.size());
+        logger.info("✅ [{}] Generated narrative response: {} chars dialogue, {} chars action, mood {}, {} choices",
+                activeCharacterId, dialogue == null ? 0 : dialogue.length(),
+                actionText == null ? 0 : actionText.length(), mood, choices.size());
 
         // ⭐ SESSION 34: Check for story ending markers
         String endingId = detectEnding(dialogue, actionText);
@@ -236,26 +503,19 @@ public class NarrativeEngine {
             logger.info("🏆 Story ending detected: {} (ending: {})", activeCharacterId, endingId);
         }
 
-        // ⭐ DEBUG LOGGING: Verify final NarrativeResponse object
-        logger.info("🔍 [{}] Final NarrativeResponse - dialogue: {}", activeCharacterId, response.getDialogue());
-        logger.info("🔍 [{}] Final NarrativeResponse - actionText: {}", activeCharacterId, response.getActionText());
-        logger.info("🔍 [{}] Final NarrativeResponse - speaker: {}", activeCharacterId, response.getSpeaker());
-        logger.info("🔍 [{}] Final NarrativeResponse - speakerName: {}", activeCharacterId, response.getSpeakerName());
-        logger.info("🔍 [{}] Final NarrativeResponse - isEnding: {}, endingId: {}",
-                activeCharacterId, response.isEnding(), response.getEndingId());
-
         return response;
     }
 
     /**
      * ⭐ SESSION 34: Detect ending markers in the narrative response.
      * Looks for [END:ending_id] pattern in dialogue or actionText.
+     * Package-private for the JMH benchmarks (src/jmh/java).
      *
      * @param dialogue The character's dialogue
      * @param actionText The action/gesture text (may be null)
      * @return The ending ID if found, null otherwise
      */
-    private String detectEnding(String dialogue, String actionText) {
+    String detectEnding(String dialogue, String actionText) {
         // Check dialogue first
         if (dialogue != null) {
             Matcher matcher = ENDING_PATTERN.matcher(dialogue);
@@ -286,8 +546,7 @@ public class NarrativeEngine {
     private List<Choice> generateChoices(
             String currentSpeaker,
             String lastDialogue,
-            String storyId,
-            ConversationHistory history
+            String storyId
     ) {
         logger.info("🎲 Generating choices for context...");
 
@@ -302,7 +561,10 @@ public class NarrativeEngine {
 
             // Ask Claude to generate choices
             String choicesText = chatService.sendMessage(tempHistory);
-            logger.debug("📝 Raw choice response: {}", choicesText);
+            logger.debug("📝 Raw choice response: {}", TurnLog.truncate(choicesText));
+            if (choicesText == null) {
+                return createFallbackChoices(currentSpeaker, storyId);
+            }
 
             // Parse choices from Claude's response
             List<Choice> choices = parseChoices(choicesText, currentSpeaker, storyId);
@@ -317,6 +579,86 @@ public class NarrativeEngine {
         }
     }
 
+    /**
+     * ⭐ SESSION 45: Wait for the speculative choice call started during streaming.
+     * Falls back to a separate call if it failed.
+     */
+    private List<Choice> awaitSpeculativeChoices(
+            CompletableFuture<List<Choice>> speculativeChoices,
+            String currentSpeaker,
+            String dialogue,
+            String storyId
+    ) {
+        try {
+            List<Choice> choices = speculativeChoices.join();
+            logger.info("✅ Using {} speculative choices", choices.size());
+            return choices;
+        } catch (Exception e) {
+            logger.warn("⚠️ Speculative choice generation failed ({}), retrying serially", e.getMessage());
+            return generateChoices(currentSpeaker, dialogue, storyId);
+        }
+    }
+
+    /**
+     * ⭐ SESSION 45: Extra system prompt section asking for choices inside the dialogue JSON.
+     */
+    private String buildInlineChoiceInstructions(String storyId) {
+        String characterList = characterDb.getCharactersByStory(storyId).stream()
+                .map(Character::getId)
+                .collect(java.util.stream.Collectors.joining(", "));
+
+        return """
+
+
+                ## Player Choices
+                ALSO include a "choices" array as the LAST field of the same JSON object,
+                with 2-3 meaningful next moves for the player:
+                  "choices": [
+                    {"label": "Ask about the constellation", "nextSpeaker": "ilyra"},
+                    {"label": "Step back and observe", "nextSpeaker": "narrator"}
+                  ]
+
+                Choice requirements:
+                - Make choices distinct and interesting
+                - Include at least one choice that switches to a different character
+                - Vary choice types: actions, questions, observations
+                - Keep labels concise (3-8 words each)
+                - nextSpeaker must be one of: %s
+                """.formatted(characterList);
+    }
+
+    /**
+     * ⭐ SESSION 45: Parse the "choices" array of an INLINE response.
+     * Returns an empty list if the node is not a usable array.
+     */
+    private List<Choice> parseInlineChoices(com.fasterxml.jackson.databind.JsonNode choicesNode) {
+        List<Choice> choices = new ArrayList<>();
+        if (choicesNode == null || !choicesNode.isArray()) {
+            return choices;
+        }
+
+        int choiceId = 1;
+        for (com.fasterxml.jackson.databind.JsonNode node : choicesNode) {
+            String label = node.path("label").asText("").trim();
+            String nextSpeaker = node.path("nextSpeaker").asText("").trim().toLowerCase();
+            if (label.isEmpty()) {
+                continue;
+            }
+
+            if (!isValidSpeaker(nextSpeaker)) {
+                logger.warn("⚠️ Invalid speaker '{}', defaulting to narrator", nextSpeaker);
+                nextSpeaker = "narrator";
+            }
+
+            choices.add(new Choice("choice_" + choiceId++, label, nextSpeaker));
+            if (choices.size() == 3) {
+                break;  // Limit to 3 choices maximum
+            }
+        }
+
+        return choices;
+    }
+
     /**
      * Build the prompt for Claude to generate narrative choices.
      */
@@ -358,8 +700,9 @@ public class NarrativeEngine {
 
     /**
      * Parse choices from Claude's response using regex pattern matching.
+     * Package-private for the JMH benchmarks (src/jmh/java).
      */
-    private List<Choice> parseChoices(String response, String currentSpeaker, String storyId) {
+    List<Choice> parseChoices(String response, String currentSpeaker, String storyId) {
         List<Choice> choices = new ArrayList<>();
 
         // Pattern: [CHOICE: label text | nextSpeaker]
@@ -437,8 +780,9 @@ public class NarrativeEngine {
      * Build the complete prompt: Base + Character Context.
      * This is the magic that makes characters feel different!
      * ⭐ SESSION 26: Added mood inference for Pirates story characters
+     * Package-private for the JMH benchmarks (src/jmh/java).
      */
-    private String buildLayeredPrompt(Character character) {
+    String buildLayeredPrompt(Character character) {
         // If it's the narrator, just use base prompt
         if ("narrator".equals(character.getId())) {
             logger.debug("Using narrator (base prompt only)");
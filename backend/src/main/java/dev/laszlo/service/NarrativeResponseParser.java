@@ -0,0 +1,175 @@
+package dev.laszlo.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Extracts the narrative JSON object ({"dialogue", "actionText", "mood", "choices"}) from Claude's raw reply.
+ * <p>
+ * The reply is scanned once: braces are matched (ignoring braces inside JSON strings) to find each
+ * top-level {...} span. Complete spans that open with a key are handed to a streaming Jackson parser,
+ * which reads the chars in place (no substring copies). The first span that parses and has a "dialogue"
+ * field wins, so prose and code fences around the JSON are skipped. A span that fails to parse or has no dialogue is
+ * skipped as a whole; objects nested inside it are not tried on their own.
+ * <p>
+ * Stateless and thread-safe: one shared ObjectMapper for all turns.
+ * ⭐ SESSION 45: Replaces the parse-from-every-'{' retry loop in NarrativeEngine (quadratic on long or malformed replies)
+ */
+public final class NarrativeResponseParser {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // A '{' that is never closed (truncated reply, stray brace in prose) swallows the rest of the scan.
+    // Rescan after it, but only a few times - malformed replies stay linear and fall back to raw text.
+    private static final int MAX_UNCLOSED_RESCANS = 3;
+
+    private NarrativeResponseParser() {
+    }
+
+    /**
+     * The narrative fields of a reply. Missing fields are null.
+     *
+     * @param choices the "choices" node as-is (validated by NarrativeEngine), or null
+     * @param start   index of the object's opening brace in the raw reply
+     */
+    public record ParsedReply(String dialogue, String actionText, String mood, JsonNode choices, int start) {
+    }
+
+    /**
+     * Find and parse the narrative object in a raw reply.
+     *
+     * @return the parsed fields, or null if the reply contains no JSON object with a "dialogue" field
+     */
+    public static ParsedReply parse(String rawResponse) {
+        if (rawResponse == null) {
+            return null;
+        }
+
+        char[] chars = rawResponse.toCharArray();
+        int from = 0;
+        for (int attempt = 0; attempt <= MAX_UNCLOSED_RESCANS && from < chars.length; attempt++) {
+            ScanResult scan = scan(chars, from);
+            if (scan.reply() != null) {
+                return scan.reply();
+            }
+            if (scan.unclosedStart() < 0) {
+                return null;
+            }
+            from = scan.unclosedStart() + 1;
+        }
+        return null;
+    }
+
+    private record ScanResult(ParsedReply reply, int unclosedStart) {
+    }
+
+    /**
+     * One pass over chars[from..]: try every balanced top-level span in order.
+     * Strings are only tracked inside a span, so quotes and apostrophes in prose are harmless.
+     */
+    private static ScanResult scan(char[] chars, int from) {
+        int depth = 0;
+        int start = -1;
+        boolean inString = false;
+        boolean escaping = false;
+
+        for (int i = from; i < chars.length; i++) {
+            char c = chars[i];
+
+            if (inString) {
+                if (escaping) {
+                    escaping = false;
+                } else if (c == '\\') {
+                    escaping = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+
+            if (c == '{') {
+                if (depth++ == 0) {
+                    start = i;
+                }
+            } else if (depth > 0) {
+                if (c == '"') {
+                    inString = true;
+                } else if (c == '}' && --depth == 0 && opensWithKey(chars, start, i)) {
+                    ParsedReply reply = parseSpan(chars, start, i - start + 1);
+                    if (reply != null) {
+                        return new ScanResult(reply, -1);
+                    }
+                }
+            }
+        }
+
+        return new ScanResult(null, depth > 0 ? start : -1);
+    }
+
+    /**
+     * Cheap pre-check: a JSON object with fields starts with '{' + optional whitespace + '"'.
+     * Filters out prose like "{as requested}" without paying for a parser exception.
+     */
+    private static boolean opensWithKey(char[] chars, int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            if (!Character.isWhitespace(chars[i])) {
+                return chars[i] == '"';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stream the top-level fields of one candidate object. Only "choices" is materialized as a tree.
+     *
+     * @return the reply, or null if the span isn't valid JSON or has no "dialogue"
+     */
+    private static ParsedReply parseSpan(char[] chars, int offset, int length) {
+        String dialogue = null;
+        String actionText = null;
+        String mood = null;
+        JsonNode choices = null;
+        boolean hasDialogue = false;
+
+        try (JsonParser parser = MAPPER.getFactory().createParser(chars, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                switch (field) {
+                    case "dialogue" -> {
+                        dialogue = scalarText(parser, value);
+                        hasDialogue = true;
+                    }
+                    case "actionText" -> actionText = scalarText(parser, value);
+                    case "mood" -> mood = scalarText(parser, value);
+                    case "choices" -> choices = MAPPER.readTree(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            return null;  // Not JSON - prose in braces, truncated object, ...
+        }
+
+        return hasDialogue ? new ParsedReply(dialogue, actionText, mood, choices, offset) : null;
+    }
+
+    /**
+     * Same text JsonNode.asText() would give: scalars as text, null as "null", containers as "".
+     */
+    private static String scalarText(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+        return value == JsonToken.VALUE_NULL ? "null" : parser.getText();
+    }
+}
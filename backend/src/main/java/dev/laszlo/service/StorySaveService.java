@@ -3,8 +3,12 @@ package dev.laszlo.service;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.google.gson.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import javax.sql.DataSource;
@@ -19,18 +23,33 @@ import java.time.LocalDateTime;
  * <p>
  * ⭐ SESSION 26: Multi-story save system
  * ⭐ SESSION 35: Migrated from SQLite to PostgreSQL
+ * ⭐ SESSION 45: Append-only message log (story_save_messages) + periodic snapshot compaction
+ * ⭐ SESSION 45: Atomic UPSERT save path + batch variant for the write-behind cache
+ * ⭐ SESSION 45: Rolling context summary stored alongside each save
+ * ⭐ SESSION 45: Save / load timings exported as storyforge.db (see TurnMetrics)
+ * ⭐ SESSION 45: Saves are per user - every query is keyed by user_id first (see DatabaseService indexes)
+ * ⭐ SESSION 45: Snapshots are written to conversation_data in ConversationCodec's compact format
+ * ⭐ SESSION 45: The message log keeps every message - paginated transcripts and lazy turn windows read it by seq
  */
 @Service
 public class StorySaveService extends BaseService {
 
     private static final Logger logger = LoggerFactory.getLogger(StorySaveService.class);
-    private final DataSource dataSource;
+
+    // ⭐ SESSION 45: Fold the message log back into the snapshot once it reaches this many messages
+    static final int COMPACTION_THRESHOLD = 40;
+
+    // ⭐ SESSION 45: The anonymous player (SecurityContextHelper's fallback) - used by the overloads without a userId
+    public static final String DEFAULT_USER = "default";
+
+    private final TurnMetrics metrics;
 
     /**
-     * Constructor - creates database tables if they don't exist.
+     * Constructor - tables are created by DatabaseService.
      */
-    public StorySaveService(DataSource dataSource) {
-        this.dataSource = dataSource;
+    public StorySaveService(DataSource dataSource, TurnMetrics metrics) {
+        super(dataSource);
+        this.metrics = metrics;
     }
 
     // ═══════════════════════════════════════════════════════════════════════════
@@ -39,7 +58,13 @@ public class StorySaveService extends BaseService {
 
     /**
      * Save or update story progress to database.
+     * <p>
+     * ⭐ SESSION 45: Append-only. Only messages added since the last save are inserted into
+     * story_save_messages; conversation_data is a snapshot that is rewritten only when a save is
+     * created or compacted (every {@value #COMPACTION_THRESHOLD} logged messages).
+     * ⭐ SESSION 45: Single atomic UPSERT - no exists-check race between concurrent first saves.
      *
+     * @param userId         Owner of the save (SecurityContextHelper.getCurrentUserId())
      * @param storyId        Story identifier (e.g., "pirates", "observatory")
      * @param saveSlot       Save slot number (default: 1)
      * @param history        Complete conversation history
@@ -47,6 +72,7 @@ public class StorySaveService extends BaseService {
      * @return true if save successful, false otherwise
      */
     public boolean saveStoryProgress(
+            String userId,
             String storyId,
             int saveSlot,
             ConversationHistory history,
@@ -62,114 +88,326 @@ public class StorySaveService extends BaseService {
             return false;
         }
 
-        try {
-            // Serialize conversation to JSON
-            String conversationJson = history.toJson();
-            int messageCount = history.getMessageCount();
-            String userId = "default";  // Future: get from authentication
+        return saveStoryProgressBatch(List.of(new SaveRequest(userId, storyId, saveSlot, history, currentSpeaker)));
+    }
 
-            // Check if save already exists
-            if (saveExists(storyId, saveSlot, userId)) {
-                return updateSave(storyId, saveSlot, userId, conversationJson, messageCount, currentSpeaker);
-            } else {
-                return insertSave(storyId, saveSlot, userId, conversationJson, messageCount, currentSpeaker);
+    /**
+     * Save progress for the anonymous {@value #DEFAULT_USER} player.
+     */
+    public boolean saveStoryProgress(String storyId, int saveSlot, ConversationHistory history, String currentSpeaker) {
+        return saveStoryProgress(DEFAULT_USER, storyId, saveSlot, history, currentSpeaker);
+    }
+
+    /**
+     * ⭐ SESSION 45: Persist many saves in one transaction (used by the write-behind cache flusher).
+     * <p>
+     * On PostgreSQL all save rows are upserted by a single multi-row
+     * {@code INSERT ... ON CONFLICT DO UPDATE ... RETURNING} that also locks them; new log messages,
+     * counter updates and compactions then go out as one JDBC batch each.
+     * Other databases (H2 in tests) lock/insert row by row with the same result.
+     *
+     * @param saves saves to persist, any mix of users (one per user/story/slot - later duplicates win)
+     * @return true if all saves were written, false if the transaction was rolled back
+     */
+    public boolean saveStoryProgressBatch(List<SaveRequest> saves) {
+        if (saves.isEmpty()) {
+            return true;
+        }
+
+        String storyTag = saves.stream().map(SaveRequest::storyId).distinct().count() == 1
+                ? saves.get(0).storyId()
+                : "mixed";
+        return metrics.timeDb(saves.size() == 1 ? "save_progress" : "save_batch", storyTag,
+                () -> writeSaves(saves));
+    }
+
+    private boolean writeSaves(List<SaveRequest> saves) {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                writeSaves(conn, saves);
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
 
         } catch (Exception e) {
-            logger.error("❌ Failed to save story progress for {}: {}", storyId, e.getMessage(), e);
+            logger.error("❌ Failed to save story progress ({} saves): {}", saves.size(), e.getMessage(), e);
             return false;
         }
     }
 
     /**
-     * Insert new save record.
+     * ⭐ SESSION 45: Write saves on the caller's connection and transaction (see TurnCommitService).
      */
-    private boolean insertSave(
-            String storyId,
-            int saveSlot,
-            String userId,
-            String conversationJson,
-            int messageCount,
-            String currentSpeaker
-    ) {
-        String sql = """
+    void writeSaves(Connection conn, List<SaveRequest> saves) throws SQLException {
+        // One row per (user, story, slot) - ON CONFLICT can't touch the same row twice in one statement
+        Map<String, SaveRequest> unique = new LinkedHashMap<>();
+        for (SaveRequest save : saves) {
+            unique.put(save.key(), save);
+        }
+        List<SaveRequest> requests = new ArrayList<>(unique.values());
+
+        List<SaveState> states = isPostgres(conn)
+                ? upsertSaveRows(conn, requests)
+                : lockOrInsertSaveRows(conn, requests);
+
+        writeSaveContents(conn, requests, states);
+    }
+
+    /**
+     * PostgreSQL: create-or-touch every save row in one statement.
+     * The update branch leaves message_count alone, so RETURNING yields the log position before this save;
+     * {@code xmax = 0} is true for freshly inserted rows.
+     *
+     * @return states in the same order as the requests
+     */
+    private List<SaveState> upsertSaveRows(Connection conn, List<SaveRequest> requests) throws SQLException {
+        StringBuilder sql = new StringBuilder("""
                 INSERT INTO story_saves (
-                    story_id, save_slot, user_id, current_speaker, 
-                    message_count, choice_count, conversation_json,
+                    story_id, save_slot, user_id, current_speaker,
+                    message_count, choice_count, snapshot_message_count,
                     created_at, last_played_at
-                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
-                """;
+                ) VALUES
+                """);
+        for (int i = 0; i < requests.size(); i++) {
+            sql.append(i == 0 ? "" : ",\n").append("(?, ?, ?, ?, 0, 0, 0, ?, ?)");
+        }
+        sql.append("""
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                ON CONFLICT (user_id, story_id, save_slot) DO UPDATE
+                SET current_speaker = EXCLUDED.current_speaker,
+                    last_played_at = EXCLUDED.last_played_at
+                RETURNING id, user_id, story_id, save_slot, message_count, snapshot_message_count,
+                          (xmax = 0) AS inserted
+                """);
 
+        Map<String, SaveState> byKey = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
             Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            int p = 1;
+            for (SaveRequest save : requests) {
+                pstmt.setString(p++, save.storyId());
+                pstmt.setInt(p++, save.saveSlot());
+                pstmt.setString(p++, save.userId());
+                pstmt.setString(p++, save.currentSpeaker());  // Snapshot is written below, same transaction
+                pstmt.setTimestamp(p++, now);
+                pstmt.setTimestamp(p++, now);
+            }
 
-            pstmt.setString(1, storyId);
-            pstmt.setInt(2, saveSlot);
-            pstmt.setString(3, userId);
-            pstmt.setString(4, currentSpeaker);
-            pstmt.setInt(5, messageCount);
-            pstmt.setInt(6, 0);  // choice_count: will track later
-            pstmt.setString(7, conversationJson);
-            pstmt.setTimestamp(8, now);
-            pstmt.setTimestamp(9, now);
-
-            pstmt.executeUpdate();
-            logger.info("💾 Created new save: {} (slot {}, {} messages)", storyId, saveSlot, messageCount);
-            return true;
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                SaveState state = readSaveState(rs, rs.getString("story_id"), rs.getInt("save_slot"),
+                        rs.getBoolean("inserted"));
+                byKey.put(rs.getString("user_id") + "|" + state.storyId() + "|" + state.saveSlot(), state);
+            }
+        }
 
-        } catch (SQLException e) {
-            logger.error("❌ Failed to insert save: {}", e.getMessage());
-            return false;
+        List<SaveState> states = new ArrayList<>();
+        for (SaveRequest save : requests) {
+            states.add(byKey.get(save.key()));
         }
+        return states;
     }
 
     /**
-     * Update existing save record.
+     * Portable fallback: lock each existing row (SELECT ... FOR UPDATE) or insert an empty one.
+     *
+     * @return states in the same order as the requests
      */
-    private boolean updateSave(
-            String storyId,
-            int saveSlot,
-            String userId,
-            String conversationJson,
-            int messageCount,
-            String currentSpeaker
-    ) {
-        String sql = """
-                UPDATE story_saves 
-                SET conversation_json = ?,
+    private List<SaveState> lockOrInsertSaveRows(Connection conn, List<SaveRequest> requests) throws SQLException {
+        String selectSql = """
+                SELECT id, message_count, snapshot_message_count
+                FROM story_saves
+                WHERE user_id = ? AND story_id = ? AND save_slot = ?
+                FOR UPDATE
+                """;
+        String insertSql = """
+                INSERT INTO story_saves (
+                    story_id, save_slot, user_id, current_speaker,
+                    message_count, choice_count, snapshot_message_count,
+                    created_at, last_played_at
+                ) VALUES (?, ?, ?, ?, 0, 0, 0, ?, ?)
+                """;
+
+        List<SaveState> states = new ArrayList<>();
+        try (PreparedStatement select = conn.prepareStatement(selectSql);
+             PreparedStatement insert = conn.prepareStatement(insertSql, new String[]{"id"})) {
+
+            for (SaveRequest save : requests) {
+                select.setString(1, save.userId());
+                select.setString(2, save.storyId());
+                select.setInt(3, save.saveSlot());
+
+                ResultSet rs = select.executeQuery();
+                if (rs.next()) {
+                    states.add(readSaveState(rs, save.storyId(), save.saveSlot(), false));
+                    continue;
+                }
+
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                insert.setString(1, save.storyId());
+                insert.setInt(2, save.saveSlot());
+                insert.setString(3, save.userId());
+                insert.setString(4, save.currentSpeaker());
+                insert.setTimestamp(5, now);
+                insert.setTimestamp(6, now);
+                insert.executeUpdate();
+
+                ResultSet keys = insert.getGeneratedKeys();
+                keys.next();
+                states.add(new SaveState(keys.getInt(1), save.storyId(), save.saveSlot(), 0, 0, true));
+            }
+        }
+        return states;
+    }
+
+    private SaveState readSaveState(ResultSet rs, String storyId, int saveSlot, boolean inserted) throws SQLException {
+        int messageCount = rs.getInt("message_count");
+        int snapshotCount = rs.getInt("snapshot_message_count");
+        if (rs.wasNull()) {
+            // Legacy save: conversation_json holds the full conversation
+            snapshotCount = messageCount;
+        }
+        return new SaveState(rs.getInt("id"), storyId, saveSlot, messageCount, snapshotCount, inserted);
+    }
+
+    /**
+     * Write the conversation part of each (already locked) save row:
+     * new saves, long logs and histories that no longer extend the save get a fresh snapshot;
+     * everything else just appends its new user/assistant messages (seq continues from the saved count).
+     * ⭐ SESSION 45: Compaction no longer clears the log - only a history that no longer extends the save
+     * replaces it. A lazy window is completed from the store before it is snapshotted.
+     */
+    private void writeSaveContents(Connection conn, List<SaveRequest> requests, List<SaveState> states)
+            throws SQLException {
+        String compactSql = """
+                UPDATE story_saves
+                SET conversation_data = ?,
+                    conversation_json = NULL,
                     message_count = ?,
+                    snapshot_message_count = ?,
+                    current_speaker = ?,
+                    context_summary = ?,
+                    summarized_message_count = ?,
+                    last_played_at = ?
+                WHERE id = ?
+                """;
+        String clearLogSql = "DELETE FROM story_save_messages WHERE save_id = ?";
+        String appendSql = "INSERT INTO story_save_messages (save_id, seq, role, content) VALUES (?, ?, ?, ?)";
+        // snapshot_message_count is written too, which migrates legacy rows on their first append
+        String advanceSql = """
+                UPDATE story_saves
+                SET message_count = ?,
+                    snapshot_message_count = ?,
                     current_speaker = ?,
+                    context_summary = ?,
+                    summarized_message_count = ?,
                     last_played_at = ?
-                WHERE story_id = ? AND save_slot = ? AND user_id = ?
+                WHERE id = ?
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement compact = conn.prepareStatement(compactSql);
+             PreparedStatement clearLog = conn.prepareStatement(clearLogSql);
+             PreparedStatement append = conn.prepareStatement(appendSql);
+             PreparedStatement advance = conn.prepareStatement(advanceSql)) {
 
-            pstmt.setString(1, conversationJson);
-            pstmt.setInt(2, messageCount);
-            pstmt.setString(3, currentSpeaker);
-            pstmt.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
-            pstmt.setString(5, storyId);
-            pstmt.setInt(6, saveSlot);
-            pstmt.setString(7, userId);
-
-            int updated = pstmt.executeUpdate();
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            boolean anyCompact = false;
+            boolean anyClear = false;
+            boolean anyAppend = false;
+
+            for (int i = 0; i < requests.size(); i++) {
+                SaveRequest save = requests.get(i);
+                SaveState state = states.get(i);
+                ConversationHistory history = save.history();
+                int messageCount = history.getMessageCount();
+
+                boolean diverged = messageCount < state.messageCount();
+                boolean compactDue = state.inserted() || diverged
+                        || messageCount - state.snapshotCount() >= COMPACTION_THRESHOLD;
+
+                if ((compactDue && !history.isComplete()) || history.getWindowOffset() > state.messageCount()) {
+                    history = completeWindow(conn, state.id(), history);
+                }
+
+                if (diverged) {
+                    clearLog.setInt(1, state.id());
+                    clearLog.addBatch();
+                    anyClear = true;
+                }
+
+                int appendFrom = state.inserted() || diverged ? 0 : state.messageCount();
+                for (int seq = appendFrom; seq < messageCount; seq++) {
+                    JsonObject message = history.getMessage(seq);
+                    append.setInt(1, state.id());
+                    append.setInt(2, seq);
+                    append.setString(3, message.get("role").getAsString());
+                    append.setString(4, message.get("content").getAsString());
+                    append.addBatch();
+                    anyAppend = true;
+                }
+
+                if (compactDue) {
+                    compact.setBytes(1, ConversationCodec.encode(history));
+                    compact.setInt(2, messageCount);
+                    compact.setInt(3, messageCount);
+                    compact.setString(4, save.currentSpeaker());
+                    compact.setString(5, history.getContextSummary());
+                    compact.setInt(6, history.getSummarizedMessageCount());
+                    compact.setTimestamp(7, now);
+                    compact.setInt(8, state.id());
+                    compact.addBatch();
+                    anyCompact = true;
+
+                    logger.info("💾 {} save: {} (slot {}, {} messages in snapshot)",
+                            state.inserted() ? "Created new" : "Compacted", save.storyId(), save.saveSlot(), messageCount);
+                    continue;
+                }
+
+                advance.setInt(1, messageCount);
+                advance.setInt(2, state.snapshotCount());
+                advance.setString(3, save.currentSpeaker());
+                advance.setString(4, save.history().getContextSummary());
+                advance.setInt(5, save.history().getSummarizedMessageCount());
+                advance.setTimestamp(6, now);
+                advance.setInt(7, state.id());
+                advance.addBatch();
+
+                logger.info("💾 Updated save: {} (slot {}, {} messages, +{} appended)",
+                        save.storyId(), save.saveSlot(), messageCount, messageCount - state.messageCount());
+            }
 
-            if (updated > 0) {
-                logger.info("💾 Updated save: {} (slot {}, {} messages)", storyId, saveSlot, messageCount);
-                return true;
-            } else {
-                logger.warn("⚠️ No save found to update: {} slot {}", storyId, saveSlot);
-                return false;
+            if (anyClear) {
+                clearLog.executeBatch();
+            }
+            if (anyCompact) {
+                compact.executeBatch();
+            }
+            if (anyAppend) {
+                append.executeBatch();
             }
+            advance.executeBatch();
+        }
+    }
 
-        } catch (SQLException e) {
-            logger.error("❌ Failed to update save: {}", e.getMessage());
-            return false;
+    /**
+     * ⭐ SESSION 45: A lazy window plus the stored messages before it, as a new complete history
+     * (the request's history is shared with the save cache and must not change).
+     */
+    private ConversationHistory completeWindow(Connection conn, int saveId, ConversationHistory window)
+            throws SQLException {
+        List<JsonObject> earlier = new ArrayList<>();
+        for (TranscriptMessage message : readMessageRange(conn, saveId, 0, window.getWindowOffset())) {
+            earlier.add(message.toJson());
         }
+        ConversationHistory complete = window.copy();
+        complete.prepend(earlier);
+        return complete;
     }
 
     // ═══════════════════════════════════════════════════════════════════════════
@@ -178,43 +416,68 @@ public class StorySaveService extends BaseService {
 
     /**
      * Load story progress from database.
+     * ⭐ SESSION 45: Snapshot (conversation_data, or a version "1.0" conversation_json) + messages logged since the snapshot.
      *
+     * @param userId   Owner of the save
      * @param storyId  Story identifier
      * @param saveSlot Save slot number (default: 1)
      * @return ConversationHistory if found, null otherwise
      */
+    public ConversationHistory loadStoryProgress(String userId, String storyId, int saveSlot) {
+        return metrics.timeDb("load_progress", storyId, () -> readProgress(userId, storyId, saveSlot));
+    }
+
+    /**
+     * Load progress of the anonymous {@value #DEFAULT_USER} player.
+     */
     public ConversationHistory loadStoryProgress(String storyId, int saveSlot) {
+        return loadStoryProgress(DEFAULT_USER, storyId, saveSlot);
+    }
+
+    private ConversationHistory readProgress(String userId, String storyId, int saveSlot) {
         if (storyId == null || storyId.isBlank()) {
             logger.error("❌ Cannot load: storyId is null or empty");
             return null;
         }
 
-        String userId = "default";  // Future: get from authentication
         String sql = """
-                SELECT conversation_json, message_count, current_speaker
+                SELECT id, conversation_data, conversation_json, message_count, snapshot_message_count, current_speaker,
+                       context_summary, summarized_message_count
                 FROM story_saves
-                WHERE story_id = ? AND save_slot = ? AND user_id = ?
+                WHERE user_id = ? AND story_id = ? AND save_slot = ?
                 """;
 
         try (Connection conn = dataSource.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setString(1, storyId);
-            pstmt.setInt(2, saveSlot);
-            pstmt.setString(3, userId);
+            pstmt.setString(1, userId);
+            pstmt.setString(2, storyId);
+            pstmt.setInt(3, saveSlot);
 
             ResultSet rs = pstmt.executeQuery();
 
             if (rs.next()) {
+                int saveId = rs.getInt("id");
+                byte[] conversationData = rs.getBytes("conversation_data");
                 String conversationJson = rs.getString("conversation_json");
                 int messageCount = rs.getInt("message_count");
+                int snapshotCount = rs.getInt("snapshot_message_count");
+                boolean legacy = rs.wasNull();
                 String currentSpeaker = rs.getString("current_speaker");
+                String contextSummary = rs.getString("context_summary");
+                int summarizedCount = rs.getInt("summarized_message_count");
+
+                // Deserialize the snapshot back to ConversationHistory (rows not yet compacted hold JSON)
+                ConversationHistory history = decodeSnapshot(conversationData, conversationJson);
 
-                // Deserialize JSON back to ConversationHistory
-                ConversationHistory history = ConversationHistory.fromJson(conversationJson);
+                // Legacy rows (full JSON, no log) load as-is and migrate on their next save
+                if (!legacy && messageCount > snapshotCount) {
+                    appendLoggedMessages(conn, saveId, snapshotCount, history);
+                }
+                history.setContextSummary(contextSummary, summarizedCount);
 
                 logger.info("📂 Loaded save: {} (slot {}, {} messages, speaker: {})",
-                        storyId, saveSlot, messageCount, currentSpeaker);
+                        storyId, saveSlot, history.getMessageCount(), currentSpeaker);
 
                 return history;
             } else {
@@ -231,6 +494,222 @@ public class StorySaveService extends BaseService {
         }
     }
 
+    /**
+     * Replay the message log (seq >= fromSeq) onto a history loaded from the snapshot.
+     */
+    private void appendLoggedMessages(Connection conn, int saveId, int fromSeq, ConversationHistory history)
+            throws SQLException {
+        String sql = """
+                SELECT role, content
+                FROM story_save_messages
+                WHERE save_id = ? AND seq >= ?
+                ORDER BY seq
+                """;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, saveId);
+            pstmt.setInt(2, fromSeq);
+
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                history.addMessage(rs.getString("role"), rs.getString("content"));
+            }
+        }
+    }
+
+    private static ConversationHistory decodeSnapshot(byte[] conversationData, String conversationJson) {
+        return conversationData != null
+                ? ConversationCodec.decode(conversationData)
+                : ConversationHistory.fromJson(conversationJson);
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // ⭐ SESSION 45: LAZY WINDOWS & TRANSCRIPT PAGES
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * History for the next turn. Saves with a context summary load as a lazy window: only the
+     * messages after the summarized prefix, read from the message log - no snapshot decode, no
+     * JsonObjects for the part of a long playthrough the request never sends. Other saves load whole.
+     * <p>
+     * A window carries no system prompt; NarrativeEngine sets it before every request.
+     *
+     * @return the history (possibly a window), or null if no save exists
+     */
+    public ConversationHistory loadStoryContext(String userId, String storyId, int saveSlot) {
+        return metrics.timeDb("load_context", storyId, () -> readContext(userId, storyId, saveSlot));
+    }
+
+    private ConversationHistory readContext(String userId, String storyId, int saveSlot) {
+        if (storyId == null || storyId.isBlank()) {
+            logger.error("❌ Cannot load: storyId is null or empty");
+            return null;
+        }
+
+        String sql = """
+                SELECT id, message_count, snapshot_message_count, context_summary, summarized_message_count
+                FROM story_saves
+                WHERE user_id = ? AND story_id = ? AND save_slot = ?
+                """;
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, userId);
+            pstmt.setString(2, storyId);
+            pstmt.setInt(3, saveSlot);
+
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                logger.debug("📂 No save found for: {} slot {}", storyId, saveSlot);
+                return null;
+            }
+
+            int saveId = rs.getInt("id");
+            int messageCount = rs.getInt("message_count");
+            boolean legacy = rs.getObject("snapshot_message_count") == null;
+            String contextSummary = rs.getString("context_summary");
+            int summarizedCount = rs.getInt("summarized_message_count");
+
+            boolean summarized = !legacy && contextSummary != null
+                    && summarizedCount > 0 && summarizedCount <= messageCount;
+            if (summarized) {
+                List<JsonObject> recent = new ArrayList<>();
+                for (TranscriptMessage message : readMessageRange(conn, saveId, summarizedCount, messageCount)) {
+                    recent.add(message.toJson());
+                }
+                ConversationHistory history = ConversationHistory.window(summarizedCount, recent);
+                history.setContextSummary(contextSummary, summarizedCount);
+
+                logger.info("📂 Loaded save window: {} (slot {}, messages {}-{} of {})",
+                        storyId, saveSlot, summarizedCount, messageCount - 1, messageCount);
+                return history;
+            }
+
+        } catch (SQLException e) {
+            logger.error("❌ Failed to load save: {}", e.getMessage());
+            return null;
+        } catch (IllegalArgumentException e) {
+            logger.error("❌ Failed to deserialize save data: {}", e.getMessage());
+            return null;
+        }
+
+        // Nothing summarized yet (or a legacy row): the request sends every message anyway
+        return readProgress(userId, storyId, saveSlot);
+    }
+
+    /**
+     * One page of a save's transcript, newest last. Pages walk backwards: pass the previous page's
+     * nextBefore as {@code before} until it is null.
+     *
+     * @param before only messages with seq below this (null = up to the newest)
+     * @param limit  page size
+     * @return the page, or null if the save doesn't exist or could not be read
+     */
+    public TranscriptPage getTranscriptPage(String userId, String storyId, int saveSlot, Integer before, int limit) {
+        return metrics.timeDb("transcript_page", storyId,
+                () -> readTranscriptPage(userId, storyId, saveSlot, before, limit));
+    }
+
+    private TranscriptPage readTranscriptPage(String userId, String storyId, int saveSlot, Integer before, int limit) {
+        String sql = """
+                SELECT id, message_count
+                FROM story_saves
+                WHERE user_id = ? AND story_id = ? AND save_slot = ?
+                """;
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, userId);
+            pstmt.setString(2, storyId);
+            pstmt.setInt(3, saveSlot);
+
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+
+            int total = rs.getInt("message_count");
+            int end = before == null ? total : Math.max(0, Math.min(before, total));
+            int start = Math.max(0, end - Math.max(1, limit));
+            List<TranscriptMessage> messages = readMessageRange(conn, rs.getInt("id"), start, end);
+
+            return new TranscriptPage(messages, total, start > 0 ? start : null);
+
+        } catch (SQLException e) {
+            logger.error("❌ Failed to load transcript page: {}", e.getMessage());
+            return null;
+        } catch (IllegalArgumentException e) {
+            logger.error("❌ Failed to deserialize save data: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Messages [from, to) of a save. Read from the message log (primary key (save_id, seq)); saves
+     * compacted before the log kept every message, and legacy rows, have their older messages only
+     * in the snapshot, which is then decoded for the missing part.
+     */
+    private List<TranscriptMessage> readMessageRange(Connection conn, int saveId, int from, int to)
+            throws SQLException {
+        List<TranscriptMessage> logged = new ArrayList<>();
+        if (from >= to) {
+            return logged;
+        }
+
+        String sql = """
+                SELECT seq, role, content
+                FROM story_save_messages
+                WHERE save_id = ? AND seq >= ? AND seq < ?
+                ORDER BY seq
+                """;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, saveId);
+            pstmt.setInt(2, from);
+            pstmt.setInt(3, to);
+
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                logged.add(new TranscriptMessage(rs.getInt("seq"), rs.getString("role"), rs.getString("content")));
+            }
+        }
+
+        int firstLogged = logged.isEmpty() ? to : logged.get(0).seq();
+        if (firstLogged <= from) {
+            return logged;
+        }
+
+        ConversationHistory snapshot = readSnapshot(conn, saveId);
+        if (snapshot == null || snapshot.getMessageCount() < firstLogged) {
+            throw new SQLException("Save " + saveId + " has no stored messages " + from + "-" + (firstLogged - 1));
+        }
+        List<TranscriptMessage> messages = new ArrayList<>(to - from);
+        for (int seq = from; seq < firstLogged; seq++) {
+            JsonObject message = snapshot.getMessage(seq);
+            messages.add(new TranscriptMessage(seq, message.get("role").getAsString(),
+                    message.get("content").getAsString()));
+        }
+        messages.addAll(logged);
+        return messages;
+    }
+
+    private ConversationHistory readSnapshot(Connection conn, int saveId) throws SQLException {
+        String sql = "SELECT conversation_data, conversation_json FROM story_saves WHERE id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, saveId);
+            ResultSet rs = pstmt.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            byte[] conversationData = rs.getBytes("conversation_data");
+            String conversationJson = rs.getString("conversation_json");
+            return conversationData == null && conversationJson == null
+                    ? null
+                    : decodeSnapshot(conversationData, conversationJson);
+        }
+    }
+
     // ═══════════════════════════════════════════════════════════════════════════
     // QUERY OPERATIONS
     // ═══════════════════════════════════════════════════════════════════════════
@@ -243,32 +722,25 @@ public class StorySaveService extends BaseService {
      * @return true if save exists, false otherwise
      */
     public boolean hasSave(String storyId, int saveSlot) {
-        return hasSave(storyId, saveSlot, "default");
+        return hasSave(DEFAULT_USER, storyId, saveSlot);
     }
 
     /**
-     * Check if a save exists (with user_id).
+     * Check if the user has a save for the given story and slot.
      */
-    private boolean saveExists(String storyId, int saveSlot, String userId) {
-        return hasSave(storyId, saveSlot, userId);
-    }
-
-    /**
-     * Internal method to check save existence.
-     */
-    private boolean hasSave(String storyId, int saveSlot, String userId) {
+    public boolean hasSave(String userId, String storyId, int saveSlot) {
         String sql = """
                 SELECT COUNT(*) as count 
                 FROM story_saves 
-                WHERE story_id = ? AND save_slot = ? AND user_id = ?
+                WHERE user_id = ? AND story_id = ? AND save_slot = ?
                 """;
 
         try (Connection conn = dataSource.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setString(1, storyId);
-            pstmt.setInt(2, saveSlot);
-            pstmt.setString(3, userId);
+            pstmt.setString(1, userId);
+            pstmt.setString(2, storyId);
+            pstmt.setInt(3, saveSlot);
 
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -285,26 +757,26 @@ public class StorySaveService extends BaseService {
     /**
      * Get save information (metadata only, no conversation data).
      *
+     * @param userId   Owner of the save
      * @param storyId  Story identifier
      * @param saveSlot Save slot number
      * @return SaveInfo object with metadata, or null if not found
      */
-    public SaveInfo getSaveInfo(String storyId, int saveSlot) {
-        String userId = "default";
+    public SaveInfo getSaveInfo(String userId, String storyId, int saveSlot) {
         String sql = """
                 SELECT story_id, save_slot, created_at, last_played_at,
                        current_speaker, message_count, choice_count, is_completed,
                        ending_id, completed_at
                 FROM story_saves
-                WHERE story_id = ? AND save_slot = ? AND user_id = ?
+                WHERE user_id = ? AND story_id = ? AND save_slot = ?
                 """;
 
         try (Connection conn = dataSource.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setString(1, storyId);
-            pstmt.setInt(2, saveSlot);
-            pstmt.setString(3, userId);
+            pstmt.setString(1, userId);
+            pstmt.setString(2, storyId);
+            pstmt.setInt(3, saveSlot);
 
             ResultSet rs = pstmt.executeQuery();
 
@@ -330,6 +802,13 @@ public class StorySaveService extends BaseService {
         return null;
     }
 
+    /**
+     * Save information of the anonymous {@value #DEFAULT_USER} player.
+     */
+    public SaveInfo getSaveInfo(String storyId, int saveSlot) {
+        return getSaveInfo(DEFAULT_USER, storyId, saveSlot);
+    }
+
     // ═══════════════════════════════════════════════════════════════════════════
     // DELETE OPERATIONS
     // ═══════════════════════════════════════════════════════════════════════════
@@ -337,20 +816,20 @@ public class StorySaveService extends BaseService {
     /**
      * Delete a story save.
      *
+     * @param userId   Owner of the save
      * @param storyId  Story identifier
      * @param saveSlot Save slot number
      * @return true if deleted, false otherwise
      */
-    public boolean deleteSave(String storyId, int saveSlot) {
-        String userId = "default";
-        String sql = "DELETE FROM story_saves WHERE story_id = ? AND save_slot = ? AND user_id = ?";
+    public boolean deleteSave(String userId, String storyId, int saveSlot) {
+        String sql = "DELETE FROM story_saves WHERE user_id = ? AND story_id = ? AND save_slot = ?";
 
         try (Connection conn = dataSource.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setString(1, storyId);
-            pstmt.setInt(2, saveSlot);
-            pstmt.setString(3, userId);
+            pstmt.setString(1, userId);
+            pstmt.setString(2, storyId);
+            pstmt.setInt(3, saveSlot);
 
             int deleted = pstmt.executeUpdate();
 
@@ -368,6 +847,13 @@ public class StorySaveService extends BaseService {
         }
     }
 
+    /**
+     * Delete a save of the anonymous {@value #DEFAULT_USER} player.
+     */
+    public boolean deleteSave(String storyId, int saveSlot) {
+        return deleteSave(DEFAULT_USER, storyId, saveSlot);
+    }
+
     /**
      * 🏆 Mark a story as completed with ending information.
      * ⭐ SESSION 34: Updated to accept endingId and set completed_at timestamp.
@@ -379,6 +865,23 @@ public class StorySaveService extends BaseService {
      * @return true if successful
      */
     public boolean markStoryCompleted(String storyId, int saveSlot, String userId, String endingId) {
+        try (Connection conn = dataSource.getConnection()) {
+            if (markStoryCompleted(conn, storyId, saveSlot, userId, endingId)) {
+                return true;
+            }
+        } catch (SQLException e) {
+            logger.error("❌ Failed to mark story completed: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * ⭐ SESSION 45: Same, on the caller's connection and transaction (see TurnCommitService).
+     *
+     * @return true if the save row exists and was marked
+     */
+    boolean markStoryCompleted(Connection conn, String storyId, int saveSlot, String userId, String endingId)
+            throws SQLException {
         Timestamp now = Timestamp.valueOf(LocalDateTime.now());
         String sql = """
                 UPDATE story_saves
@@ -386,26 +889,21 @@ public class StorySaveService extends BaseService {
                     ending_id = ?,
                     completed_at = ?,
                     last_played_at = ?
-                WHERE story_id = ? AND save_slot = ? AND user_id = ?
+                WHERE user_id = ? AND story_id = ? AND save_slot = ?
                 """;
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, endingId);
             pstmt.setTimestamp(2, now);
             pstmt.setTimestamp(3, now);
-            pstmt.setString(4, storyId);
-            pstmt.setInt(5, saveSlot);
-            pstmt.setString(6, userId);
+            pstmt.setString(4, userId);
+            pstmt.setString(5, storyId);
+            pstmt.setInt(6, saveSlot);
 
-            int updated = pstmt.executeUpdate();
-            if (updated > 0) {
+            if (pstmt.executeUpdate() > 0) {
                 logger.info("🏆 Story marked as completed: {} slot {} (ending: {})", storyId, saveSlot, endingId);
                 return true;
             }
-        } catch (SQLException e) {
-            logger.error("❌ Failed to mark story completed: {}", e.getMessage());
         }
         return false;
     }
@@ -465,7 +963,7 @@ public class StorySaveService extends BaseService {
      * Used by REST API for simpler frontend integration.
      */
     public SaveInfo getSaveByStoryId(String userId, String storyId) {
-        return getSaveInfo(storyId, 1);  // Default to slot 1
+        return getSaveInfo(userId, storyId, 1);  // Default to slot 1
     }
 
     /**
@@ -473,7 +971,7 @@ public class StorySaveService extends BaseService {
      * Used by REST API for simpler frontend integration.
      */
     public boolean deleteSaveByStoryId(String userId, String storyId) {
-        return deleteSave(storyId, 1);  // Defaults to slot 1
+        return deleteSave(userId, storyId, 1);  // Defaults to slot 1
     }
 
     /**
@@ -532,6 +1030,44 @@ public class StorySaveService extends BaseService {
     // INNER CLASSES
     // ═══════════════════════════════════════════════════════════════════════════
 
+    /**
+     * ⭐ SESSION 45: One save to persist (see saveStoryProgressBatch).
+     */
+    public record SaveRequest(String userId, String storyId, int saveSlot, ConversationHistory history,
+                              String currentSpeaker) {
+
+        String key() {
+            return userId + "|" + storyId + "|" + saveSlot;
+        }
+    }
+
+    /**
+     * ⭐ SESSION 45: One message of a save's transcript; seq is its position in the conversation (from 0).
+     */
+    public record TranscriptMessage(int seq, String role, String content) {
+
+        JsonObject toJson() {
+            JsonObject message = new JsonObject();
+            message.addProperty("role", role);
+            message.addProperty("content", content);
+            return message;
+        }
+    }
+
+    /**
+     * ⭐ SESSION 45: A page of a transcript. nextBefore is the cursor for the older page (null = first page reached).
+     */
+    public record TranscriptPage(List<TranscriptMessage> messages, int total, Integer nextBefore) {
+    }
+
+    /**
+     * ⭐ SESSION 45: Position of a save's message log, read under the row lock.
+     * inserted = the row was created by this save (needs its initial snapshot).
+     */
+    private record SaveState(int id, String storyId, int saveSlot, int messageCount, int snapshotCount,
+                             boolean inserted) {
+    }
+
     /**
      * Save metadata (without full conversation data).
      * Used for displaying save lists in UI.
@@ -0,0 +1,434 @@
+package dev.laszlo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Write-behind cache of active story saves, sitting in front of StorySaveService.
+ * <p>
+ * Hot ConversationHistory objects stay in memory keyed by (user, story, slot), so a turn normally
+ * costs no SELECT / JSON parse on load and no write on save. Dirty entries are written back:
+ * - every {@code flush-every-turns} saves of the same entry (1 = write-through, old durability)
+ * - by the scheduled flusher every {@code flush-interval-ms}
+ * - before the entry is evicted (LRU over {@code max-entries}, or idle longer than {@code idle-timeout-ms})
+ * - on graceful shutdown
+ * <p>
+ * Histories are copied on the way in and out, so callers can mutate what they get freely and the
+ * flusher always writes a complete turn. Scheduled flushes write all dirty saves in one batch.
+ * ⭐ SESSION 45: Write-behind session cache
+ */
+@Service
+public class StorySessionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorySessionCache.class);
+
+    private final StorySaveService storySaveService;
+    private final int maxEntries;
+    private final int flushEveryTurns;
+    private final long idleTimeoutMs;
+
+    // Access-ordered = LRU. Guarded by synchronized (entries).
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Evicted entries still being written back - loads must see them, not the stale DB row
+    private final Map<String, Entry> evicting = new HashMap<>();
+
+    public StorySessionCache(
+            StorySaveService storySaveService,
+            @Value("${storyforge.save-cache.max-entries:1000}") int maxEntries,
+            @Value("${storyforge.save-cache.flush-every-turns:5}") int flushEveryTurns,
+            @Value("${storyforge.save-cache.idle-timeout-ms:1800000}") long idleTimeoutMs
+    ) {
+        this.storySaveService = storySaveService;
+        this.maxEntries = maxEntries;
+        this.flushEveryTurns = Math.max(1, flushEveryTurns);
+        this.idleTimeoutMs = idleTimeoutMs;
+        logger.info("🗃️ StorySessionCache initialized (max {} entries, flush every {} turns)",
+                maxEntries, this.flushEveryTurns);
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // LOAD / SAVE
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Load story progress - from memory if hot, otherwise from the database (and cache it).
+     * Saves with a context summary come back as a lazy window (StorySaveService.loadStoryContext).
+     *
+     * @return a private copy of the history, or null if no save exists
+     */
+    public ConversationHistory load(String userId, String storyId, int saveSlot) {
+        String key = key(userId, storyId, saveSlot);
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = evicting.get(key);
+            }
+            if (entry != null) {
+                entry.lastAccess = System.currentTimeMillis();
+                return entry.history.copy();
+            }
+        }
+
+        ConversationHistory history = storySaveService.loadStoryContext(userId, storyId, saveSlot);
+        if (history == null) {
+            return null;
+        }
+
+        List<Entry> evicted;
+        synchronized (entries) {
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                // Another request loaded (or saved) it meanwhile - theirs is at least as new
+                return existing.history.copy();
+            }
+            entries.put(key, new Entry(key, userId, storyId, saveSlot, history.copy(), null));
+            evicted = evictOverflow();
+        }
+        flushEvicted(evicted);
+
+        return history;
+    }
+
+    /**
+     * Record a completed turn. Writes through immediately every {@code flush-every-turns} turns,
+     * otherwise leaves the entry dirty for the background flusher.
+     *
+     * @return true if the progress is cached (and flushed when due), false if a due flush failed
+     */
+    public boolean save(String userId, String storyId, int saveSlot, ConversationHistory history, String currentSpeaker) {
+        return commitTurn(userId, storyId, saveSlot, history, currentSpeaker, false,
+                storySaveService::saveStoryProgressBatch);
+    }
+
+    /**
+     * ⭐ SESSION 45: Record a completed turn and hand the turn's writes to {@code writer} - together
+     * with this save when a flush is due (or {@code flushNow}), with an empty list otherwise.
+     * Lets TurnCommitService write the save and the rest of the turn in one transaction.
+     *
+     * @param writer writes the given saves plus anything else the turn needs; true if committed
+     * @return the writer's result
+     */
+    public boolean commitTurn(String userId, String storyId, int saveSlot, ConversationHistory history,
+                              String currentSpeaker, boolean flushNow,
+                              Predicate<List<StorySaveService.SaveRequest>> writer) {
+        String key = key(userId, storyId, saveSlot);
+
+        Entry entry;
+        List<Entry> evicted;
+        boolean flushDue;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key, userId, storyId, saveSlot, history.copy(), currentSpeaker);
+                entries.put(key, entry);
+            } else {
+                ConversationHistory latest = history.copy();
+                keepNewerSummary(entry.history, latest);
+                entry.history = latest;
+                entry.currentSpeaker = currentSpeaker;
+            }
+            entry.version++;
+            entry.unflushedTurns++;
+            entry.lastAccess = System.currentTimeMillis();
+            flushDue = entry.unflushedTurns >= flushEveryTurns;
+            evicted = evictOverflow();
+        }
+        flushEvicted(evicted);
+
+        if (flushDue || flushNow) {
+            return flushEntries(List.of(entry), writer);
+        }
+        return writer.test(List.of());
+    }
+
+    /**
+     * ⭐ SESSION 45: Attach a background-generated context summary to a cached save.
+     * Ignored if the save is no longer cached, has been cut back below the summarized range,
+     * or already has a summary covering at least as much.
+     *
+     * @return true if the summary was applied (it is written with the next flush)
+     */
+    public boolean applySummary(String userId, String storyId, int saveSlot, String summary, int coveredMessages) {
+        synchronized (entries) {
+            Entry entry = entries.get(key(userId, storyId, saveSlot));
+            if (entry == null
+                    || entry.history.getMessageCount() < coveredMessages
+                    || entry.history.getSummarizedMessageCount() >= coveredMessages) {
+                return false;
+            }
+
+            // Swap in a fresh copy - a flush may be writing the current one
+            ConversationHistory updated = entry.history.copy();
+            updated.setContextSummary(summary, coveredMessages);
+            entry.history = updated;
+            entry.version++;
+            entry.unflushedTurns++;
+            return true;
+        }
+    }
+
+    /**
+     * A turn that started before a summary landed saves a history without it - keep the cached one.
+     */
+    private static void keepNewerSummary(ConversationHistory cached, ConversationHistory incoming) {
+        int covered = cached.getSummarizedMessageCount();
+        if (covered > incoming.getSummarizedMessageCount() && incoming.getMessageCount() >= covered) {
+            incoming.setContextSummary(cached.getContextSummary(), covered);
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // FLUSH / EVICT
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Write one entry back now (e.g. before other code updates the story_saves row directly).
+     */
+    public boolean flush(String userId, String storyId, int saveSlot) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key(userId, storyId, saveSlot));
+        }
+        return entry == null || flushEntry(entry);
+    }
+
+    /**
+     * Write back every dirty entry (scheduled, and on shutdown).
+     */
+    @Scheduled(fixedDelayString = "${storyforge.save-cache.flush-interval-ms:10000}")
+    public void flushAll() {
+        List<Entry> dirty = new ArrayList<>();
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                if (entry.unflushedTurns > 0) {
+                    dirty.add(entry);
+                }
+            }
+        }
+
+        if (!dirty.isEmpty() && !flushEntries(dirty) && dirty.size() > 1) {
+            // One bad save rolls back the whole batch - retry individually so the rest still land
+            logger.warn("⚠️ Batch flush of {} saves failed, retrying one by one", dirty.size());
+            dirty.forEach(this::flushEntry);
+        }
+
+        evictIdle();
+    }
+
+    /**
+     * ⭐ SESSION 45: Write back one user's dirty entries (before listing their saves from the database).
+     */
+    public boolean flushUser(String userId) {
+        List<Entry> dirty = new ArrayList<>();
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                if (entry.unflushedTurns > 0 && entry.userId.equals(userId)) {
+                    dirty.add(entry);
+                }
+            }
+        }
+        return dirty.isEmpty() || flushEntries(dirty);
+    }
+
+    /**
+     * Drop an entry without writing it back (the save was deleted).
+     */
+    public void evict(String userId, String storyId, int saveSlot) {
+        synchronized (entries) {
+            String key = key(userId, storyId, saveSlot);
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                entry.deleted = true;
+            }
+            evicting.remove(key);
+        }
+    }
+
+    /**
+     * Graceful shutdown: nothing dirty may be lost.
+     */
+    @PreDestroy
+    public void shutdown() {
+        logger.info("🗃️ Flushing save cache before shutdown...");
+        flushAll();
+    }
+
+    /**
+     * Number of cached saves (for status/metrics).
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private boolean flushEntry(Entry entry) {
+        return flushEntries(List.of(entry));
+    }
+
+    private boolean flushEntries(List<Entry> toFlush) {
+        return flushEntries(toFlush, storySaveService::saveStoryProgressBatch);
+    }
+
+    /**
+     * Persist the latest history of each entry in one batch (one transaction, see
+     * StorySaveService.saveStoryProgressBatch). Flushes are serialized per entry - locks are taken
+     * in key order so concurrent batches can't deadlock - so an older snapshot can never be written
+     * after a newer one.
+     *
+     * @param writer persists the batch (always called, possibly with no saves, so a turn writer still runs)
+     */
+    private boolean flushEntries(List<Entry> toFlush, Predicate<List<StorySaveService.SaveRequest>> writer) {
+        List<Entry> ordered = new ArrayList<>(toFlush);
+        ordered.sort(Comparator.comparing(entry -> entry.key));
+        ordered.forEach(entry -> entry.flushLock.lock());
+        try {
+            List<Entry> pending = new ArrayList<>();
+            List<StorySaveService.SaveRequest> requests = new ArrayList<>();
+            List<Long> versions = new ArrayList<>();
+            synchronized (entries) {
+                for (Entry entry : ordered) {
+                    if (entry.unflushedTurns == 0 || entry.deleted) {
+                        continue;
+                    }
+                    // history is never mutated once cached (save() swaps in a fresh copy), so it is safe to share
+                    pending.add(entry);
+                    requests.add(new StorySaveService.SaveRequest(
+                            entry.userId, entry.storyId, entry.saveSlot, entry.history, entry.currentSpeaker));
+                    versions.add(entry.version);
+                }
+            }
+
+            boolean saved = writer.test(requests);
+            if (requests.isEmpty()) {
+                return saved;
+            }
+
+            synchronized (entries) {
+                for (int i = 0; i < pending.size(); i++) {
+                    Entry entry = pending.get(i);
+                    if (saved && entry.version == versions.get(i)) {
+                        entry.unflushedTurns = 0;
+                    }
+                }
+            }
+
+            if (saved) {
+                logger.debug("💾 Write-behind flushed {} saves", requests.size());
+            } else {
+                logger.warn("⚠️ Write-behind flush of {} saves failed - will retry", requests.size());
+            }
+            return saved;
+        } finally {
+            ordered.forEach(entry -> entry.flushLock.unlock());
+        }
+    }
+
+    /**
+     * Remove LRU entries over capacity. Caller holds the entries lock; dirty ones are returned
+     * (and parked in {@link #evicting}) to be flushed after the lock is released.
+     */
+    private List<Entry> evictOverflow() {
+        List<Entry> dirty = new ArrayList<>();
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            if (eldest.unflushedTurns > 0) {
+                evicting.put(eldest.key, eldest);
+                dirty.add(eldest);
+            }
+        }
+        return dirty;
+    }
+
+    private void flushEvicted(List<Entry> evicted) {
+        for (Entry entry : evicted) {
+            flushEntry(entry);
+            synchronized (entries) {
+                evicting.remove(entry.key, entry);
+            }
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMs;
+        List<Entry> idle = new ArrayList<>();
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                if (entry.lastAccess < cutoff) {
+                    idle.add(entry);
+                }
+            }
+        }
+
+        for (Entry entry : idle) {
+            if (!flushEntry(entry)) {
+                continue;  // Keep it - the next run retries
+            }
+            synchronized (entries) {
+                // Only if nobody touched it while we were flushing
+                if (entry.lastAccess < cutoff && entry.unflushedTurns == 0) {
+                    entries.remove(entry.key, entry);
+                }
+            }
+        }
+
+        if (!idle.isEmpty()) {
+            logger.debug("🗃️ Evicted {} idle saves", idle.size());
+        }
+    }
+
+    private static String key(String userId, String storyId, int saveSlot) {
+        return userId + "|" + storyId + "|" + saveSlot;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // INNER CLASSES
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * One cached save. Mutable fields are guarded by the entries lock.
+     */
+    private static class Entry {
+        final String key;
+        final String userId;
+        final String storyId;
+        final int saveSlot;
+        final ReentrantLock flushLock = new ReentrantLock();
+
+        ConversationHistory history;
+        String currentSpeaker;
+        long version = 0;
+        int unflushedTurns = 0;
+        long lastAccess = System.currentTimeMillis();
+        boolean deleted = false;
+
+        Entry(String key, String userId, String storyId, int saveSlot, ConversationHistory history,
+              String currentSpeaker) {
+            this.key = key;
+            this.userId = userId;
+            this.storyId = storyId;
+            this.saveSlot = saveSlot;
+            this.history = history;
+            this.currentSpeaker = currentSpeaker;
+        }
+    }
+}
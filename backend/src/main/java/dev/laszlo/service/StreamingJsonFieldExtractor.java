@@ -0,0 +1,223 @@
+package dev.laszlo.service;
+
+import java.util.Set;
+
+/**
+ * Incremental extractor for top-level string fields of a JSON object that arrives in chunks.
+ * <p>
+ * Claude's narrative replies are a single JSON object ({"dialogue": ..., "actionText": ..., "mood": ...}),
+ * sometimes wrapped in prose or code fences. This class is fed raw text deltas as they stream in and
+ * reports the decoded characters of the requested fields as soon as they arrive, without waiting
+ * for the closing brace. Nested objects/arrays and non-string values are skipped.
+ * <p>
+ * Not thread-safe: feed it from the single thread that consumes the stream.
+ * ⭐ SESSION 45: Streaming narrative responses (SSE)
+ */
+public class StreamingJsonFieldExtractor {
+
+    /**
+     * Receives decoded field content as it is parsed.
+     */
+    public interface FieldListener {
+
+        /**
+         * Called with the newly decoded characters of a field (one call per fed chunk at most).
+         */
+        default void onFieldDelta(String field, String delta) {
+        }
+
+        /**
+         * Called once the closing quote of a field's string value has been read.
+         */
+        default void onFieldComplete(String field, String value) {
+        }
+    }
+
+    private enum Expect { KEY, COLON, VALUE, COMMA }
+
+    private final Set<String> fields;
+    private final FieldListener listener;
+
+    private boolean started = false;      // Seen the opening '{' of the candidate object
+    private boolean finished = false;     // Top-level object closed with at least one field captured
+    private int depth = 0;
+    private Expect expect = Expect.KEY;
+
+    private boolean inString = false;
+    private boolean escaping = false;
+    private int unicodeDigitsLeft = 0;
+    private int unicodeValue = 0;
+
+    private boolean readingKey = false;
+    private String currentKey;
+    private String capturingField;        // Field whose string value is being read, or null
+    private boolean capturedAny = false;
+
+    private final StringBuilder keyBuffer = new StringBuilder();
+    private final StringBuilder valueBuffer = new StringBuilder();
+    private final StringBuilder pendingDelta = new StringBuilder();
+
+    public StreamingJsonFieldExtractor(Set<String> fields, FieldListener listener) {
+        this.fields = fields;
+        this.listener = listener;
+    }
+
+    /**
+     * Feed the next chunk of raw model output.
+     */
+    public void feed(String chunk) {
+        if (chunk == null || finished) {
+            return;
+        }
+
+        for (int i = 0; i < chunk.length() && !finished; i++) {
+            accept(chunk.charAt(i));
+        }
+
+        flushDelta();
+    }
+
+    /**
+     * True once a complete top-level object containing at least one requested field has been read.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private void accept(char c) {
+        if (!started) {
+            // Skip prose / code fences until the object starts
+            if (c == '{') {
+                started = true;
+                depth = 1;
+                expect = Expect.KEY;
+            }
+            return;
+        }
+
+        if (inString) {
+            acceptStringChar(c);
+            return;
+        }
+
+        switch (c) {
+            case '"' -> startString();
+            case ':' -> {
+                if (depth == 1 && expect == Expect.COLON) {
+                    expect = Expect.VALUE;
+                }
+            }
+            case ',' -> {
+                if (depth == 1) {
+                    expect = Expect.KEY;
+                }
+            }
+            case '{', '[' -> {
+                if (depth == 1 && expect == Expect.VALUE) {
+                    expect = Expect.COMMA;  // Nested value - skipped entirely
+                }
+                depth++;
+            }
+            case '}', ']' -> {
+                depth--;
+                if (depth == 0) {
+                    endObject();
+                }
+            }
+            default -> {
+                if (depth == 1 && expect == Expect.VALUE && !Character.isWhitespace(c)) {
+                    expect = Expect.COMMA;  // Number / true / false / null
+                }
+            }
+        }
+    }
+
+    private void startString() {
+        inString = true;
+        if (depth == 1 && expect == Expect.KEY) {
+            readingKey = true;
+            keyBuffer.setLength(0);
+        } else if (depth == 1 && expect == Expect.VALUE) {
+            capturingField = fields.contains(currentKey) ? currentKey : null;
+            valueBuffer.setLength(0);
+            expect = Expect.COMMA;
+        }
+    }
+
+    private void acceptStringChar(char c) {
+        if (unicodeDigitsLeft > 0) {
+            unicodeValue = (unicodeValue << 4) + Character.digit(c, 16);
+            if (--unicodeDigitsLeft == 0) {
+                append((char) unicodeValue);
+            }
+            return;
+        }
+
+        if (escaping) {
+            escaping = false;
+            switch (c) {
+                case 'n' -> append('\n');
+                case 't' -> append('\t');
+                case 'r' -> append('\r');
+                case 'b' -> append('\b');
+                case 'f' -> append('\f');
+                case 'u' -> {
+                    unicodeDigitsLeft = 4;
+                    unicodeValue = 0;
+                }
+                default -> append(c);  // \" \\ \/
+            }
+            return;
+        }
+
+        if (c == '\\') {
+            escaping = true;
+        } else if (c == '"') {
+            endString();
+        } else {
+            append(c);
+        }
+    }
+
+    private void append(char c) {
+        if (readingKey) {
+            keyBuffer.append(c);
+        } else if (capturingField != null) {
+            valueBuffer.append(c);
+            pendingDelta.append(c);
+        }
+    }
+
+    private void endString() {
+        inString = false;
+        if (readingKey) {
+            readingKey = false;
+            currentKey = keyBuffer.toString();
+            expect = Expect.COLON;
+        } else if (capturingField != null) {
+            flushDelta();
+            capturedAny = true;
+            listener.onFieldComplete(capturingField, valueBuffer.toString());
+            capturingField = null;
+        }
+    }
+
+    private void endObject() {
+        if (capturedAny) {
+            finished = true;
+            return;
+        }
+
+        // Not the object we were looking for (e.g. braces in prose) - keep scanning
+        started = false;
+        expect = Expect.KEY;
+        currentKey = null;
+    }
+
+    private void flushDelta() {
+        if (pendingDelta.length() > 0 && capturingField != null) {
+            listener.onFieldDelta(capturingField, pendingDelta.toString());
+        }
+        pendingDelta.setLength(0);
+    }
+}
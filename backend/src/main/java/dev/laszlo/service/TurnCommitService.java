@@ -0,0 +1,158 @@
+package dev.laszlo.service;
+
+import dev.laszlo.database.DatabaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turn epilogue as one unit of work: everything a finished /speak or /choose turn writes goes out on
+ * one pooled connection in one transaction - the story save (when the write-behind cache flushes it),
+ * legacy session messages, the choice row, the completion flag and the gem ledger entry.
+ * <p>
+ * Before, each of these borrowed its own connection and committed on its own (6-8 per /choose turn).
+ * Multi-row writes use JDBC batches; either the whole turn lands or none of it does.
+ * ⭐ SESSION 45: Transactional turn commit
+ */
+@Service
+public class TurnCommitService extends BaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TurnCommitService.class);
+
+    private final DatabaseService databaseService;
+    private final StorySaveService storySaveService;
+    private final CurrencyService currencyService;
+    private final TurnMetrics metrics;
+
+    public TurnCommitService(DataSource dataSource, DatabaseService databaseService,
+                             StorySaveService storySaveService, CurrencyService currencyService,
+                             TurnMetrics metrics) {
+        super(dataSource);
+        this.databaseService = databaseService;
+        this.storySaveService = storySaveService;
+        this.currencyService = currencyService;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Write one turn. Pass this as the writer to StorySessionCache.commitTurn so the story save
+     * joins the same transaction when a flush is due.
+     *
+     * @param saves story saves to write with the turn (empty if the cache keeps the save in memory)
+     * @return true if committed, false if rolled back
+     */
+    public boolean commit(TurnWrites turn, List<StorySaveService.SaveRequest> saves) {
+        return metrics.timeDb("turn_commit", turn.storyId, () -> write(turn, saves));
+    }
+
+    private boolean write(TurnWrites turn, List<StorySaveService.SaveRequest> saves) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                CurrencyService.BalanceSnapshot balance = null;
+                if (!saves.isEmpty()) {
+                    storySaveService.writeSaves(conn, saves);
+                }
+                if (!turn.legacyMessages.isEmpty()) {
+                    databaseService.saveMessages(conn, turn.sessionId, turn.legacyMessages);
+                }
+                if (turn.choiceId != null) {
+                    databaseService.saveUserChoice(conn, turn.sessionId, turn.choiceId, turn.choiceLabel,
+                            turn.nextSpeaker);
+                }
+                if (turn.endingId != null
+                        && !storySaveService.markStoryCompleted(conn, turn.storyId, turn.saveSlot, turn.userId,
+                        turn.endingId)) {
+                    logger.warn("⚠️ No save row to mark completed: {} slot {}", turn.storyId, turn.saveSlot);
+                }
+                if (turn.gems > 0) {
+                    // Opens the player's currency row on their first gems; a failed award only loses the gems
+                    balance = currencyService.award(conn, turn.userId, turn.gems, turn.gemSource, turn.storyId);
+                }
+                if (!turn.legacyMessages.isEmpty()) {
+                    // Last: all narrative turns share the legacy session row - lock it only for the commit
+                    databaseService.bumpMessageCounter(conn, turn.sessionId, turn.legacyMessages.size());
+                }
+
+                conn.commit();
+                if (balance != null) {
+                    currencyService.committed(balance);
+                }
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            logger.error("❌ Failed to commit turn for {} slot {}: {}", turn.storyId, turn.saveSlot, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // INNER CLASSES
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * What one turn writes besides the story save. Built by the controller, written by commit().
+     */
+    public static class TurnWrites {
+        private final String userId;
+        private final String storyId;
+        private final int saveSlot;
+        private final int sessionId;
+        private final List<String[]> legacyMessages = new ArrayList<>();
+        private String choiceId;
+        private String choiceLabel;
+        private String nextSpeaker;
+        private String endingId;
+        private int gems;
+        private String gemSource;
+
+        public TurnWrites(String userId, String storyId, int saveSlot, int sessionId) {
+            this.userId = userId;
+            this.storyId = storyId;
+            this.saveSlot = saveSlot;
+            this.sessionId = sessionId;
+        }
+
+        /** Legacy session message (messages table) */
+        public TurnWrites message(String role, String content) {
+            legacyMessages.add(new String[]{role, content});
+            return this;
+        }
+
+        /** Legacy choice row (user_choices table) */
+        public TurnWrites choice(String choiceId, String choiceLabel, String nextSpeaker) {
+            this.choiceId = choiceId;
+            this.choiceLabel = choiceLabel;
+            this.nextSpeaker = nextSpeaker;
+            return this;
+        }
+
+        /** Mark the save completed (the save must be flushed with the turn) */
+        public TurnWrites completed(String endingId) {
+            this.endingId = endingId;
+            return this;
+        }
+
+        public TurnWrites gems(int amount, String source) {
+            this.gems = amount;
+            this.gemSource = source;
+            return this;
+        }
+
+        public boolean isCompleted() {
+            return endingId != null;
+        }
+    }
+}
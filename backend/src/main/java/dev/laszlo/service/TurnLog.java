@@ -0,0 +1,118 @@
+package dev.laszlo.service;
+
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Per-request log context.
+ * <p>
+ * - turnId in the MDC, so every line of one turn (controller, engine, ChatService retries) can be grouped
+ * - payload sampling: full LLM replies / dialogue are only logged for a fraction of turns
+ * - payload truncation: sampled payloads are cut to a fixed length
+ * <p>
+ * The MDC is thread-local - work handed to another thread goes through {@link #propagating(Executor)}
+ * or {@link #wrap(Runnable)} so it keeps the turnId.
+ * ⭐ SESSION 45: Structured, sampled logging
+ */
+public final class TurnLog {
+
+    public static final String TURN_ID = "turnId";
+    public static final String PAYLOAD_SAMPLED = "payloadSampled";
+
+    // Ids from X-Request-Id end up in every log line - only accept short, plain tokens
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private static volatile double payloadSampleRate = 0.01;
+    private static volatile int payloadMaxChars = 500;
+
+    private TurnLog() {
+    }
+
+    /**
+     * @param sampleRate fraction of turns (0.0 - 1.0) that log full payloads at INFO
+     * @param maxChars   payloads longer than this are truncated
+     */
+    public static void configure(double sampleRate, int maxChars) {
+        payloadSampleRate = Math.max(0.0, Math.min(1.0, sampleRate));
+        payloadMaxChars = Math.max(0, maxChars);
+    }
+
+    /**
+     * Start a turn on the current thread: sets turnId (the caller's id if it is sane, else a fresh one)
+     * and decides whether this turn's payloads are sampled.
+     *
+     * @return the turnId in use
+     */
+    public static String begin(String incomingId) {
+        String turnId = isValidId(incomingId)
+                ? incomingId
+                : UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        MDC.put(TURN_ID, turnId);
+        if (ThreadLocalRandom.current().nextDouble() < payloadSampleRate) {
+            MDC.put(PAYLOAD_SAMPLED, "true");
+        } else {
+            MDC.remove(PAYLOAD_SAMPLED);
+        }
+        return turnId;
+    }
+
+    public static void end() {
+        MDC.remove(TURN_ID);
+        MDC.remove(PAYLOAD_SAMPLED);
+    }
+
+    public static boolean isPayloadSampled() {
+        return "true".equals(MDC.get(PAYLOAD_SAMPLED));
+    }
+
+    public static String truncate(String payload) {
+        if (payload == null || payload.length() <= payloadMaxChars) {
+            return payload;
+        }
+        return payload.substring(0, payloadMaxChars) + "... (" + payload.length() + " chars)";
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // MDC PROPAGATION
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Capture the caller's MDC now and restore it around the task on whichever thread runs it.
+     */
+    public static Runnable wrap(Runnable task) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            setContext(context);
+            try {
+                task.run();
+            } finally {
+                setContext(previous);
+            }
+        };
+    }
+
+    /**
+     * Executor whose tasks run with the MDC of the thread that submitted them.
+     */
+    public static Executor propagating(Executor delegate) {
+        return task -> delegate.execute(wrap(task));
+    }
+
+    private static void setContext(Map<String, String> context) {
+        if (context == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+
+    private static boolean isValidId(String id) {
+        return id != null && VALID_ID.matcher(id).matches();
+    }
+}
@@ -0,0 +1,213 @@
+package dev.laszlo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters for narrative turns, exported at /actuator/prometheus.
+ * <p>
+ * - storyforge.turn{endpoint, story, character, choice_mode,       whole /speak or /choose turn
+ *                   outcome}
+ * - storyforge.turn.phase{phase, story, character}                history_load, prompt_build, llm_dialogue,
+ *                                                                 llm_choices, parse, save (incl. gem award)
+ * - storyforge.db{operation, story}                               StorySaveService / CurrencyService queries
+ * - storyforge.llm.tokens{model, type}                            input, output, cache_read, cache_write
+ * - storyforge.llm.calls{model, outcome}                          success, failed, circuit_open, saturated
+ * - storyforge.llm.retries{model}, storyforge.llm.hedges{model}
+ * <p>
+ * Story and character ids come from our own catalog, so tag cardinality stays small.
+ * ⭐ SESSION 45: Per-turn latency breakdown
+ */
+public class TurnMetrics {
+
+    public enum Phase {
+        HISTORY_LOAD, PROMPT_BUILD, LLM_DIALOGUE, LLM_CHOICES, PARSE, SAVE;
+
+        private final String tag = name().toLowerCase();
+    }
+
+    private final MeterRegistry registry;
+
+    public TurnMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Meters that record nothing - for code built outside Spring (tests, benchmarks, the CLI).
+     */
+    public static TurnMetrics noop() {
+        return new TurnMetrics(new CompositeMeterRegistry());
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // TURNS
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    public void recordTurn(String endpoint, String storyId, String characterId, String choiceMode, String outcome,
+                           long startNanos) {
+        Timer.builder("storyforge.turn")
+                .description("Complete narrative turn, request to response")
+                .tag("endpoint", endpoint)
+                .tag("story", tagValue(storyId))
+                .tag("character", tagValue(characterId))
+                .tag("choice_mode", tagValue(choiceMode))
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Whole-turn latency per choice mode, read back from the storyforge.turn timers (endpoints,
+     * characters and outcomes merged). Keys are "MODE" (all stories) and "storyId/MODE", sorted.
+     * Percentiles are the upper bounds of the histogram buckets, like Prometheus' histogram_quantile -
+     * null where the histogram isn't enabled.
+     */
+    public Map<String, Map<String, Object>> turnLatencyByChoiceMode() {
+        Map<String, List<Timer>> groups = new TreeMap<>();
+        for (Timer timer : registry.find("storyforge.turn").timers()) {
+            String mode = timer.getId().getTag("choice_mode");
+            if (mode == null) {
+                continue;
+            }
+            groups.computeIfAbsent(mode, key -> new ArrayList<>()).add(timer);
+            groups.computeIfAbsent(timer.getId().getTag("story") + "/" + mode, key -> new ArrayList<>()).add(timer);
+        }
+
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        groups.forEach((key, timers) -> result.put(key, latencySummary(timers)));
+        return result;
+    }
+
+    private static Map<String, Object> latencySummary(List<Timer> timers) {
+        long count = 0;
+        double totalMs = 0;
+        double maxMs = 0;
+        TreeMap<Double, Double> buckets = new TreeMap<>();  // Upper bound (ms) -> turns at or below it
+        for (Timer timer : timers) {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            count += snapshot.count();
+            totalMs += snapshot.total(TimeUnit.MILLISECONDS);
+            maxMs = Math.max(maxMs, snapshot.max(TimeUnit.MILLISECONDS));
+            for (CountAtBucket bucket : snapshot.histogramCounts()) {
+                buckets.merge(bucket.bucket(TimeUnit.MILLISECONDS), bucket.count(), Double::sum);
+            }
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", count);
+        summary.put("meanMs", count > 0 ? Math.round(totalMs / count) : 0L);
+        summary.put("p50Ms", percentile(buckets, count, 0.50));
+        summary.put("p99Ms", percentile(buckets, count, 0.99));
+        summary.put("maxMs", Math.round(maxMs));
+        return summary;
+    }
+
+    private static Long percentile(TreeMap<Double, Double> buckets, long count, double p) {
+        if (buckets.isEmpty() || count == 0) {
+            return null;
+        }
+        for (Map.Entry<Double, Double> bucket : buckets.entrySet()) {
+            if (bucket.getValue() >= p * count) {
+                return Math.round(bucket.getKey());
+            }
+        }
+        return Math.round(buckets.lastKey());
+    }
+
+    public void recordPhase(Phase phase, String storyId, String characterId, long startNanos) {
+        phaseTimer(phase, storyId, characterId).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public <T> T timePhase(Phase phase, String storyId, String characterId, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            recordPhase(phase, storyId, characterId, start);
+        }
+    }
+
+    public void timePhase(Phase phase, String storyId, String characterId, Runnable work) {
+        long start = System.nanoTime();
+        try {
+            work.run();
+        } finally {
+            recordPhase(phase, storyId, characterId, start);
+        }
+    }
+
+    private Timer phaseTimer(Phase phase, String storyId, String characterId) {
+        return Timer.builder("storyforge.turn.phase")
+                .description("Time spent in one phase of a narrative turn")
+                .tag("phase", phase.tag)
+                .tag("story", tagValue(storyId))
+                .tag("character", tagValue(characterId))
+                .register(registry);
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // DATABASE
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    public <T> T timeDb(String operation, String storyId, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            Timer.builder("storyforge.db")
+                    .description("Save / currency queries")
+                    .tag("operation", operation)
+                    .tag("story", tagValue(storyId))
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // LLM
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    public void recordTokens(String model, String type, long tokens) {
+        if (tokens > 0) {
+            Counter.builder("storyforge.llm.tokens")
+                    .description("Tokens reported in the Messages API usage block")
+                    .tag("model", model)
+                    .tag("type", type)
+                    .register(registry)
+                    .increment(tokens);
+        }
+    }
+
+    public void recordLlmCall(String model, String outcome) {
+        Counter.builder("storyforge.llm.calls")
+                .description("Messages API calls after retries")
+                .tag("model", model)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordLlmRetry(String model) {
+        registry.counter("storyforge.llm.retries", "model", model).increment();
+    }
+
+    public void recordLlmHedge(String model) {
+        registry.counter("storyforge.llm.hedges", "model", model).increment();
+    }
+
+    private static String tagValue(String value) {
+        return value == null || value.isBlank() ? "none" : value;
+    }
+}
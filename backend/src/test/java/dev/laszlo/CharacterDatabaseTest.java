@@ -0,0 +1,92 @@
+package dev.laszlo;
+
+import dev.laszlo.database.CharacterDatabase;
+import dev.laszlo.model.Character;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the CharacterDatabase in-memory index.
+ * ⭐ SESSION 45: Verify lookups come from the cache and invalidation picks up changes
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CharacterDatabaseTest {
+
+    private static final String STORY = "cache_test_story";
+
+    @Autowired
+    private CharacterDatabase characterDatabase;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM characters WHERE story_id = ?")) {
+            pstmt.setString(1, STORY);
+            pstmt.executeUpdate();
+        }
+        characterDatabase.invalidate();
+    }
+
+    @Test
+    @DisplayName("Should serve lookups from the cache until invalidated")
+    void testCacheAndInvalidate() throws SQLException {
+        characterDatabase.getAllCharacters();  // Warm
+
+        insertCharacter("cache_guard", STORY);
+        insertCharacter("cache_scout", STORY);
+
+        // Written behind the cache's back - still the old snapshot
+        assertNull(characterDatabase.getCharacter("cache_guard"));
+        assertTrue(characterDatabase.getCharactersByStory(STORY).isEmpty());
+
+        characterDatabase.invalidate();
+
+        Character guard = characterDatabase.getCharacter("cache_guard");
+        assertNotNull(guard);
+        assertEquals(List.of("calm", "loyal"), guard.getPersonality());
+
+        List<Character> byStory = characterDatabase.getCharactersByStory(STORY);
+        assertEquals(List.of("cache_guard", "cache_scout"), byStory.stream().map(Character::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Should return lists callers can modify without touching the cache")
+    void testReturnedListsAreCopies() throws SQLException {
+        insertCharacter("cache_guard", STORY);
+        characterDatabase.invalidate();
+
+        characterDatabase.getCharactersByStory(STORY).clear();
+
+        assertEquals(1, characterDatabase.getCharactersByStory(STORY).size());
+    }
+
+    private void insertCharacter(String id, String storyId) throws SQLException {
+        String sql = """
+                INSERT INTO characters (id, name, role, personality, speech_style, default_mood, story_id)
+                VALUES (?, ?, 'Tester', 'calm,loyal', 'plain', 'neutral', ?)
+                """;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, id);
+            pstmt.setString(2, id);
+            pstmt.setString(3, storyId);
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -6,21 +6,26 @@ import dev.laszlo.database.DatabaseService;
 import dev.laszlo.database.UserDatabaseService;
 import dev.laszlo.model.Session;
 import dev.laszlo.security.JwtService;
+import dev.laszlo.security.SecurityContextHelper;
 import dev.laszlo.service.ChatService;
 import dev.laszlo.service.ConversationHistory;
+import dev.laszlo.service.ConversationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -33,6 +38,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  */
 @WebMvcTest(ChatController.class)
 @AutoConfigureMockMvc(addFilters = false)
+@Import({ConversationRegistry.class, SecurityContextHelper.class})
 class ChatControllerTest {
 
     @Autowired
@@ -57,9 +63,9 @@ class ChatControllerTest {
     void setUp() {
         // Setup default mock behavior for DatabaseService
         // Return empty sessions list initially
-        when(databaseService.getAllSessions()).thenReturn(Arrays.asList());
+        when(databaseService.getSessionsPage(any(), anyInt())).thenReturn(Arrays.asList());
         when(databaseService.createSession(anyString())).thenReturn(1);
-        when(databaseService.loadMessages(anyInt())).thenReturn(Arrays.asList());
+        when(databaseService.getMessagesPage(anyInt(), any(), anyInt())).thenReturn(Arrays.asList());
     }
 
     // ==================== STATUS ENDPOINT ====================
@@ -77,7 +83,7 @@ class ChatControllerTest {
     @Test
     void getSessions_shouldReturnEmptyList_whenNoSessions() throws Exception {
         // GIVEN: No sessions exist
-        when(databaseService.getAllSessions()).thenReturn(Arrays.asList());
+        when(databaseService.getSessionsPage(null, 50)).thenReturn(Arrays.asList());
 
         // WHEN/THEN: Should return empty array
         mockMvc.perform(get("/api/chat/sessions"))
@@ -93,7 +99,7 @@ class ChatControllerTest {
                 new Session(1, "First Session", 5, "2024-01-01T10:00:00"),
                 new Session(2, "Second Session", 3, "2024-01-02T15:30:00")
         );
-        when(databaseService.getAllSessions()).thenReturn(sessions);
+        when(databaseService.getSessionsPage(null, 50)).thenReturn(sessions);
 
         // WHEN/THEN: Should return sessions with all fields including createdAt
         mockMvc.perform(get("/api/chat/sessions"))
@@ -107,6 +113,23 @@ class ChatControllerTest {
                 .andExpect(jsonPath("$[1].name").value("Second Session"));
     }
 
+    @Test
+    void getSessions_shouldPassCursorAndClampLimit() throws Exception {
+        // GIVEN: An older page of sessions
+        when(databaseService.getSessionsPage(40, 200)).thenReturn(Arrays.asList(
+                new Session(39, "Older Session", 12, "2024-01-01T10:00:00", "2024-01-03T08:00:00")
+        ));
+
+        // WHEN/THEN: Should return that page only
+        mockMvc.perform(get("/api/chat/sessions").param("before", "40").param("limit", "5000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(39))
+                .andExpect(jsonPath("$[0].lastMessageAt").value("2024-01-03T08:00:00"));
+
+        verify(databaseService, never()).getAllSessions();
+    }
+
     // ==================== CREATE SESSION ENDPOINT ====================
 
     @Test
@@ -186,12 +209,13 @@ class ChatControllerTest {
     void switchSession_shouldLoadMessagesFromSession() throws Exception {
         // GIVEN: Session with messages exists
         int sessionId = 5;
-        List<String[]> messages = Arrays.asList(
-                new String[]{"user", "Hello"},
-                new String[]{"assistant", "Hi there!"},
-                new String[]{"user", "How are you?"}
+        List<DatabaseService.MessageRow> messages = Arrays.asList(
+                new DatabaseService.MessageRow(11, "user", "Hello"),
+                new DatabaseService.MessageRow(12, "assistant", "Hi there!"),
+                new DatabaseService.MessageRow(13, "user", "How are you?")
         );
-        when(databaseService.loadMessages(sessionId)).thenReturn(messages);
+        when(databaseService.getMessagesPage(sessionId, null, 50)).thenReturn(messages);
+        when(databaseService.countMessages(sessionId)).thenReturn(3);
 
         // WHEN/THEN: Should switch session and return messages
         mockMvc.perform(put("/api/chat/sessions/{id}/switch", sessionId))
@@ -204,16 +228,18 @@ class ChatControllerTest {
                 .andExpect(jsonPath("$.messages[0].role").value("user"))
                 .andExpect(jsonPath("$.messages[0].content").value("Hello"))
                 .andExpect(jsonPath("$.messages[1].role").value("assistant"))
-                .andExpect(jsonPath("$.messages[1].content").value("Hi there!"));
+                .andExpect(jsonPath("$.messages[1].content").value("Hi there!"))
+                .andExpect(jsonPath("$.nextBefore").doesNotExist());
 
-        verify(databaseService).loadMessages(sessionId);
+        verify(databaseService).getMessagesPage(sessionId, null, 50);
+        verify(databaseService, never()).loadMessages(anyInt());
     }
 
     @Test
     void switchSession_shouldHandleEmptySession() throws Exception {
         // GIVEN: Empty session
         int sessionId = 99;
-        when(databaseService.loadMessages(sessionId)).thenReturn(Arrays.asList());
+        when(databaseService.getMessagesPage(sessionId, null, 50)).thenReturn(Arrays.asList());
 
         // WHEN/THEN: Should switch to empty session
         mockMvc.perform(put("/api/chat/sessions/{id}/switch", sessionId))
@@ -224,6 +250,28 @@ class ChatControllerTest {
                 .andExpect(jsonPath("$.messages.length()").value(0));
     }
 
+    // ==================== MESSAGE PAGES ENDPOINT ====================
+
+    @Test
+    void getSessionMessages_shouldReturnPageWithCursor() throws Exception {
+        // GIVEN: A full page of older messages
+        int sessionId = 7;
+        when(databaseService.getMessagesPage(sessionId, 300, 2)).thenReturn(Arrays.asList(
+                new DatabaseService.MessageRow(250, "user", "Earlier question"),
+                new DatabaseService.MessageRow(251, "assistant", "Earlier answer")
+        ));
+
+        // WHEN/THEN: Should return the page oldest first, with the cursor for the next older page
+        mockMvc.perform(get("/api/chat/sessions/{id}/messages", sessionId)
+                        .param("before", "300")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages.length()").value(2))
+                .andExpect(jsonPath("$.messages[0].id").value(250))
+                .andExpect(jsonPath("$.messages[1].content").value("Earlier answer"))
+                .andExpect(jsonPath("$.nextBefore").value(250));
+    }
+
     // ==================== SEND MESSAGE ENDPOINT ====================
 
     @Test
@@ -232,18 +280,23 @@ class ChatControllerTest {
         Map<String, String> request = new HashMap<>();
         request.put("message", "Tell me a story");
 
-        when(chatService.sendMessage(any(ConversationHistory.class)))
-                .thenReturn("Once upon a time in a mystical forest...");
+        when(chatService.sendMessageAsync(any(ConversationHistory.class)))
+                .thenReturn(CompletableFuture.completedFuture("Once upon a time in a mystical forest..."));
 
         // WHEN/THEN: Should send message and return response
-        mockMvc.perform(post("/api/chat/send")
+        MvcResult asyncResult = mockMvc.perform(post("/api/chat/send")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(asyncResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.response").value("Once upon a time in a mystical forest..."))
                 .andExpect(jsonPath("$.messageCount").exists());
 
         // Verify message was saved to database
+        verify(databaseService, never()).loadMessages(anyInt());
         verify(databaseService).saveMessage(anyInt(), eq("user"), eq("Tell me a story"));
         verify(databaseService).saveMessage(anyInt(), eq("assistant"), eq("Once upon a time in a mystical forest..."));
     }
@@ -255,14 +308,17 @@ class ChatControllerTest {
         request.put("message", "");
 
         // WHEN/THEN: Should return bad request
-        mockMvc.perform(post("/api/chat/send")
+        MvcResult asyncResult = mockMvc.perform(post("/api/chat/send")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(asyncResult))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error").value("Message cannot be empty"));
 
         // Verify no API call was made
-        verify(chatService, never()).sendMessage(any());
+        verify(chatService, never()).sendMessageAsync(any());
     }
 
     @Test
@@ -271,9 +327,12 @@ class ChatControllerTest {
         Map<String, String> request = new HashMap<>();
 
         // WHEN/THEN: Should return bad request
-        mockMvc.perform(post("/api/chat/send")
+        MvcResult asyncResult = mockMvc.perform(post("/api/chat/send")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(asyncResult))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error").value("Message cannot be empty"));
     }
@@ -284,12 +343,17 @@ class ChatControllerTest {
         Map<String, String> request = new HashMap<>();
         request.put("message", "Hello");
 
-        when(chatService.sendMessage(any(ConversationHistory.class))).thenReturn(null);
+        when(chatService.sendMessageAsync(any(ConversationHistory.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
 
         // WHEN/THEN: Should return error
-        mockMvc.perform(post("/api/chat/send")
+        MvcResult asyncResult = mockMvc.perform(post("/api/chat/send")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(asyncResult))
                 .andExpect(status().isInternalServerError())
                 .andExpect(jsonPath("$.error").value("Failed to get response from Claude"));
     }
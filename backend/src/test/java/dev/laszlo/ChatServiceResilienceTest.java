@@ -0,0 +1,139 @@
+package dev.laszlo;
+
+import dev.laszlo.database.CharacterDatabase;
+import dev.laszlo.model.Character;
+import dev.laszlo.model.NarrativeResponse;
+import dev.laszlo.service.ChatService;
+import dev.laszlo.service.ConversationHistory;
+import dev.laszlo.service.NarrativeEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Retries, circuit breaker and degraded turns, against the LLM stub with injected failures.
+ * ⭐ SESSION 45: Resilient LLM client
+ */
+class ChatServiceResilienceTest {
+
+    private LlmStubServer stub;
+    private ChatService chatService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = LlmStubServer.start(0, LlmStubServer.LatencyModel.parse("fixed:0", 1), 5);
+        chatService = new ChatService("stub-key", stub.baseUrl());
+        chatService.setRetryPolicy(2, Duration.ofMillis(10), Duration.ofMillis(200));
+        chatService.setCircuitBreaker(3, Duration.ofMillis(300));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    private static ConversationHistory history() {
+        ConversationHistory history = new ConversationHistory();
+        history.setSystemPrompt("You are Ilyra.");
+        history.addUserMessage("Hello");
+        return history;
+    }
+
+    @Test
+    @DisplayName("Should retry 529 and 429 (honouring retry-after) until the call succeeds")
+    void testRetriesTransientErrors() {
+        stub.failNext(1, 529, null);
+        assertNotNull(chatService.sendMessage(history()));
+
+        stub.failNext(2, 429, "0.05");
+        assertNotNull(chatService.sendMessage(history()));
+
+        assertEquals(5, stub.requestCount());
+        assertEquals(3L, chatService.getResilienceStats().get("retries"));
+    }
+
+    @Test
+    @DisplayName("Should not retry client errors or retry-after hints longer than the max backoff")
+    void testGivesUpWithoutRetrying() {
+        stub.failNext(1, 400, null);
+        assertNull(chatService.sendMessage(history()));
+        assertEquals(1, stub.requestCount());
+
+        stub.failNext(1, 429, "60");
+        assertNull(chatService.sendMessage(history()));
+        assertEquals(2, stub.requestCount());
+    }
+
+    @Test
+    @DisplayName("Should open the circuit after consecutive failures, fail fast, then recover")
+    @SuppressWarnings("unchecked")
+    void testCircuitBreaker() throws Exception {
+        stub.failNext(3, 529, null);
+        assertNull(chatService.sendMessage(history()));  // 1 attempt + 2 retries = threshold
+        assertEquals(3, stub.requestCount());
+
+        assertNull(chatService.sendMessage(history()));  // Open: no request sent
+        assertEquals(3, stub.requestCount());
+        Map<String, Object> circuit = (Map<String, Object>)
+                ((Map<String, Object>) chatService.getResilienceStats().get("circuitBreakers")).values().iterator().next();
+        assertEquals("OPEN", circuit.get("state"));
+
+        Thread.sleep(350);  // Half-open: one trial call goes through and closes the circuit
+        assertNotNull(chatService.sendMessage(history()));
+        assertEquals(4, stub.requestCount());
+    }
+
+    @Test
+    @DisplayName("Should not retry a stream that broke after text reached the consumer")
+    void testNoRetryAfterMidStreamFailure() {
+        List<String> deltas = new ArrayList<>();
+        stub.cutNextStream(2);
+        assertNull(chatService.streamMessage(history(), deltas::add));
+
+        assertEquals(1, stub.requestCount());
+        assertEquals(2, deltas.size(), "Each delta should reach the consumer exactly once");
+
+        // A stream that breaks before its first delta is still retried
+        deltas.clear();
+        stub.cutNextStream(0);
+        assertNotNull(chatService.streamMessage(history(), deltas::add));
+        assertEquals(3, stub.requestCount());
+        assertEquals(5, deltas.size());
+    }
+
+    @Test
+    @DisplayName("Should return a degraded turn with fallback choices and keep the history clean")
+    void testDegradedTurn() {
+        Character ilyra = new Character("ilyra", "Ilyra", "Exiled Astronomer", List.of("reserved"),
+                "Precise", null, "wary", "uncertain", "Royal astronomer in exile.", "observatory");
+        CharacterDatabase characterDb = new CharacterDatabase(null) {
+            @Override
+            public Character getCharacter(String id) {
+                return "ilyra".equals(id) ? ilyra : null;
+            }
+
+            @Override
+            public List<Character> getCharactersByStory(String storyId) {
+                return List.of(ilyra);
+            }
+        };
+        NarrativeEngine engine = new NarrativeEngine(chatService, characterDb);
+        ConversationHistory history = new ConversationHistory();
+
+        stub.failNext(3, 529, null);
+        NarrativeResponse response = engine.generateResponseWithChoices("Hello", "ilyra", "observatory", history);
+
+        assertTrue(response.isDegraded());
+        assertEquals("ilyra", response.getSpeaker());
+        assertFalse(response.getChoices().isEmpty());
+        assertEquals(0, history.getMessageCount(), "Failed turn should not stay in the history");
+    }
+}
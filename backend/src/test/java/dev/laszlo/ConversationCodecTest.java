@@ -0,0 +1,84 @@
+package dev.laszlo;
+
+import dev.laszlo.service.ConversationCodec;
+import dev.laszlo.service.ConversationHistory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compact save format: round trips, prompt by reference, compression and the version "1.0" fallback.
+ * ⭐ SESSION 45: Compact history storage
+ */
+class ConversationCodecTest {
+
+    private static final String PROMPT = "You are Captain Isla Hartwell, commander of the Crimson Tide. ".repeat(40);
+
+    private static ConversationHistory playthrough(int turns) {
+        ConversationHistory history = new ConversationHistory();
+        for (int i = 0; i < turns; i++) {
+            history.addUserMessage("You chose: Climb the rigging " + i);
+            history.addAssistantMessage("{\"dialogue\": \"The wind howls as you climb, turn " + i + " - \\\"hold fast!\\\" 🏴‍☠️\"}");
+        }
+        return history;
+    }
+
+    @Test
+    @DisplayName("Should round-trip messages exactly, including quotes and emoji")
+    void testRoundTrip() {
+        ConversationHistory history = playthrough(3);
+        history.setSystemPrompt("Inline prompt 你好");
+
+        ConversationHistory decoded = ConversationCodec.decode(ConversationCodec.encode(history));
+
+        assertEquals(history.getMessages(), decoded.getMessages());
+        assertEquals("Inline prompt 你好", decoded.getSystemPrompt());
+        assertNull(decoded.getPromptRef());
+    }
+
+    @Test
+    @DisplayName("Should store an engine-built prompt by reference, not by text")
+    void testPromptByReference() {
+        ConversationHistory history = playthrough(2);
+        String ref = ConversationCodec.promptRef("pirates", "isla", PROMPT);
+        history.setSystemPrompt(PROMPT, ref);
+
+        byte[] encoded = ConversationCodec.encode(history);
+        ConversationHistory decoded = ConversationCodec.decode(encoded);
+
+        assertFalse(new String(encoded, StandardCharsets.UTF_8).contains("Crimson Tide"));
+        assertEquals(ref, decoded.getPromptRef());
+        assertNull(decoded.getSystemPrompt());
+        assertEquals(4, decoded.getMessageCount());
+        assertNotEquals(ref, ConversationCodec.promptRef("pirates", "isla", PROMPT + "changed"));
+    }
+
+    @Test
+    @DisplayName("Should be far smaller than the version 1.0 JSON for a long playthrough")
+    void testCompression() {
+        ConversationHistory history = playthrough(200);
+        history.setSystemPrompt(PROMPT, ConversationCodec.promptRef("pirates", "isla", PROMPT));
+
+        byte[] encoded = ConversationCodec.encode(history);
+        int legacy = history.toJson().getBytes(StandardCharsets.UTF_8).length;
+
+        assertTrue(encoded.length * 5 < legacy, encoded.length + " bytes vs " + legacy + " bytes of JSON");
+        assertEquals(history.getMessages(), ConversationCodec.decode(encoded).getMessages());
+    }
+
+    @Test
+    @DisplayName("Should reject unknown formats and still read version 1.0 JSON")
+    void testVersions() {
+        assertThrows(IllegalArgumentException.class, () -> ConversationCodec.decode(new byte[]{9, 0, '{', '}'}));
+        assertThrows(IllegalArgumentException.class, () -> ConversationCodec.decode(new byte[]{2, 1, 1, 2, 3}));
+
+        String v1 = "{\n  \"systemPrompt\": \"Old prompt\",\n  \"messages\": [\n    {\"role\": \"user\", \"content\": \"Hi\"}\n  ],"
+                + "\n  \"messageCount\": 1,\n  \"version\": \"1.0\"\n}";
+        ConversationHistory legacy = ConversationHistory.fromJson(v1);
+        assertEquals("Old prompt", legacy.getSystemPrompt());
+        assertEquals(1, legacy.getMessageCount());
+    }
+}
@@ -210,4 +210,83 @@ class ConversationHistoryTest {
         assertEquals(originalCount, history.getMessageCount());
         assertFalse(history.isEmpty());
     }
-}
\ No newline at end of file
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // ⭐ SESSION 45: CONTEXT WINDOWING
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    @Test
+    @DisplayName("Should send the full history when it fits the token budget")
+    void testContextWindowUnderBudget() {
+        history.addUserMessage("Hello");
+        history.addAssistantMessage("Hi");
+
+        ConversationHistory.ContextWindow window = history.contextWindow(1000);
+
+        assertNull(window.summary());
+        assertEquals(2, window.messages().size());
+    }
+
+    @Test
+    @DisplayName("Should trim to recent turns starting with a user message when over budget")
+    void testContextWindowTrimsOldTurns() {
+        for (int turn = 0; turn < 10; turn++) {
+            history.addUserMessage("u".repeat(40));       // 10 tokens
+            history.addAssistantMessage("a".repeat(40));  // 10 tokens
+        }
+
+        ConversationHistory.ContextWindow window = history.contextWindow(50);
+
+        assertNull(window.summary());
+        assertEquals(4, window.messages().size(), "Two full turns fit in 50 tokens");
+        assertEquals("user", window.messages().get(0).getAsJsonObject().get("role").getAsString());
+        assertEquals(20, history.getMessageCount(), "Full transcript must be kept");
+        assertTrue(history.needsSummary(50));
+    }
+
+    @Test
+    @DisplayName("Should replace summarized turns with the rolling summary")
+    void testContextWindowWithSummary() {
+        for (int turn = 0; turn < 10; turn++) {
+            history.addUserMessage("u".repeat(40));
+            history.addAssistantMessage("a".repeat(40));
+        }
+        history.setContextSummary("They met at the observatory.", 16);
+
+        ConversationHistory.ContextWindow window = history.contextWindow(50);
+
+        assertEquals("They met at the observatory.", window.summary());
+        assertEquals(4, window.messages().size());
+        assertFalse(history.needsSummary(50));
+
+        // Summary survives copies (save cache) and is cleared with the conversation
+        assertEquals(16, history.copy().getSummarizedMessageCount());
+        history.clear();
+        assertNull(history.getContextSummary());
+    }
+
+    @Test
+    @DisplayName("Should build requests from a lazy window without the messages before it")
+    void testLazyWindow() {
+        ConversationHistory complete = new ConversationHistory();
+        for (int turn = 0; turn < 10; turn++) {
+            complete.addUserMessage("u".repeat(40) + turn);
+            complete.addAssistantMessage("a".repeat(40) + turn);
+        }
+        complete.setContextSummary("They met at the observatory.", 16);
+
+        ConversationHistory window = ConversationHistory.window(16, complete.getMessages(16, 20));
+        window.setContextSummary("They met at the observatory.", 16);
+
+        assertFalse(window.isComplete());
+        assertEquals(20, window.getMessageCount());
+        assertEquals(complete.contextWindow(50), window.contextWindow(50));
+        assertEquals(complete.contextWindow(0).messages().size() - 16, window.contextWindow(0).messages().size());
+        assertThrows(IndexOutOfBoundsException.class, () -> window.getMessage(15));
+        assertThrows(IllegalStateException.class, window::toJson);
+
+        window.prepend(complete.getMessages(0, 16));
+        assertTrue(window.isComplete());
+        assertEquals(complete.toJsonArray(), window.toJsonArray());
+    }
+}
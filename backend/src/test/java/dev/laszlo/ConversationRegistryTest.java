@@ -0,0 +1,191 @@
+package dev.laszlo;
+
+import com.google.gson.JsonObject;
+import dev.laszlo.service.ConversationHistory;
+import dev.laszlo.service.ConversationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Per-key turn ordering under concurrency: same save in order, different saves in parallel.
+ * ⭐ SESSION 45: Per-request conversation state
+ */
+class ConversationRegistryTest {
+
+    private static final int KEYS = 8;
+    private static final int TURNS_PER_KEY = 40;
+
+    private final ConversationRegistry registry = new ConversationRegistry();
+    private final ExecutorService clients = Executors.newFixedThreadPool(16);
+    private final ExecutorService llm = Executors.newFixedThreadPool(16);
+
+    @AfterEach
+    void tearDown() {
+        clients.shutdownNow();
+        llm.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Should lose and interleave no messages when many tabs hit the same saves")
+    void testStress() throws Exception {
+        // "Database": last saved history per key - a turn loads a copy, waits for the LLM, saves it back
+        Map<String, ConversationHistory> saved = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+        for (int k = 0; k < KEYS; k++) {
+            String key = ConversationRegistry.storyKey("user" + k, "stress", 1);
+            saved.put(key, new ConversationHistory());
+            active.put(key, new AtomicInteger());
+        }
+
+        List<CompletableFuture<?>> turns = new ArrayList<>();
+        for (int t = 0; t < TURNS_PER_KEY; t++) {
+            for (int k = 0; k < KEYS; k++) {
+                String key = ConversationRegistry.storyKey("user" + k, "stress", 1);
+                String message = key + "#" + t;
+                boolean streaming = (t + k) % 2 == 0;
+
+                turns.add(CompletableFuture.runAsync(() -> {
+                    if (streaming) {
+                        // Blocking turn on the caller's thread, like /speak/stream
+                        registry.call(key, () -> {
+                            enter(active.get(key), overlaps);
+                            ConversationHistory history = saved.get(key).copy();
+                            history.addUserMessage(message);
+                            pause();
+                            history.addAssistantMessage(message + " reply");
+                            saved.put(key, history);
+                            active.get(key).decrementAndGet();
+                            return null;
+                        });
+                    } else {
+                        // Async turn, like /speak: the reply arrives on another thread
+                        registry.submit(key, () -> {
+                            enter(active.get(key), overlaps);
+                            ConversationHistory history = saved.get(key).copy();
+                            history.addUserMessage(message);
+                            return CompletableFuture.runAsync(ConversationRegistryTest::pause, llm).thenApply(v -> {
+                                history.addAssistantMessage(message + " reply");
+                                saved.put(key, history);
+                                active.get(key).decrementAndGet();
+                                return null;
+                            });
+                        }).join();
+                    }
+                }, clients));
+            }
+        }
+        CompletableFuture.allOf(turns.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+
+        assertEquals(0, overlaps.get(), "Two turns ran on the same save at once");
+        for (Map.Entry<String, ConversationHistory> entry : saved.entrySet()) {
+            List<JsonObject> messages = entry.getValue().getMessages();
+            assertEquals(2 * TURNS_PER_KEY, messages.size(), "Lost turns on " + entry.getKey());
+            for (int i = 0; i < messages.size(); i += 2) {
+                String asked = messages.get(i).get("content").getAsString();
+                assertEquals("user", messages.get(i).get("role").getAsString());
+                assertEquals(asked + " reply", messages.get(i + 1).get("content").getAsString(),
+                        "Interleaved turn on " + entry.getKey());
+                assertTrue(asked.startsWith(entry.getKey() + "#"));
+            }
+        }
+        assertEquals(0, registry.activeConversations());
+    }
+
+    @Test
+    @DisplayName("Should run turns on different saves in parallel")
+    void testUnrelatedKeysDoNotWait() throws Exception {
+        CountDownLatch bothRunning = new CountDownLatch(2);
+
+        // Each turn only finishes once the other one has started - deadlocks if keys share a lock
+        CompletableFuture<Boolean> first = registry.submit(ConversationRegistry.storyKey("a", "s", 1),
+                () -> CompletableFuture.supplyAsync(() -> arriveAndWait(bothRunning), llm));
+        CompletableFuture<Boolean> second = registry.submit(ConversationRegistry.storyKey("b", "s", 1),
+                () -> CompletableFuture.supplyAsync(() -> arriveAndWait(bothRunning), llm));
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Should release the key when a turn fails")
+    void testFailedTurnReleasesKey() throws Exception {
+        String key = ConversationRegistry.chatKey(1);
+
+        CompletableFuture<String> failed = registry.submit(key, () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<String> next = registry.submit(key, () -> CompletableFuture.completedFuture("ok"));
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals("ok", next.get(5, TimeUnit.SECONDS));
+        assertEquals(0, registry.activeConversations());
+    }
+
+    @Test
+    @DisplayName("Should start a queued turn on its own thread, not the one finishing the previous turn")
+    void testQueuedTurnDoesNotRunOnFinishingThread() throws Exception {
+        String key = ConversationRegistry.storyKey("a", "s", 1);
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = registry.submit(key, () -> reply);
+        CompletableFuture<Thread> second = registry.submit(key, () -> {
+            awaitQuietly(release);  // Would block the finishing thread if run inline
+            return CompletableFuture.completedFuture(Thread.currentThread());
+        });
+
+        reply.complete("done");  // Finishes the first turn on this thread
+        assertEquals("done", first.getNow(null), "The first caller is answered before the next turn runs");
+        release.countDown();
+
+        assertNotSame(Thread.currentThread(), second.get(5, TimeUnit.SECONDS));
+    }
+
+    private static void enter(AtomicInteger active, AtomicInteger overlaps) {
+        if (active.incrementAndGet() > 1) {
+            overlaps.incrementAndGet();
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean arriveAndWait(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
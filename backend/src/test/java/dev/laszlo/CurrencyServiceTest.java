@@ -0,0 +1,102 @@
+package dev.laszlo;
+
+import dev.laszlo.model.UserCurrency;
+import dev.laszlo.service.CurrencyService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Gem balance cache: our own writes show up immediately, reads after them don't touch the table.
+ * ⭐ SESSION 45: Gem balance cache
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CurrencyServiceTest {
+
+    private static final String USER = "balance_user";
+
+    @Autowired
+    private CurrencyService currencyService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        execute("INSERT INTO user_currency (user_id, gem_balance, total_earned, total_spent) "
+                + "VALUES ('" + USER + "', 100, 100, 0)");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        execute("DELETE FROM gem_transactions WHERE user_id = '" + USER + "'");
+        execute("DELETE FROM user_currency WHERE user_id = '" + USER + "'");
+        currencyService.evict(USER);
+    }
+
+    private void execute(String sql) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    @Test
+    @DisplayName("Should serve the balance written by award/spend without reading the table")
+    void testWriteThrough() throws Exception {
+        assertTrue(currencyService.awardGems(USER, 50, "daily_checkin", null));
+        assertTrue(currencyService.spendGems(USER, 30, 1));
+        assertFalse(currencyService.spendGems(USER, 500, 1));
+
+        // Changed behind the service's back - the cache keeps answering until evicted
+        execute("UPDATE user_currency SET gem_balance = 999, version = version + 1 WHERE user_id = '" + USER + "'");
+
+        UserCurrency currency = currencyService.getUserCurrency(USER);
+        assertEquals(120, currency.getGemBalance());
+        assertEquals(150, currency.getTotalEarned());
+        assertEquals(30, currency.getTotalSpent());
+
+        currencyService.evict(USER);
+        assertEquals(999, currencyService.getGemBalance(USER));
+    }
+
+    @Test
+    @DisplayName("Should open a currency row on a registered player's first award")
+    void testFirstAwardOpensAccount() throws Exception {
+        String newUser = "42";
+        try {
+            assertNull(currencyService.getUserCurrency(newUser));
+            assertTrue(currencyService.awardGems(newUser, 5, "choice_made", "pirates"));
+            assertTrue(currencyService.awardGems(newUser, 5, "choice_made", "pirates"));
+
+            UserCurrency currency = currencyService.getUserCurrency(newUser);
+            assertEquals(10, currency.getGemBalance());
+            assertEquals(10, currency.getTotalEarned());
+        } finally {
+            execute("DELETE FROM gem_transactions WHERE user_id = '" + newUser + "'");
+            execute("DELETE FROM user_currency WHERE user_id = '" + newUser + "'");
+            currencyService.evict(newUser);
+        }
+    }
+
+    @Test
+    @DisplayName("Should hand out copies so callers can't change the cached balance")
+    void testReturnsCopies() {
+        currencyService.getUserCurrency(USER).setGemBalance(0);
+
+        assertEquals(100, currencyService.getGemBalance(USER));
+        assertEquals(0, currencyService.getGemBalance("no_such_user"));
+        assertNull(currencyService.getUserCurrency("no_such_user"));
+    }
+}
@@ -8,6 +8,7 @@ import dev.laszlo.model.Session;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.sql.DataSource;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -22,6 +23,9 @@ class DatabaseServiceTest {
     @Autowired
     private DatabaseService databaseService;
 
+    @Autowired
+    private DataSource dataSource;
+
     @BeforeEach
     void setUp() {
         // H2 with create-drop automatically cleans database between tests
@@ -157,4 +161,46 @@ class DatabaseServiceTest {
         List<String[]> messages = databaseService.loadMessages(sessionId);
         assertTrue(messages.isEmpty(), "Messages should be deleted with session");
     }
-}
\ No newline at end of file
+
+    @Test
+    void messageCounter_shouldFollowSavesAndClears() throws Exception {
+        // GIVEN: A session written through every message path
+        int sessionId = databaseService.createSession("Counted Session");
+        databaseService.saveMessage(sessionId, "user", "Hello");
+        try (java.sql.Connection conn = dataSource.getConnection()) {
+            databaseService.saveMessages(conn, sessionId, List.of(
+                    new String[]{"user", "You chose: Wait"},
+                    new String[]{"narrator", "Nothing happens."}));
+            databaseService.bumpMessageCounter(conn, sessionId, 2);
+        }
+
+        // THEN: The counter matches the messages without counting them
+        Session session = databaseService.getSessionsPage(sessionId + 1, 1).get(0);
+        assertEquals(sessionId, session.getId());
+        assertEquals(3, session.getMessageCount());
+        assertNotNull(session.getLastMessageAt());
+        assertEquals(3, databaseService.countMessages(sessionId));
+
+        // AND: Clearing resets it
+        databaseService.clearMessages(sessionId);
+        session = databaseService.getSessionsPage(sessionId + 1, 1).get(0);
+        assertEquals(0, session.getMessageCount());
+        assertNull(session.getLastMessageAt());
+    }
+
+    @Test
+    void getSessionsPage_shouldWalkNewestFirstByCursor() {
+        // GIVEN: Three new sessions
+        int first = databaseService.createSession("Page 1");
+        int second = databaseService.createSession("Page 2");
+        int third = databaseService.createSession("Page 3");
+
+        // WHEN: Paging from just above the newest, two at a time
+        List<Session> page = databaseService.getSessionsPage(third + 1, 2);
+        List<Session> next = databaseService.getSessionsPage(page.get(page.size() - 1).getId(), 2);
+
+        // THEN: Pages continue where the previous one ended
+        assertEquals(List.of(third, second), page.stream().map(Session::getId).toList());
+        assertEquals(first, next.get(0).getId());
+    }
+}
@@ -0,0 +1,114 @@
+package dev.laszlo;
+
+import dev.laszlo.model.StoryContent;
+import dev.laszlo.service.GalleryCatalog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Cached gallery catalog: display order, per-type views, invalidation and ETag revalidation.
+ * ⭐ SESSION 45: Gallery catalog cache
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class GalleryCatalogTest {
+
+    private static final String STORY = "catalog_story";
+
+    @Autowired
+    private GalleryCatalog galleryCatalog;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        execute("INSERT INTO story_content (content_id, story_id, content_type, title, unlock_cost, display_order) "
+                + "VALUES (9101, '" + STORY + "', 'scene', 'Last scene', 50, 3)");
+        execute("INSERT INTO story_content (content_id, story_id, content_type, title, unlock_cost, display_order) "
+                + "VALUES (9102, '" + STORY + "', 'lore', 'Old map', 20, 2)");
+        execute("INSERT INTO story_content (content_id, story_id, content_type, title, unlock_cost, display_order) "
+                + "VALUES (9103, '" + STORY + "', 'scene', 'First scene', 10, 1)");
+        galleryCatalog.invalidate(STORY);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        execute("DELETE FROM story_content WHERE story_id = '" + STORY + "'");
+        galleryCatalog.invalidate(STORY);
+    }
+
+    private void execute(String sql) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep display order, split by type and change the ETag only when content changes")
+    void testCatalogViews() throws Exception {
+        GalleryCatalog.StoryCatalog catalog = galleryCatalog.get(STORY);
+
+        assertEquals(List.of("First scene", "Old map", "Last scene"),
+                catalog.getContent(null).stream().map(StoryContent::getTitle).toList());
+        assertEquals(List.of("First scene", "Last scene"),
+                catalog.getContent("scene").stream().map(StoryContent::getTitle).toList());
+        assertTrue(catalog.getContent("extra").isEmpty());
+        assertSame(catalog, galleryCatalog.get(STORY));
+
+        // Reloading unchanged rows gives the same ETag
+        String etag = catalog.getEtag();
+        galleryCatalog.invalidate(STORY);
+        assertEquals(etag, galleryCatalog.get(STORY).getEtag());
+
+        execute("UPDATE story_content SET unlock_cost = 15 WHERE content_id = 9103");
+        galleryCatalog.invalidate(STORY);
+        assertNotEquals(etag, galleryCatalog.get(STORY).getEtag());
+    }
+
+    @Test
+    @DisplayName("Should answer 304 for a matching If-None-Match and 200 once the catalog changed")
+    void testConditionalGet() throws Exception {
+        String etag = mockMvc.perform(get("/api/gallery/" + STORY + "/content"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(3))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/api/gallery/" + STORY + "/content").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // Type filter is a different representation
+        mockMvc.perform(get("/api/gallery/" + STORY + "/content").param("type", "scene")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk());
+
+        execute("UPDATE story_content SET title = 'Renamed' WHERE content_id = 9102");
+        galleryCatalog.invalidate(STORY);
+        mockMvc.perform(get("/api/gallery/" + STORY + "/content").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"));
+    }
+}
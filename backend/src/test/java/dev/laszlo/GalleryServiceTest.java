@@ -0,0 +1,120 @@
+package dev.laszlo;
+
+import dev.laszlo.service.CurrencyService;
+import dev.laszlo.service.GalleryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Atomic gem spending and content unlocks against the real tables.
+ * ⭐ SESSION 45: Race-free unlocks
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class GalleryServiceTest {
+
+    private static final String USER = "unlock_user";
+    private static final String STORY = "unlock_story";
+    private static final int FIRST_CONTENT_ID = 9001;
+    private static final int CONTENT_ITEMS = 5;
+    private static final int COST = 30;
+
+    @Autowired
+    private GalleryService galleryService;
+
+    @Autowired
+    private CurrencyService currencyService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO user_currency (user_id, gem_balance, total_earned, total_spent) "
+                    + "VALUES ('" + USER + "', 100, 100, 0)");
+            for (int i = 0; i < CONTENT_ITEMS; i++) {
+                stmt.execute("INSERT INTO story_content (content_id, story_id, content_type, title, unlock_cost) "
+                        + "VALUES (" + (FIRST_CONTENT_ID + i) + ", '" + STORY + "', 'scene', 'Scene " + i + "', "
+                        + COST + ")");
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM user_unlocks WHERE user_id = '" + USER + "'");
+            stmt.execute("DELETE FROM gem_transactions WHERE user_id = '" + USER + "'");
+            stmt.execute("DELETE FROM user_currency WHERE user_id = '" + USER + "'");
+            stmt.execute("DELETE FROM story_content WHERE story_id = '" + STORY + "'");
+        }
+        currencyService.evict(USER);  // The row is recreated by plain SQL for the next test
+    }
+
+    private int countRows(String sql) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should charge once and report success when an unlock is retried")
+    void testIdempotentRetry() throws Exception {
+        assertEquals(GalleryService.UnlockStatus.UNLOCKED, galleryService.unlockContent(USER, FIRST_CONTENT_ID));
+        assertEquals(GalleryService.UnlockStatus.ALREADY_UNLOCKED, galleryService.unlockContent(USER, FIRST_CONTENT_ID));
+
+        assertEquals(70, currencyService.getGemBalance(USER));
+        assertEquals(1, countRows("SELECT COUNT(*) FROM gem_transactions WHERE user_id = '" + USER + "'"));
+        assertEquals(GalleryService.UnlockStatus.NOT_FOUND, galleryService.unlockContent(USER, 1));
+    }
+
+    @Test
+    @DisplayName("Should never overdraw or double-charge under concurrent unlocks")
+    void testUnlockStorm() throws Exception {
+        // 100 gems buy 3 of the 5 items; 40 requests race for them (8 per item)
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<GalleryService.UnlockStatus>> results = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            int contentId = FIRST_CONTENT_ID + (i % CONTENT_ITEMS);
+            results.add(executor.submit(() -> galleryService.unlockContent(USER, contentId)));
+        }
+
+        int unlocked = 0;
+        for (Future<GalleryService.UnlockStatus> result : results) {
+            GalleryService.UnlockStatus status = result.get();
+            assertNotEquals(GalleryService.UnlockStatus.FAILED, status);
+            if (status == GalleryService.UnlockStatus.UNLOCKED) {
+                unlocked++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(3, unlocked);
+        assertEquals(100 - 3 * COST, currencyService.getGemBalance(USER));
+        assertEquals(3, countRows("SELECT COUNT(*) FROM user_unlocks WHERE user_id = '" + USER + "'"));
+        assertEquals(3, countRows("SELECT COUNT(*) FROM gem_transactions WHERE user_id = '" + USER + "'"));
+    }
+}
@@ -0,0 +1,478 @@
+package dev.laszlo;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the Anthropic Messages API (POST /v1/messages) - no quota, no network.
+ * <p>
+ * Replies are scripted and deterministic (picked from the request content), shaped like what
+ * NarrativeEngine asks for:
+ * - character turns: {"dialogue", "actionText", "mood"} JSON, plus a "choices" array when the prompt asks for inline choices
+ * - choice prompts: [CHOICE: label | speaker] lines using the speakers listed in the prompt
+ * - summary prompts (ConversationSummarizer): a short prose summary
+ * <p>
+ * Each request waits for a latency drawn from a {@link LatencyModel}. "stream": true requests get
+ * the reply as server-sent events: the first token after ~30% of the latency, the rest spread over
+ * the remaining time.
+ * <p>
+ * Failures can be injected - the next N requests ({@link #failNext}) or a random share of them
+ * ({@link #setErrorRate}) get an error status such as 529 "overloaded" straight away - and the
+ * next streamed reply can be cut off partway through ({@link #cutNextStream}).
+ * <p>
+ * Used by LlmStubServerTest and NarrativeLoadHarness. Standalone, to load-test a running backend
+ * started with ANTHROPIC_BASE_URL=http://localhost:PORT:
+ * {@code java -cp <test classpath> dev.laszlo.LlmStubServer 8089 lognormal:800:0.4}
+ * ⭐ SESSION 45: Load-test infrastructure
+ */
+public class LlmStubServer implements AutoCloseable {
+
+    private static final Gson gson = new Gson();
+
+    private static final String[] DIALOGUES = {
+            "The stars are wrong tonight. Vega should be there, but the sky is empty.",
+            "Keep your voice down. The walls of this place remember everything.",
+            "You came back. I wasn't sure you would, after what you saw.",
+            "Every chart I own says the same thing, and every chart is lying.",
+            "If we leave now, we reach the harbour before the tide turns."
+    };
+    private static final String[] ACTIONS = {
+            "*adjusts the brass telescope with trembling hands*",
+            "*glances at the door, then back at you*",
+            "*rolls up a faded star chart*",
+            "*leans against the railing, watching the horizon*"
+    };
+    private static final String[] MOODS = {"wary", "curious", "contemplative", "pleased", "concerned"};
+    private static final String[] LABELS = {
+            "Ask what it means", "Study the old charts", "Step outside",
+            "Offer to help", "Say nothing and listen", "Follow the lantern light"
+    };
+
+    private static final Pattern SPEAKER_LIST = Pattern.compile(
+            "(?:Available characters|nextSpeaker must be one of):\\s*([a-z_, ]+)");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LatencyModel latency;
+    private final int streamChunks;
+    private final AtomicLong requests = new AtomicLong();
+
+    // Failure injection
+    private final AtomicInteger forcedFailures = new AtomicInteger();
+    private final SplittableRandom errorRandom = new SplittableRandom(7);
+    private volatile int failureStatus = 529;
+    private volatile String failureRetryAfter;
+    private volatile double errorRate = 0;
+    private final AtomicInteger cutStreamAfter = new AtomicInteger(-1);
+
+    private LlmStubServer(HttpServer server, LatencyModel latency, int streamChunks) {
+        this.server = server;
+        this.latency = latency;
+        this.streamChunks = Math.max(1, streamChunks);
+    }
+
+    /**
+     * Start a stub on the given port (0 = any free port).
+     *
+     * @param streamChunks number of text deltas a streamed reply is split into
+     */
+    public static LlmStubServer start(int port, LatencyModel latency, int streamChunks) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        LlmStubServer stub = new LlmStubServer(server, latency, streamChunks);
+        server.createContext("/v1/messages", stub::handle);
+        server.setExecutor(stub.executor);  // Sleeping on virtual threads - thousands of in-flight calls are cheap
+        server.start();
+        return stub;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Messages API calls served so far.
+     */
+    public long requestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Answer the next {@code count} requests with {@code status} (and a retry-after header, if not null).
+     */
+    public void failNext(int count, int status, String retryAfter) {
+        this.failureStatus = status;
+        this.failureRetryAfter = retryAfter;
+        forcedFailures.set(count);
+    }
+
+    /**
+     * Answer this share of requests (0.0 - 1.0) with 529 "overloaded".
+     */
+    public void setErrorRate(double rate) {
+        this.errorRate = rate;
+    }
+
+    /**
+     * End the next streamed reply after {@code chunks} deltas with a half-written event, as if
+     * the connection dropped mid-stream.
+     */
+    public void cutNextStream(int chunks) {
+        cutStreamAfter.set(chunks);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // REQUEST HANDLING
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            JsonObject request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = JsonParser.parseString(new String(in.readAllBytes(), StandardCharsets.UTF_8)).getAsJsonObject();
+            }
+            requests.incrementAndGet();
+
+            if (forcedFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                fail(exchange, failureStatus, failureRetryAfter);
+                return;
+            }
+            if (errorRate > 0 && nextErrorDraw() < errorRate) {
+                fail(exchange, 529, null);
+                return;
+            }
+
+            String reply = scriptedReply(systemText(request), lastUserText(request));
+            int inputTokens = request.toString().length() / 4;
+            long delayMs = latency.sample();
+
+            if (request.has("stream") && request.get("stream").getAsBoolean()) {
+                stream(exchange, reply, inputTokens, delayMs);
+            } else {
+                Thread.sleep(delayMs);
+                respond(exchange, reply, inputTokens);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized double nextErrorDraw() {
+        return errorRandom.nextDouble();
+    }
+
+    private static void fail(HttpExchange exchange, int status, String retryAfter) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("type", status == 429 ? "rate_limit_error" : status == 529 ? "overloaded_error" : "api_error");
+        error.addProperty("message", "Injected by LlmStubServer");
+        JsonObject body = new JsonObject();
+        body.addProperty("type", "error");
+        body.add("error", error);
+
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (retryAfter != null) {
+            exchange.getResponseHeaders().set("retry-after", retryAfter);
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void respond(HttpExchange exchange, String reply, int inputTokens) throws IOException {
+        JsonObject text = new JsonObject();
+        text.addProperty("type", "text");
+        text.addProperty("text", reply);
+        JsonArray content = new JsonArray();
+        content.add(text);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("id", "msg_stub_" + requests.get());
+        body.addProperty("type", "message");
+        body.addProperty("role", "assistant");
+        body.addProperty("model", "stub");
+        body.add("content", content);
+        body.addProperty("stop_reason", "end_turn");
+        body.add("usage", usage(inputTokens, reply.length() / 4));
+
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void stream(HttpExchange exchange, String reply, int inputTokens, long delayMs)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            Thread.sleep(delayMs * 3 / 10);  // Time to first token
+
+            JsonObject message = new JsonObject();
+            message.addProperty("id", "msg_stub_" + requests.get());
+            message.addProperty("role", "assistant");
+            message.add("usage", usage(inputTokens, 1));
+            JsonObject start = new JsonObject();
+            start.addProperty("type", "message_start");
+            start.add("message", message);
+            event(out, "message_start", start);
+
+            List<String> chunks = split(reply, streamChunks);
+            int cutAfter = cutStreamAfter.getAndSet(-1);
+            long gapMs = chunks.size() > 1 ? (delayMs * 7 / 10) / (chunks.size() - 1) : 0;
+            for (int i = 0; i < chunks.size(); i++) {
+                if (i > 0) {
+                    Thread.sleep(gapMs);
+                }
+                if (i == cutAfter) {
+                    out.write("event: content_block_delta\ndata: {\"type\":\"content_blo\n\n".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                JsonObject delta = new JsonObject();
+                delta.addProperty("type", "text_delta");
+                delta.addProperty("text", chunks.get(i));
+                JsonObject event = new JsonObject();
+                event.addProperty("type", "content_block_delta");
+                event.addProperty("index", 0);
+                event.add("delta", delta);
+                event(out, "content_block_delta", event);
+            }
+
+            JsonObject end = new JsonObject();
+            end.addProperty("type", "message_delta");
+            end.add("usage", usage(0, reply.length() / 4));
+            event(out, "message_delta", end);
+
+            JsonObject stop = new JsonObject();
+            stop.addProperty("type", "message_stop");
+            event(out, "message_stop", stop);
+        }
+    }
+
+    private static void event(OutputStream out, String name, JsonObject data) throws IOException {
+        out.write(("event: " + name + "\ndata: " + gson.toJson(data) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static JsonObject usage(int inputTokens, int outputTokens) {
+        JsonObject usage = new JsonObject();
+        usage.addProperty("input_tokens", inputTokens);
+        usage.addProperty("output_tokens", outputTokens);
+        usage.addProperty("cache_creation_input_tokens", 0);
+        usage.addProperty("cache_read_input_tokens", 0);
+        return usage;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // SCRIPTED REPLIES
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Same prompt in, same reply out.
+     */
+    static String scriptedReply(String system, String lastUser) {
+        int seed = Math.abs((system + "|" + lastUser).hashCode());
+        List<String> speakers = speakers(system);
+
+        if (system.contains("narrative choice generator")) {
+            StringBuilder lines = new StringBuilder();
+            for (int i = 0; i < 3; i++) {
+                lines.append("[CHOICE: ").append(LABELS[(seed + i) % LABELS.length])
+                        .append(" | ").append(speakers.get((seed + i) % speakers.size())).append("]\n");
+            }
+            return lines.toString();
+        }
+
+        if (system.contains("running summary")) {
+            return "The player arrived, asked careful questions and earned a measure of trust. "
+                    + "A missing star and an old chart remain unexplained.";
+        }
+
+        JsonObject reply = new JsonObject();
+        reply.addProperty("dialogue", DIALOGUES[seed % DIALOGUES.length]);
+        reply.addProperty("actionText", ACTIONS[seed % ACTIONS.length]);
+        reply.addProperty("mood", MOODS[seed % MOODS.length]);
+
+        if (system.contains("\"choices\" array")) {
+            JsonArray choices = new JsonArray();
+            for (int i = 0; i < 3; i++) {
+                JsonObject choice = new JsonObject();
+                choice.addProperty("label", LABELS[(seed + i) % LABELS.length]);
+                choice.addProperty("nextSpeaker", speakers.get((seed + i) % speakers.size()));
+                choices.add(choice);
+            }
+            reply.add("choices", choices);
+        }
+
+        return gson.toJson(reply);
+    }
+
+    private static List<String> speakers(String system) {
+        List<String> speakers = new ArrayList<>();
+        Matcher matcher = SPEAKER_LIST.matcher(system);
+        if (matcher.find()) {
+            for (String id : matcher.group(1).split(",")) {
+                if (!id.isBlank()) {
+                    speakers.add(id.trim());
+                }
+            }
+        }
+        if (speakers.isEmpty()) {
+            speakers.add("narrator");
+        }
+        return speakers;
+    }
+
+    private static String systemText(JsonObject request) {
+        JsonElement system = request.get("system");
+        if (system == null || system.isJsonNull()) {
+            return "";
+        }
+        if (system.isJsonPrimitive()) {
+            return system.getAsString();
+        }
+        StringBuilder text = new StringBuilder();
+        for (JsonElement block : system.getAsJsonArray()) {
+            text.append(block.getAsJsonObject().get("text").getAsString());
+        }
+        return text.toString();
+    }
+
+    private static String lastUserText(JsonObject request) {
+        JsonArray messages = request.getAsJsonArray("messages");
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            JsonObject message = messages.get(i).getAsJsonObject();
+            if (!"user".equals(message.get("role").getAsString())) {
+                continue;
+            }
+            JsonElement content = message.get("content");
+            if (content.isJsonPrimitive()) {
+                return content.getAsString();
+            }
+            StringBuilder text = new StringBuilder();
+            for (JsonElement block : content.getAsJsonArray()) {
+                text.append(block.getAsJsonObject().get("text").getAsString());
+            }
+            return text.toString();
+        }
+        return "";
+    }
+
+    private static List<String> split(String text, int parts) {
+        List<String> chunks = new ArrayList<>();
+        int size = Math.max(1, (int) Math.ceil(text.length() / (double) parts));
+        for (int i = 0; i < text.length(); i += size) {
+            chunks.add(text.substring(i, Math.min(text.length(), i + size)));
+        }
+        return chunks;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // LATENCY
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Per-request latency distribution, reproducible for a given seed.
+     * Specs: {@code fixed:800}, {@code uniform:200:1500}, {@code lognormal:800:0.4} (median ms, sigma).
+     */
+    public static class LatencyModel {
+        private final String kind;
+        private final double a;
+        private final double b;
+        private final SplittableRandom random;
+
+        private LatencyModel(String kind, double a, double b, long seed) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+            this.random = new SplittableRandom(seed);
+        }
+
+        public static LatencyModel parse(String spec, long seed) {
+            String[] parts = spec.trim().toLowerCase().split(":");
+            double a = parts.length > 1 ? Double.parseDouble(parts[1]) : 0;
+            double b = parts.length > 2 ? Double.parseDouble(parts[2]) : 0;
+            return switch (parts[0]) {
+                case "fixed", "uniform", "lognormal" -> new LatencyModel(parts[0], a, b, seed);
+                default -> throw new IllegalArgumentException("Unknown latency model: " + spec);
+            };
+        }
+
+        public synchronized long sample() {
+            double ms = switch (kind) {
+                case "uniform" -> a + random.nextDouble() * (b - a);
+                case "lognormal" -> a * Math.exp(b * gaussian());
+                default -> a;
+            };
+            return Math.max(0, Math.round(ms));
+        }
+
+        // Box-Muller - SplittableRandom has no nextGaussian() on every JDK we build with
+        private double gaussian() {
+            double u1 = Math.max(Double.MIN_VALUE, random.nextDouble());
+            return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * random.nextDouble());
+        }
+
+        @Override
+        public String toString() {
+            return switch (kind) {
+                case "uniform" -> "uniform " + (long) a + "-" + (long) b + " ms";
+                case "lognormal" -> "lognormal median " + (long) a + " ms, sigma " + b;
+                default -> "fixed " + (long) a + " ms";
+            };
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // STANDALONE
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Run the stub on its own: [port] [latency spec] [stream chunks] [seed].
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        LatencyModel latency = LatencyModel.parse(args.length > 1 ? args[1] : "lognormal:800:0.4",
+                args.length > 3 ? Long.parseLong(args[3]) : 42L);
+        int chunks = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        LlmStubServer stub = start(port, latency, chunks);
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::close));
+        System.out.println("🤖 LLM stub listening on " + stub.baseUrl() + " (" + latency + ")");
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,81 @@
+package dev.laszlo;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.laszlo.service.ChatService;
+import dev.laszlo.service.ConversationHistory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ChatService against the local LLM stub - blocking and streaming calls over real HTTP.
+ * ⭐ SESSION 45: Load-test infrastructure
+ */
+class LlmStubServerTest {
+
+    private static LlmStubServer stub;
+    private static ChatService chatService;
+
+    @BeforeAll
+    static void startStub() throws Exception {
+        stub = LlmStubServer.start(0, LlmStubServer.LatencyModel.parse("fixed:0", 1), 5);
+        chatService = new ChatService("stub-key", stub.baseUrl() + "/");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    private static ConversationHistory history(String system, String userMessage) {
+        ConversationHistory history = new ConversationHistory();
+        history.setSystemPrompt(system);
+        history.addUserMessage(userMessage);
+        return history;
+    }
+
+    @Test
+    @DisplayName("Should return deterministic narrative JSON with inline choices")
+    void testNarrativeReply() {
+        ConversationHistory history = history(
+                "You are Ilyra.\n## Player Choices\nALSO include a \"choices\" array\n- nextSpeaker must be one of: ilyra, narrator",
+                "Hello");
+
+        String reply = chatService.sendMessage(history);
+        JsonObject json = JsonParser.parseString(reply).getAsJsonObject();
+
+        assertTrue(json.has("dialogue"));
+        assertEquals(3, json.getAsJsonArray("choices").size());
+        String speaker = json.getAsJsonArray("choices").get(0).getAsJsonObject().get("nextSpeaker").getAsString();
+        assertTrue(speaker.equals("ilyra") || speaker.equals("narrator"));
+        assertEquals(reply, chatService.sendMessage(history), "Same prompt should give the same reply");
+    }
+
+    @Test
+    @DisplayName("Should answer choice prompts with [CHOICE] lines")
+    void testChoiceReply() {
+        String reply = chatService.sendMessage(history(
+                "You are a narrative choice generator.\nAvailable characters: blackwood, narrator",
+                "Generate 2-3 narrative choices based on the context."));
+
+        assertEquals(3, reply.lines().filter(line -> line.startsWith("[CHOICE: ")).count());
+        assertTrue(reply.contains("| blackwood]") || reply.contains("| narrator]"));
+    }
+
+    @Test
+    @DisplayName("Should stream the same reply as text deltas")
+    void testStreaming() {
+        ConversationHistory history = history("You are Ilyra.", "Tell me about the stars");
+        StringBuilder deltas = new StringBuilder();
+
+        String streamed = chatService.streamMessage(history, deltas::append);
+
+        assertNotNull(streamed);
+        assertEquals(streamed, deltas.toString());
+        assertEquals(chatService.sendMessage(history), streamed);
+    }
+}
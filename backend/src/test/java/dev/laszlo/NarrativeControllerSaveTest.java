@@ -4,6 +4,7 @@ import org.springframework.test.context.ActiveProfiles;
 import dev.laszlo.service.ChatService;
 import dev.laszlo.service.ConversationHistory;
 import dev.laszlo.service.StorySaveService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,8 +16,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -31,6 +36,9 @@ class NarrativeControllerSaveTest {
     @Autowired
     private StorySaveService storySaveService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockBean
     private ChatService chatService;
 
@@ -107,4 +115,30 @@ class NarrativeControllerSaveTest {
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSpeak_recordsTurnAndPhaseMetrics() {
+        // Given: Claude answers with inline choices
+        when(chatService.sendMessageAsync(any())).thenReturn(CompletableFuture.completedFuture(
+                "{\"dialogue\": \"The stars are wrong.\", \"mood\": \"wary\","
+                        + " \"choices\": [{\"label\": \"Ask why\", \"nextSpeaker\": \"ilyra\"}]}"));
+
+        // When: Call POST /api/narrative/speak
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "http://localhost:" + port + "/api/narrative/speak",
+                Map.of("message", "Hello", "speaker", "ilyra", "storyId", "observatory", "saveSlot", "7"),
+                String.class);
+
+        // Then: Turn and phase timers are tagged by story and character
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(meterRegistry.find("storyforge.turn")
+                .tags("endpoint", "speak", "story", "observatory", "character", "ilyra", "outcome", "ok")
+                .timer()).isNotNull();
+        for (String phase : List.of("history_load", "prompt_build", "llm_dialogue", "parse", "save")) {
+            assertThat(meterRegistry.find("storyforge.turn.phase").tags("phase", phase, "story", "observatory")
+                    .timer()).as(phase).isNotNull();
+        }
+
+        restTemplate.delete(baseUrl + "/observatory/7");  // Evicts the write-behind cache entry too
+    }
+}
@@ -0,0 +1,332 @@
+package dev.laszlo;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import dev.laszlo.service.ChatService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load-test harness for the narrative endpoints.
+ * <p>
+ * Starts an {@link LlmStubServer}, boots the backend in-process against it (H2 "test" profile by default)
+ * and plays N concurrent players through /api/narrative/speak and /choose - each player in its own
+ * save slot, one /speak followed by /choose turns using the choices it was offered.
+ * Reports throughput, p50/p95/p99/max latency per endpoint and Hikari pool usage sampled during the run.
+ * <p>
+ * Not a JUnit test (surefire skips it). Run with:
+ * {@code mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--players=50 --turns=10 --latency=lognormal:800:0.4"}
+ * <p>
+ * Options: --players, --turns, --latency (see LlmStubServer.LatencyModel), --stream-chunks,
+ * --error-rate (share of LLM calls answered with 529, e.g. 0.05),
+ * --choice-mode (INLINE / SEPARATE / SPECULATIVE), --profile (Spring profile, "" for application.properties), --seed
+ * ⭐ SESSION 45: Load-test infrastructure
+ */
+public class NarrativeLoadHarness {
+
+    private static final String[][] STORIES = {{"observatory", "ilyra"}, {"pirates", "blackwood"}};
+    private static final int FIRST_SLOT = 1000;  // Well clear of the 1-5 slots real players use
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int players = Integer.parseInt(options.getOrDefault("players", "20"));
+        int turns = Integer.parseInt(options.getOrDefault("turns", "5"));
+        String profile = options.getOrDefault("profile", "test");
+        LlmStubServer.LatencyModel latency = LlmStubServer.LatencyModel.parse(
+                options.getOrDefault("latency", "lognormal:800:0.4"),
+                Long.parseLong(options.getOrDefault("seed", "42")));
+
+        try (LlmStubServer stub = LlmStubServer.start(0, latency,
+                Integer.parseInt(options.getOrDefault("stream-chunks", "20")))) {
+            stub.setErrorRate(Double.parseDouble(options.getOrDefault("error-rate", "0")));
+
+            // Passed as command-line properties so they beat the ${ENV:default} entries in application.properties
+            List<String> properties = new ArrayList<>(List.of(
+                    "--server.port=0",
+                    "--storyforge.anthropic.base-url=" + stub.baseUrl(),
+                    "--logging.level.dev.laszlo=WARN",
+                    "--logging.level.org.hibernate=WARN"));
+            if (options.containsKey("choice-mode")) {
+                properties.add("--storyforge.narrative.choice-mode=" + options.get("choice-mode"));
+            }
+
+            SpringApplication application = new SpringApplication(Application.class);
+            if (!profile.isBlank()) {
+                application.setAdditionalProfiles(profile);
+            }
+
+            try (ConfigurableApplicationContext context = application.run(properties.toArray(String[]::new))) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                PoolSampler pool = new PoolSampler(context.getBean(DataSource.class));
+                pool.start();
+
+                Run run = new Run("http://127.0.0.1:" + port + "/api/narrative");
+                long startNanos = System.nanoTime();
+                run.play(players, turns);
+                long elapsedNanos = System.nanoTime() - startNanos;
+
+                pool.stop();
+                run.cleanUp(players);
+                report(players, turns, latency, run, elapsedNanos, pool, stub);
+                printPhases(context.getBean(MeterRegistry.class));
+                System.out.println("LLM client " + context.getBean(ChatService.class).getResilienceStats());
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // PLAYERS
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    private static class Run {
+        private final String baseUrl;
+        private final HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        private final ConcurrentLinkedQueue<Long> speakNanos = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<Long> chooseNanos = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger errors = new AtomicInteger();
+        private final AtomicInteger degraded = new AtomicInteger();
+
+        Run(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        void play(int players, int turns) throws InterruptedException {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < players; p++) {
+                int player = p;
+                threads.add(Thread.ofVirtual().start(() -> {
+                    try {
+                        start.await();
+                        playOne(player, turns);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        private void playOne(int player, int turns) {
+            String storyId = STORIES[player % STORIES.length][0];
+            String speaker = STORIES[player % STORIES.length][1];
+            String slot = String.valueOf(FIRST_SLOT + player);
+            JsonArray choices = null;
+
+            for (int turn = 0; turn < turns; turn++) {
+                JsonObject body = new JsonObject();
+                body.addProperty("storyId", storyId);
+                body.addProperty("saveSlot", slot);
+
+                String endpoint;
+                if (choices == null || choices.isEmpty()) {
+                    endpoint = "/speak";
+                    body.addProperty("message", "Player " + player + " looks around (turn " + turn + ")");
+                    body.addProperty("speaker", speaker);
+                } else {
+                    endpoint = "/choose";
+                    JsonObject choice = choices.get(turn % choices.size()).getAsJsonObject();
+                    body.addProperty("choiceId", choice.get("id").getAsString());
+                    body.addProperty("label", choice.get("label").getAsString());
+                    body.addProperty("nextSpeaker", choice.get("nextSpeaker").getAsString());
+                }
+
+                JsonObject response = post(endpoint, body);
+                choices = response != null && response.has("choices") ? response.getAsJsonArray("choices") : null;
+            }
+        }
+
+        private JsonObject post(String endpoint, JsonObject body) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(baseUrl + endpoint))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(120))
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .build();
+
+            long started = System.nanoTime();
+            try {
+                HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                (endpoint.equals("/speak") ? speakNanos : chooseNanos).add(System.nanoTime() - started);
+                if (response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                    return null;
+                }
+                JsonObject turn = JsonParser.parseString(response.body()).getAsJsonObject();
+                if (turn.has("degraded") && turn.get("degraded").getAsBoolean()) {
+                    degraded.incrementAndGet();
+                }
+                return turn;
+            } catch (Exception e) {
+                errors.incrementAndGet();
+                return null;
+            }
+        }
+
+        void cleanUp(int players) {
+            for (int p = 0; p < players; p++) {
+                HttpRequest request = HttpRequest.newBuilder()
+                        .uri(URI.create(baseUrl + "/saves/" + STORIES[p % STORIES.length][0] + "/" + (FIRST_SLOT + p)))
+                        .DELETE()
+                        .build();
+                try {
+                    http.send(request, HttpResponse.BodyHandlers.discarding());
+                } catch (Exception ignored) {
+                    // Best effort - H2 runs are thrown away anyway
+                }
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // DB POOL SAMPLING
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    private static class PoolSampler {
+        private final DataSource dataSource;
+        private volatile boolean running = true;
+        private Thread thread;
+        private int maxActive;
+        private int maxWaiting;
+        private int maxTotal;
+        private long activeSum;
+        private long samples;
+
+        PoolSampler(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        void start() {
+            thread = Thread.ofPlatform().daemon().start(() -> {
+                while (running) {
+                    sample();
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        private void sample() {
+            if (!(dataSource instanceof HikariDataSource hikari)) {
+                return;
+            }
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            if (pool == null) {
+                return;  // Pool not started yet
+            }
+            int active = pool.getActiveConnections();
+            maxActive = Math.max(maxActive, active);
+            maxWaiting = Math.max(maxWaiting, pool.getThreadsAwaitingConnection());
+            maxTotal = Math.max(maxTotal, pool.getTotalConnections());
+            activeSum += active;
+            samples++;
+        }
+
+        String summary() {
+            if (!(dataSource instanceof HikariDataSource hikari)) {
+                return "not a Hikari pool (" + dataSource.getClass().getSimpleName() + ")";
+            }
+            return String.format("active max %d / avg %.1f, total max %d (pool size %d), threads waiting max %d",
+                    maxActive, samples == 0 ? 0.0 : activeSum / (double) samples, maxTotal,
+                    hikari.getMaximumPoolSize(), maxWaiting);
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════
+    // REPORT
+    // ═══════════════════════════════════════════════════════════════════════════
+
+    private static void report(int players, int turns, LlmStubServer.LatencyModel latency, Run run,
+                               long elapsedNanos, PoolSampler pool, LlmStubServer stub) {
+        int total = run.speakNanos.size() + run.chooseNanos.size();
+        double seconds = elapsedNanos / 1e9;
+
+        System.out.println();
+        System.out.println("═══════════════════════════════════════════════════════════════════════════");
+        System.out.printf("📊 %d players × %d turns, LLM latency %s%n", players, turns, latency);
+        System.out.println("═══════════════════════════════════════════════════════════════════════════");
+        System.out.printf("requests   %d in %.1f s → %.1f req/s (errors: %d, degraded: %d, LLM calls: %d)%n",
+                total, seconds, total / seconds, run.errors.get(), run.degraded.get(), stub.requestCount());
+        System.out.println(percentiles("/speak ", run.speakNanos));
+        System.out.println(percentiles("/choose", run.chooseNanos));
+        System.out.println("DB pool    " + pool.summary());
+    }
+
+    /**
+     * Mean / max per turn phase across all stories and characters (storyforge.turn.phase).
+     */
+    private static void printPhases(MeterRegistry registry) {
+        Map<String, long[]> phases = new TreeMap<>();  // phase -> {count, total ns, max ns}
+        for (Timer timer : registry.find("storyforge.turn.phase").timers()) {
+            long[] totals = phases.computeIfAbsent(timer.getId().getTag("phase"), p -> new long[3]);
+            totals[0] += timer.count();
+            totals[1] += (long) timer.totalTime(TimeUnit.NANOSECONDS);
+            totals[2] = Math.max(totals[2], (long) timer.max(TimeUnit.NANOSECONDS));
+        }
+        phases.forEach((phase, t) -> System.out.printf("phase      %-13s n=%-5d mean=%.1f ms  max=%.1f ms%n",
+                phase, t[0], t[0] == 0 ? 0.0 : t[1] / 1e6 / t[0], t[2] / 1e6));
+    }
+
+    private static String percentiles(String name, ConcurrentLinkedQueue<Long> nanos) {
+        List<Long> sorted = new ArrayList<>(nanos);
+        if (sorted.isEmpty()) {
+            return name + "    n=0";
+        }
+        sorted.sort(null);
+        return String.format("%s    n=%d  p50=%d ms  p95=%d ms  p99=%d ms  max=%d ms",
+                name, sorted.size(), percentile(sorted, 50), percentile(sorted, 95),
+                percentile(sorted, 99), sorted.get(sorted.size() - 1) / 1_000_000);
+    }
+
+    private static long percentile(List<Long> sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)) / 1_000_000;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,61 @@
+package dev.laszlo;
+
+import dev.laszlo.service.NarrativeResponseParser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for NarrativeResponseParser.
+ * ⭐ SESSION 45: Verify the single-pass extractor handles clean, wrapped and malformed replies
+ */
+class NarrativeResponseParserTest {
+
+    @Test
+    @DisplayName("Should extract all narrative fields from clean JSON")
+    void testCleanJson() {
+        NarrativeResponseParser.ParsedReply reply = NarrativeResponseParser.parse("""
+                {"dialogue": "Welcome aboard.", "actionText": "*tips hat*", "mood": "amused",
+                 "choices": [{"label": "Salute", "nextSpeaker": "blackwood"}]}
+                """);
+
+        assertNotNull(reply);
+        assertEquals("Welcome aboard.", reply.dialogue());
+        assertEquals("*tips hat*", reply.actionText());
+        assertEquals("amused", reply.mood());
+        assertEquals("Salute", reply.choices().get(0).get("label").asText());
+    }
+
+    @Test
+    @DisplayName("Should skip prose, code fences and braces before the JSON")
+    void testWrappedJson() {
+        NarrativeResponseParser.ParsedReply reply = NarrativeResponseParser.parse(
+                "Thinking {about it}... here you go:\n```json\n{\"dialogue\": \"Ahoy {friend}\"}\n```");
+
+        assertNotNull(reply);
+        assertEquals("Ahoy {friend}", reply.dialogue());
+        assertNull(reply.actionText());
+        assertNull(reply.choices());
+    }
+
+    @Test
+    @DisplayName("Should find the JSON after an unclosed brace in prose")
+    void testUnclosedBraceBeforeJson() {
+        NarrativeResponseParser.ParsedReply reply = NarrativeResponseParser.parse(
+                "Note: { this never closes. {\"dialogue\": \"Still here\", \"mood\": \"calm\"}");
+
+        assertNotNull(reply);
+        assertEquals("Still here", reply.dialogue());
+        assertEquals("calm", reply.mood());
+    }
+
+    @Test
+    @DisplayName("Should return null for malformed or dialogue-less replies")
+    void testMalformed() {
+        assertNull(NarrativeResponseParser.parse("Just plain prose, no JSON."));
+        assertNull(NarrativeResponseParser.parse("{\"dialogue\": \"truncated"));
+        assertNull(NarrativeResponseParser.parse("{\"mood\": \"calm\"}"));
+        assertNull(NarrativeResponseParser.parse(null));
+    }
+}
@@ -8,6 +8,11 @@ import dev.laszlo.service.ConversationHistory;
 import dev.laszlo.service.StorySaveService;
 import org.junit.jupiter.api.*;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -24,6 +29,9 @@ class StorySaveServiceTest {
     @Autowired
     private StorySaveService storySaveService;
 
+    @Autowired
+    private DataSource dataSource;
+
     private ConversationHistory testHistory;
 
     @BeforeEach
@@ -243,4 +251,260 @@ class StorySaveServiceTest {
         assertEquals(original.getMessageCount(), loaded.getMessageCount());
         assertEquals(original.toJsonArray().toString(), loaded.toJsonArray().toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(13)
+    @DisplayName("Should rebuild history from snapshot + append log across compactions")
+    void testAppendOnlyLogAcrossCompaction() {
+        // Arrange - initial save, then one save per turn (well past the compaction threshold)
+        ConversationHistory history = new ConversationHistory();
+        history.setSystemPrompt("Narrator prompt");
+        history.addUserMessage("Turn 0");
+        history.addAssistantMessage("Reply 0");
+        storySaveService.saveStoryProgress("test_story", 1, history, "narrator");
+
+        for (int turn = 1; turn <= 30; turn++) {
+            history.addUserMessage("Turn " + turn);
+            history.addAssistantMessage("Reply " + turn);
+
+            // Act
+            assertTrue(storySaveService.saveStoryProgress("test_story", 1, history, "narrator"));
+
+            // Assert - every intermediate state loads back exactly
+            ConversationHistory loaded = storySaveService.loadStoryProgress("test_story", 1);
+            assertNotNull(loaded);
+            assertEquals(history.toJsonArray().toString(), loaded.toJsonArray().toString(),
+                    "Mismatch after turn " + turn);
+        }
+
+        assertEquals(62, storySaveService.getSaveInfo("test_story", 1).messageCount);
+    }
+
+    @Test
+    @Order(14)
+    @DisplayName("Should migrate legacy full-JSON saves transparently")
+    void testLegacySaveMigration() throws Exception {
+        // Arrange - row written the pre-log way (full conversation_json, no snapshot count)
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("""
+                     INSERT INTO story_saves (story_id, save_slot, user_id, current_speaker,
+                                              message_count, conversation_json)
+                     VALUES (?, 1, 'default', 'blackwood', ?, ?)
+                     """)) {
+            pstmt.setString(1, "test_story");
+            pstmt.setInt(2, testHistory.getMessageCount());
+            pstmt.setString(3, testHistory.toJson());
+            pstmt.executeUpdate();
+        }
+
+        // Act - load legacy, play a turn, save, reload
+        ConversationHistory loaded = storySaveService.loadStoryProgress("test_story", 1);
+        assertNotNull(loaded);
+        assertEquals(4, loaded.getMessageCount());
+
+        loaded.addUserMessage("What about the crew?");
+        loaded.addAssistantMessage("They trust me.");
+        assertTrue(storySaveService.saveStoryProgress("test_story", 1, loaded, "blackwood"));
+
+        ConversationHistory reloaded = storySaveService.loadStoryProgress("test_story", 1);
+
+        // Assert
+        assertNotNull(reloaded);
+        assertEquals(loaded.toJsonArray().toString(), reloaded.toJsonArray().toString());
+    }
+
+    @Test
+    @Order(15)
+    @DisplayName("Should replace the log when the history no longer extends the save")
+    void testShorterHistoryRewritesSnapshot() {
+        // Arrange
+        storySaveService.saveStoryProgress("test_story", 1, testHistory, "blackwood");
+
+        ConversationHistory restarted = new ConversationHistory();
+        restarted.addUserMessage("Let's start over");
+
+        // Act
+        assertTrue(storySaveService.saveStoryProgress("test_story", 1, restarted, "narrator"));
+        ConversationHistory loaded = storySaveService.loadStoryProgress("test_story", 1);
+
+        // Assert
+        assertNotNull(loaded);
+        assertEquals(1, loaded.getMessageCount());
+        assertEquals(restarted.toJsonArray().toString(), loaded.toJsonArray().toString());
+    }
+
+    @Test
+    @Order(16)
+    @DisplayName("Should persist a batch of new and existing saves in one call")
+    void testSaveBatch() {
+        // Arrange - slot 1 exists, slot 2 is new
+        storySaveService.saveStoryProgress("test_story", 1, testHistory, "blackwood");
+        testHistory.addUserMessage("What about the crew?");
+        testHistory.addAssistantMessage("They trust me.");
+
+        ConversationHistory other = new ConversationHistory();
+        other.addUserMessage("Second slot");
+
+        // Act
+        boolean saved = storySaveService.saveStoryProgressBatch(List.of(
+                new StorySaveService.SaveRequest(StorySaveService.DEFAULT_USER, "test_story", 1, testHistory, "blackwood"),
+                new StorySaveService.SaveRequest(StorySaveService.DEFAULT_USER, "test_story", 2, other, "narrator")
+        ));
+
+        // Assert
+        assertTrue(saved);
+        assertEquals(testHistory.toJsonArray().toString(),
+                storySaveService.loadStoryProgress("test_story", 1).toJsonArray().toString());
+        assertEquals(other.toJsonArray().toString(),
+                storySaveService.loadStoryProgress("test_story", 2).toJsonArray().toString());
+
+        // Cleanup
+        storySaveService.deleteSave("test_story", 2);
+    }
+
+    @Test
+    @Order(17)
+    @DisplayName("Should store the rolling context summary with the save")
+    void testContextSummaryPersistence() {
+        // Arrange - created (snapshot path), then summarized and appended (log path)
+        storySaveService.saveStoryProgress("test_story", 1, testHistory, "blackwood");
+        testHistory.setContextSummary("The captain welcomed the player aboard.", 2);
+        testHistory.addUserMessage("Where are we headed?");
+
+        // Act
+        storySaveService.saveStoryProgress("test_story", 1, testHistory, "blackwood");
+        ConversationHistory loaded = storySaveService.loadStoryProgress("test_story", 1);
+
+        // Assert
+        assertNotNull(loaded);
+        assertEquals("The captain welcomed the player aboard.", loaded.getContextSummary());
+        assertEquals(2, loaded.getSummarizedMessageCount());
+        assertEquals(testHistory.getMessageCount(), loaded.getMessageCount(), "Full transcript is kept");
+    }
+
+    @Test
+    @Order(18)
+    @DisplayName("Should keep each user's saves apart for the same story and slot")
+    void testPerUserSaves() {
+        // Arrange - two players, same story and slot, written in one mixed batch
+        ConversationHistory other = new ConversationHistory();
+        other.addUserMessage("A different player");
+
+        boolean saved = storySaveService.saveStoryProgressBatch(List.of(
+                new StorySaveService.SaveRequest("player_a", "test_story", 1, testHistory, "blackwood"),
+                new StorySaveService.SaveRequest("player_b", "test_story", 1, other, "narrator")
+        ));
+
+        // Assert
+        assertTrue(saved);
+        assertEquals(4, storySaveService.loadStoryProgress("player_a", "test_story", 1).getMessageCount());
+        assertEquals(1, storySaveService.loadStoryProgress("player_b", "test_story", 1).getMessageCount());
+        assertFalse(storySaveService.hasSave("test_story", 1), "The default user has no save");
+        assertEquals(1, storySaveService.getAllSavesForUser("player_b").size());
+
+        assertTrue(storySaveService.deleteSaveByStoryId("player_a", "test_story"));
+        assertFalse(storySaveService.hasSave("player_a", "test_story", 1));
+        assertTrue(storySaveService.hasSave("player_b", "test_story", 1), "Other players' saves are untouched");
+
+        // Cleanup
+        storySaveService.deleteSave("player_b", "test_story", 1);
+    }
+
+    @Test
+    @Order(19)
+    @DisplayName("Should page through a transcript across compactions and legacy rows")
+    void testTranscriptPages() throws Exception {
+        // Arrange - created, then compacted after 60 more messages
+        storySaveService.saveStoryProgress("test_story", 1, testHistory, "blackwood");
+        for (int i = 0; i < 30; i++) {
+            testHistory.addUserMessage("Order " + i);
+            testHistory.addAssistantMessage("Aye " + i);
+        }
+        storySaveService.saveStoryProgress("test_story", 1, testHistory, "blackwood");
+
+        // Act - walk backwards from the newest page
+        List<StorySaveService.TranscriptMessage> all = new java.util.ArrayList<>();
+        Integer before = null;
+        int pages = 0;
+        do {
+            StorySaveService.TranscriptPage page = storySaveService.getTranscriptPage(
+                    StorySaveService.DEFAULT_USER, "test_story", 1, before, 25);
+            assertNotNull(page);
+            assertEquals(64, page.total());
+            all.addAll(0, page.messages());
+            before = page.nextBefore();
+            pages++;
+        } while (before != null);
+
+        // Assert
+        assertEquals(3, pages);
+        assertEquals(64, all.size());
+        for (int seq = 0; seq < all.size(); seq++) {
+            assertEquals(seq, all.get(seq).seq());
+            assertEquals(testHistory.getMessage(seq).get("content").getAsString(), all.get(seq).content());
+        }
+        assertNull(storySaveService.getTranscriptPage(StorySaveService.DEFAULT_USER, "no_such_story", 1, null, 25));
+
+        // Legacy row - no message log at all, pages come from the snapshot
+        storySaveService.deleteSave("test_story", 1);
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("""
+                     INSERT INTO story_saves (story_id, save_slot, user_id, current_speaker,
+                                              message_count, conversation_json)
+                     VALUES (?, 1, 'default', 'blackwood', ?, ?)
+                     """)) {
+            pstmt.setString(1, "test_story");
+            pstmt.setInt(2, testHistory.getMessageCount());
+            pstmt.setString(3, testHistory.toJson());
+            pstmt.executeUpdate();
+        }
+        StorySaveService.TranscriptPage legacy = storySaveService.getTranscriptPage(
+                StorySaveService.DEFAULT_USER, "test_story", 1, 10, 4);
+        assertNotNull(legacy);
+        assertEquals(List.of(6, 7, 8, 9), legacy.messages().stream().map(StorySaveService.TranscriptMessage::seq).toList());
+        assertEquals(6, legacy.nextBefore());
+    }
+
+    @Test
+    @Order(20)
+    @DisplayName("Should load only the unsummarized window and save it back intact")
+    void testLazyWindow() {
+        // Arrange - 64 messages, the first 40 covered by the summary
+        for (int i = 0; i < 30; i++) {
+            testHistory.addUserMessage("Order " + i);
+            testHistory.addAssistantMessage("Aye " + i);
+        }
+        testHistory.setContextSummary("The crew took forty orders.", 40);
+        storySaveService.saveStoryProgress("test_story", 1, testHistory, "blackwood");
+
+        // Act - load the window, play turns through an append and a compaction
+        ConversationHistory window = storySaveService.loadStoryContext(StorySaveService.DEFAULT_USER, "test_story", 1);
+
+        assertNotNull(window);
+        assertEquals(40, window.getWindowOffset());
+        assertEquals(64, window.getMessageCount());
+        assertEquals(24, window.getMessages().size());
+        assertEquals("The crew took forty orders.", window.getContextSummary());
+
+        window.addUserMessage("Hoist the sails");
+        window.addAssistantMessage("Sails hoisted!");
+        testHistory.addUserMessage("Hoist the sails");
+        testHistory.addAssistantMessage("Sails hoisted!");
+        assertTrue(storySaveService.saveStoryProgress("test_story", 1, window, "blackwood"));
+
+        for (int i = 0; i < 20; i++) {
+            window.addUserMessage("Steer " + i);
+            window.addAssistantMessage("Steady " + i);
+            testHistory.addUserMessage("Steer " + i);
+            testHistory.addAssistantMessage("Steady " + i);
+        }
+        assertTrue(storySaveService.saveStoryProgress("test_story", 1, window, "blackwood"));
+
+        // Assert - the full history is unchanged by going through a window
+        ConversationHistory full = storySaveService.loadStoryProgress("test_story", 1);
+        assertNotNull(full);
+        assertTrue(full.isComplete());
+        assertEquals(testHistory.toJsonArray().toString(), full.toJsonArray().toString());
+        assertEquals(40, window.getWindowOffset(), "The caller's window is not modified by saving");
+    }
+}
@@ -0,0 +1,110 @@
+package dev.laszlo;
+
+import dev.laszlo.service.ConversationHistory;
+import dev.laszlo.service.StorySaveService;
+import dev.laszlo.service.StorySessionCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for the write-behind StorySessionCache.
+ * ⭐ SESSION 45: Verify batching, flushing and eviction against the real save tables
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class StorySessionCacheTest {
+
+    private static final String STORY = "cache_story";
+
+    @Autowired
+    private StorySaveService storySaveService;
+
+    private StorySessionCache cache;
+
+    @BeforeEach
+    void setUp() {
+        // Small cache: 2 entries, write-through every 3rd turn, never idle-evicted
+        cache = new StorySessionCache(storySaveService, 2, 3, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (int slot = 1; slot <= 3; slot++) {
+            storySaveService.deleteSave(STORY, slot);
+        }
+    }
+
+    @Test
+    @DisplayName("Should batch turns and write through every N turns")
+    void testWriteBehindBatching() {
+        ConversationHistory history = new ConversationHistory();
+
+        // Turns 1-2: cached only
+        for (int turn = 1; turn <= 2; turn++) {
+            history.addUserMessage("Turn " + turn);
+            history.addAssistantMessage("Reply " + turn);
+            assertTrue(cache.save("default", STORY, 1, history, "narrator"));
+        }
+        assertFalse(storySaveService.hasSave(STORY, 1), "Nothing should be written before the 3rd turn");
+        assertEquals(4, cache.load("default", STORY, 1).getMessageCount(), "Cache should serve the latest turn");
+
+        // Turn 3: flush due
+        history.addUserMessage("Turn 3");
+        history.addAssistantMessage("Reply 3");
+        assertTrue(cache.save("default", STORY, 1, history, "narrator"));
+
+        assertEquals(6, storySaveService.getSaveInfo(STORY, 1).messageCount);
+    }
+
+    @Test
+    @DisplayName("Should write dirty entries on flushAll")
+    void testFlushAll() {
+        ConversationHistory history = new ConversationHistory();
+        history.addUserMessage("Hello");
+        cache.save("default", STORY, 1, history, "narrator");
+
+        cache.flushAll();
+
+        ConversationHistory loaded = storySaveService.loadStoryProgress(STORY, 1);
+        assertNotNull(loaded);
+        assertEquals(1, loaded.getMessageCount());
+    }
+
+    @Test
+    @DisplayName("Should flush dirty entries when evicted by LRU")
+    void testEvictionFlushesDirtyEntry() {
+        ConversationHistory history = new ConversationHistory();
+        history.addUserMessage("Slot message");
+
+        cache.save("default", STORY, 1, history, "narrator");
+        cache.save("default", STORY, 2, history, "narrator");
+        assertFalse(storySaveService.hasSave(STORY, 1));
+
+        // Third slot pushes slot 1 (least recently used) out of the 2-entry cache
+        cache.save("default", STORY, 3, history, "narrator");
+
+        assertTrue(storySaveService.hasSave(STORY, 1), "Evicted dirty entry should be written back");
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should isolate cached history from caller mutations")
+    void testCopyIsolation() {
+        ConversationHistory history = new ConversationHistory();
+        history.addUserMessage("Saved turn");
+        cache.save("default", STORY, 1, history, "narrator");
+
+        // Mutating the caller's instances (e.g. a turn that later fails) must not leak into the cache
+        history.addUserMessage("Unsaved turn");
+        cache.load("default", STORY, 1).addUserMessage("Also unsaved");
+
+        assertEquals(1, cache.load("default", STORY, 1).getMessageCount());
+    }
+}
@@ -0,0 +1,89 @@
+package dev.laszlo;
+
+import dev.laszlo.service.StreamingJsonFieldExtractor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for StreamingJsonFieldExtractor.
+ * ⭐ SESSION 45: Verify fields are extracted correctly however the stream is chunked
+ */
+class StreamingJsonFieldExtractorTest {
+
+    private Map<String, StringBuilder> deltas;
+    private Map<String, String> completed;
+    private StreamingJsonFieldExtractor extractor;
+
+    @BeforeEach
+    void setUp() {
+        deltas = new HashMap<>();
+        completed = new HashMap<>();
+        extractor = new StreamingJsonFieldExtractor(Set.of("dialogue", "mood"),
+                new StreamingJsonFieldExtractor.FieldListener() {
+                    @Override
+                    public void onFieldDelta(String field, String delta) {
+                        deltas.computeIfAbsent(field, k -> new StringBuilder()).append(delta);
+                    }
+
+                    @Override
+                    public void onFieldComplete(String field, String value) {
+                        completed.put(field, value);
+                    }
+                });
+    }
+
+    @Test
+    @DisplayName("Should extract fields from a single clean JSON chunk")
+    void testCleanJson() {
+        extractor.feed("{\"dialogue\": \"Hello there.\", \"mood\": \"calm\", \"actionText\": \"waves\"}");
+
+        assertTrue(extractor.isFinished());
+        assertEquals("Hello there.", completed.get("dialogue"));
+        assertEquals("calm", completed.get("mood"));
+        assertEquals("Hello there.", deltas.get("dialogue").toString());
+        assertFalse(completed.containsKey("actionText"));
+    }
+
+    @Test
+    @DisplayName("Should skip prose and code fences around the JSON object")
+    void testWrappedInProse() {
+        extractor.feed("Here is my reply:\n```json\n{\"dialogue\": \"Ahoy\"}\n```");
+
+        assertTrue(extractor.isFinished());
+        assertEquals("Ahoy", completed.get("dialogue"));
+    }
+
+    @Test
+    @DisplayName("Should decode escapes split across chunks")
+    void testEscapesSplitAcrossChunks() {
+        String json = "{\"dialogue\": \"Line \\\"one\\\"\\nCaf\\u00e9\", \"mood\": \"wry\"}";
+
+        // Feed one character at a time - every escape is split mid-sequence
+        for (char c : json.toCharArray()) {
+            extractor.feed(String.valueOf(c));
+        }
+
+        assertTrue(extractor.isFinished());
+        assertEquals("Line \"one\"\nCafé", completed.get("dialogue"));
+        assertEquals("Line \"one\"\nCafé", deltas.get("dialogue").toString());
+        assertEquals("wry", completed.get("mood"));
+    }
+
+    @Test
+    @DisplayName("Should ignore braces in prose and nested values")
+    void testBracesBeforeRealObject() {
+        extractor.feed("Thinking {about it}... ");
+        extractor.feed("{\"meta\": {\"dialogue\": \"nested\"}, \"count\": 3, \"dialogue\": \"real\"}");
+
+        assertTrue(extractor.isFinished());
+        assertEquals("real", completed.get("dialogue"));
+        assertEquals("real", deltas.get("dialogue").toString());
+    }
+}
@@ -0,0 +1,163 @@
+package dev.laszlo;
+
+import dev.laszlo.database.DatabaseService;
+import dev.laszlo.model.Session;
+import dev.laszlo.service.ConversationHistory;
+import dev.laszlo.service.CurrencyService;
+import dev.laszlo.service.StorySaveService;
+import dev.laszlo.service.TurnCommitService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Turn epilogue written as one transaction: save, legacy rows, completion and gems land together or not at all.
+ * ⭐ SESSION 45: Transactional turn commit
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TurnCommitServiceTest {
+
+    private static final String STORY = "commit_story";
+    private static final String USER = "commit_user";
+    private static final String OTHER_USER = "commit_user_2";
+
+    @Autowired
+    private TurnCommitService turnCommitService;
+
+    @Autowired
+    private StorySaveService storySaveService;
+
+    @Autowired
+    private CurrencyService currencyService;
+
+    @Autowired
+    private DatabaseService databaseService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO user_currency (user_id, gem_balance, total_earned, total_spent) "
+                    + "VALUES ('" + USER + "', 100, 100, 0)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        storySaveService.deleteSaveByStoryId(USER, STORY);
+        storySaveService.deleteSaveByStoryId(OTHER_USER, STORY);
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM gem_transactions WHERE user_id IN ('" + USER + "', '" + OTHER_USER + "')");
+            stmt.execute("DELETE FROM user_currency WHERE user_id IN ('" + USER + "', '" + OTHER_USER + "')");
+        }
+        currencyService.evict(USER);  // The row is recreated by plain SQL for the next test
+        currencyService.evict(OTHER_USER);
+    }
+
+    private static List<StorySaveService.SaveRequest> save(String... messages) {
+        return saveFor(USER, messages);
+    }
+
+    private static List<StorySaveService.SaveRequest> saveFor(String userId, String... messages) {
+        ConversationHistory history = new ConversationHistory();
+        for (String message : messages) {
+            history.addUserMessage(message);
+        }
+        return List.of(new StorySaveService.SaveRequest(userId, STORY, 1, history, "narrator"));
+    }
+
+    @Test
+    @DisplayName("Should write save, legacy rows, completion and gems in one commit")
+    void testCommitsWholeTurn() {
+        int sessionId = databaseService.createSession("Commit Session");
+
+        TurnCommitService.TurnWrites turn = new TurnCommitService.TurnWrites(USER, STORY, 1, sessionId)
+                .choice("choice_1", "Open the door", "narrator")
+                .message("user", "You chose: Open the door")
+                .message("narrator", "The door creaks open.")
+                .completed("good_ending")
+                .gems(100, "story_completed");
+
+        assertTrue(turnCommitService.commit(turn, save("You chose: Open the door")));
+
+        List<StorySaveService.SaveInfo> saves = storySaveService.getAllSavesForStory(USER, STORY);
+        assertEquals(1, saves.size());
+        StorySaveService.SaveInfo info = saves.get(0);
+        assertTrue(info.isCompleted);
+        assertEquals("good_ending", info.endingId);
+        assertEquals(2, databaseService.getMessages(sessionId).size());
+        assertEquals(1, databaseService.getChoiceCount(sessionId));
+        assertEquals(200, currencyService.getGemBalance(USER));
+    }
+
+    @Test
+    @DisplayName("Should roll back the save and gems when any turn write fails")
+    void testRollsBackWholeTurn() {
+
+        // No such session - the choice row violates its foreign key after the save was written
+        TurnCommitService.TurnWrites turn = new TurnCommitService.TurnWrites(USER, STORY, 1, -1)
+                .choice("choice_1", "Open the door", "narrator")
+                .gems(5, "choice_made");
+
+        assertFalse(turnCommitService.commit(turn, save("Hello")));
+
+        assertTrue(storySaveService.getAllSavesForStory(USER, STORY).isEmpty());
+        assertEquals(100, currencyService.getGemBalance(USER));
+    }
+
+    @Test
+    @DisplayName("Should commit two users' turns on the shared legacy session at the same time")
+    void testConcurrentTurnsOnSharedSession() throws Exception {
+        int sessionId = databaseService.createSession("Shared Legacy Session");
+        CyclicBarrier start = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (String userId : List.of(USER, OTHER_USER)) {
+                results.add(executor.submit(() -> {
+                    TurnCommitService.TurnWrites turn = new TurnCommitService.TurnWrites(userId, STORY, 1, sessionId)
+                            .choice("choice_1", "Open the door", "narrator")
+                            .message("user", "You chose: Open the door")
+                            .message("narrator", "The door creaks open.")
+                            .gems(5, "choice_made");
+                    start.await();
+                    return turnCommitService.commit(turn, saveFor(userId, "You chose: Open the door"));
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(4, databaseService.getMessages(sessionId).size());
+        assertEquals(2, databaseService.getChoiceCount(sessionId));
+        Session session = databaseService.getSessionsPage(sessionId + 1, 1).get(0);
+        assertEquals(4, session.getMessageCount());
+        assertEquals(105, currencyService.getGemBalance(USER));
+        assertEquals(5, currencyService.getGemBalance(OTHER_USER));  // First gems open the account
+    }
+}
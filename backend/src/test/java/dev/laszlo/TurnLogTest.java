@@ -0,0 +1,65 @@
+package dev.laszlo;
+
+import dev.laszlo.service.TurnLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Correlation ids, payload sampling/truncation and MDC propagation.
+ * ⭐ SESSION 45: Structured, sampled logging
+ */
+class TurnLogTest {
+
+    @AfterEach
+    void tearDown() {
+        TurnLog.end();
+        TurnLog.configure(0.01, 500);
+    }
+
+    @Test
+    @DisplayName("Should keep a sane incoming request id and replace anything else")
+    void testTurnId() {
+        assertEquals("abc-123_X", TurnLog.begin("abc-123_X"));
+        assertEquals("abc-123_X", MDC.get(TurnLog.TURN_ID));
+
+        String generated = TurnLog.begin("bad id\nwith newline");
+        assertEquals(16, generated.length());
+        assertEquals(generated, MDC.get(TurnLog.TURN_ID));
+
+        TurnLog.end();
+        assertNull(MDC.get(TurnLog.TURN_ID));
+    }
+
+    @Test
+    @DisplayName("Should sample payloads per turn and truncate long ones")
+    void testSamplingAndTruncation() {
+        TurnLog.configure(1.0, 10);
+        TurnLog.begin(null);
+        assertTrue(TurnLog.isPayloadSampled());
+        assertEquals("short", TurnLog.truncate("short"));
+        assertEquals("0123456789... (26 chars)", TurnLog.truncate("0123456789abcdefghijklmnop"));
+
+        TurnLog.configure(0.0, 10);
+        TurnLog.begin(null);
+        assertFalse(TurnLog.isPayloadSampled());
+    }
+
+    @Test
+    @DisplayName("Should carry the caller's MDC onto executor threads")
+    void testPropagation() throws Exception {
+        Executor executor = TurnLog.propagating(Executors.newVirtualThreadPerTaskExecutor());
+        TurnLog.begin("turn-1");
+
+        String seen = CompletableFuture.supplyAsync(() -> MDC.get(TurnLog.TURN_ID), executor).get();
+
+        assertEquals("turn-1", seen);
+    }
+}
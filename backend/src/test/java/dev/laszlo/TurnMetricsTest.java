@@ -0,0 +1,60 @@
+package dev.laszlo;
+
+import dev.laszlo.service.TurnMetrics;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Choice-mode latency read back from the storyforge.turn histograms.
+ * ⭐ SESSION 45: Per-turn latency breakdown
+ */
+class TurnMetricsTest {
+
+    @Test
+    @DisplayName("Should summarize turn latency per choice mode, overall and per story")
+    void testTurnLatencyByChoiceMode() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                // Same as management.metrics.distribution.percentiles-histogram.storyforge.turn=true
+                return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+            }
+        });
+        TurnMetrics metrics = new TurnMetrics(registry);
+
+        // 99 fast INLINE turns and one slow one, split over endpoints and outcomes; one SEPARATE turn
+        for (int i = 0; i < 100; i++) {
+            long millis = i == 99 ? 5_000 : 100;
+            String endpoint = i % 2 == 0 ? "speak" : "choose";
+            metrics.recordTurn(endpoint, "pirates", "isla", "INLINE", i == 99 ? "degraded" : "ok",
+                    System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        metrics.recordTurn("speak", "observatory", "ilyra", "SEPARATE", "ok",
+                System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(900));
+
+        Map<String, Map<String, Object>> latency = metrics.turnLatencyByChoiceMode();
+
+        assertEquals(List.of("INLINE", "SEPARATE", "observatory/SEPARATE", "pirates/INLINE"),
+                List.copyOf(latency.keySet()));
+        Map<String, Object> inline = latency.get("pirates/INLINE");
+        assertEquals(100L, inline.get("count"));
+        long p50 = (Long) inline.get("p50Ms");
+        long p99 = (Long) inline.get("p99Ms");
+        assertTrue(p50 >= 100 && p50 < 200, "p50 " + p50);
+        assertTrue(p99 >= 100 && p99 < 5_000, "p99 " + p99);
+        assertTrue((Long) inline.get("maxMs") >= 5_000);
+        assertEquals(1L, latency.get("SEPARATE").get("count"));
+    }
+}
@@ -92,20 +92,39 @@ class GalleryService {
   })  : baseUrl = baseUrl ?? _defaultBaseUrl,
         client = client ?? http.Client();
 
+  /// Last gallery response per story with its ETag - revalidated with If-None-Match
+  final Map<String, ({String etag, GalleryContentResponse response})> _contentCache = {};
+
   /// Get all gallery content for a story with unlock status and gem balance
   ///
   /// GET /api/gallery/{storyId}/content
+  /// Sends the last ETag; a 304 reuses the cached response without downloading the catalog again.
   Future<GalleryContentResponse> getGalleryContent(String storyId) async {
     try {
       final url = Uri.parse('$baseUrl/$storyId/content');
       print('🖼️ GET $url');
 
-      final response = await client.get(url);
+      final cached = _contentCache[storyId];
+      final response = await client.get(
+        url,
+        headers: cached != null ? {'If-None-Match': cached.etag} : null,
+      );
       print('📥 Response status: ${response.statusCode}');
 
+      if (response.statusCode == 304 && cached != null) {
+        print('✅ Gallery content unchanged (${cached.response.content.length} items)');
+        return cached.response;
+      }
+
       if (response.statusCode == 200) {
         final json = jsonDecode(response.body) as Map<String, dynamic>;
         final result = GalleryContentResponse.fromJson(json);
+        final etag = response.headers['etag'];
+        if (etag != null) {
+          _contentCache[storyId] = (etag: etag, response: result);
+        } else {
+          _contentCache.remove(storyId);
+        }
         print('✅ Loaded ${result.content.length} content items, ${result.unlockedIds.length} unlocked');
         return result;
       } else {